@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Formats the labelling of the states of a listener on a separate thread. The
+ * search thread hands the id and the labels of each state, together with the id
+ * of its set of labels, and each traversed transition, to a bounded queue, from
+ * which the writer thread takes them and passes them to the listener. If the
+ * queue is full, the search thread waits until the writer thread has caught up.
+ * Along with the labels of a state, the search thread may hand over a snapshot
+ * of the labels which have not been built yet, which the writer thread
+ * materializes, so that these labels are built, registered and interned off
+ * the search thread.
+ * 
+ * The queue is a ring of preallocated records, with a single producer, the
+ * search thread, and a single consumer, the writer thread. It does not use
+ * locks and handing over a state does not create any objects. While the queue
+ * is empty, the writer thread yields for a while and then parks until the
+ * search thread hands over the next record or the writer is stopped.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class AsyncLabelWriter implements Runnable {
+	private static final int SPINS = 100; // number of times to yield before waiting while the queue is full or empty
+	private static final long WAIT = 100000; // nanoseconds to wait while the queue is full
+	private static final int STATE = 0; // kind of a record of a state
+	private static final int TRANSITION = 1; // kind of a record of a transition
+	private static final int SNAPSHOT = 2; // kind of a record of a state whose labels are yet to be materialized
+
+	private StateLabel listener; // the listener formatting the records
+	private Record[] records; // the ring of records
+	private int mask; // the number of records minus one
+	private AtomicLong head; // number of records taken by the writer thread
+	private AtomicLong tail; // number of records handed over by the search thread
+	private volatile boolean stopped; // whether the writer thread should stop once the queue is empty
+	private volatile boolean waiting; // whether the writer thread is parked, or about to park, on an empty queue
+	private Thread thread; // the writer thread
+	private boolean died; // whether the death of the writer thread has been reported
+	private volatile boolean closed; // whether records handed over from now on are discarded
+	private volatile long end; // number of records handed over before the writer was closed
+
+	/**
+	 * Creates a writer for the given listener.
+	 * 
+	 * @param listener the listener formatting the labelling
+	 * @param registry the registry of the labels of the listener
+	 * @param capacity the minimal number of records of the queue
+	 */
+	public AsyncLabelWriter(StateLabel listener, LabelRegistry registry, int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1; // a power of two
+		this.listener = listener;
+		this.records = new Record[size];
+		for (int i = 0; i < size; i++) {
+			this.records[i] = new Record(registry);
+		}
+		this.mask = size - 1;
+		this.head = new AtomicLong();
+		this.tail = new AtomicLong();
+		this.stopped = false;
+		this.waiting = false;
+		this.died = false;
+		this.closed = false;
+		this.end = 0;
+		this.thread = new Thread(this, "label-writer");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * Starts the writer thread.
+	 */
+	public void start() {
+		this.thread.start();
+	}
+
+	/**
+	 * Hands over the labels of a state. The set of labels is copied.
+	 * 
+	 * @param id     the id of the state
+	 * @param set    the id of the set of labels
+	 * @param labels the labels of the state
+	 */
+	public void addState(int id, int set, LabelSet labels) {
+		if (this.closed) {
+			return;
+		}
+		Record record = this.claim();
+		record.kind = STATE;
+		record.source = id;
+		record.set = set;
+		record.labels.set(labels);
+		this.publish();
+	}
+
+	/**
+	 * Hands over the labels of a state together with their snapshot, which is
+	 * materialized by the writer thread. The labels and the snapshot are copied.
+	 * 
+	 * @param id     the id of the state
+	 * @param labels the labels of the state, with a snapshot
+	 */
+	public void addSnapshot(int id, LabelSet labels) {
+		if (this.closed) {
+			return;
+		}
+		Record record = this.claim();
+		record.kind = SNAPSHOT;
+		record.source = id;
+		record.labels.set(labels);
+		record.snapshot.set(labels.getSnapshot());
+		this.publish();
+	}
+
+	/**
+	 * Hands over a transition.
+	 * 
+	 * @param source the id of the source state
+	 * @param target the id of the target state
+	 */
+	public void addTransition(int source, int target) {
+		if (this.closed) {
+			return;
+		}
+		Record record = this.claim();
+		record.kind = TRANSITION;
+		record.source = source;
+		record.target = target;
+		this.publish();
+	}
+
+	/**
+	 * Waits until the writer thread has formatted all records handed over.
+	 */
+	public void drain() {
+		this.drain(this.tail.get());
+	}
+
+	/**
+	 * Discards the records handed over from now on and waits until the writer
+	 * thread has formatted the records handed over so far. Used when JPF is
+	 * terminated, while the search thread may still be running, so that the wait
+	 * does not depend on the search.
+	 */
+	public void close() {
+		this.end = this.tail.get();
+		this.closed = true;
+		this.drain(this.end);
+	}
+
+	/**
+	 * Waits until the writer thread has formatted the given number of records.
+	 * 
+	 * @param target the number of records handed over to wait for
+	 */
+	private void drain(long target) {
+		for (int attempt = 0; this.head.get() < target; attempt++) {
+			if (this.thread.isAlive()) {
+				pause(attempt);
+			} else {
+				this.takeOver();
+			}
+		}
+	}
+
+	/**
+	 * Tests whether the current thread is the writer thread.
+	 * 
+	 * @return true if the current thread is the writer thread, false otherwise
+	 */
+	public boolean isWriterThread() {
+		return Thread.currentThread() == this.thread;
+	}
+
+	/**
+	 * Waits until the writer thread has formatted all records handed over and
+	 * stops it.
+	 */
+	public void stop() {
+		this.stopped = true;
+		LockSupport.unpark(this.thread);
+		try {
+			this.thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.drain();
+	}
+
+	/**
+	 * Takes the records from the queue and passes them to the listener, until the
+	 * writer is stopped. Once it has yielded a number of times on an empty queue,
+	 * the writer thread announces that it is waiting, checks the queue once more
+	 * and parks until it is unparked by publish or stop.
+	 */
+	@Override
+	public void run() {
+		int attempt = 0;
+		while (true) {
+			long h = this.head.get();
+			if (h == this.tail.get()) {
+				if (this.stopped && h == this.tail.get()) {
+					return;
+				}
+				if (attempt < SPINS) {
+					Thread.yield();
+					attempt++;
+				} else {
+					this.waiting = true;
+					if (h == this.tail.get() && !this.stopped) {
+						LockSupport.park(this);
+					}
+					this.waiting = false;
+				}
+			} else {
+				this.process(h);
+				attempt = 0;
+			}
+		}
+	}
+
+	/**
+	 * Passes the record at the head of the queue to the listener and removes it
+	 * from the queue. The listener is locked meanwhile, so that a checkpoint sees
+	 * the labelling of whole states only. A record handed over after the writer
+	 * was closed is removed without being passed to the listener.
+	 * 
+	 * @param h the number of records taken so far
+	 */
+	private void process(long h) {
+		Record record = this.records[(int) h & this.mask];
+		try {
+			synchronized (this.listener) {
+				boolean discarded = this.closed && h >= this.end; // handed over after the writer was closed
+				if (discarded) {
+					// not part of the labelling
+				} else if (record.kind == STATE) {
+					this.listener.labelState(record.source, record.set, record.labels);
+				} else if (record.kind == SNAPSHOT) {
+					this.listener.labelSnapshot(record.source, record.snapshot, record.labels);
+				} else {
+					this.listener.labelTransition(record.source, record.target);
+				}
+			}
+		} catch (RuntimeException e) {
+			System.out.println("Listener could not format the labelling of state " + record.source);
+			e.printStackTrace();
+		}
+		this.head.lazySet(h + 1);
+	}
+
+	/**
+	 * Passes the record at the head of the queue, if any, to the listener on
+	 * behalf of the writer thread, which has died. Both the search thread and a
+	 * thread waiting for the queue to drain may do so; since they lock the
+	 * listener and only then determine the head of the queue, each record is
+	 * passed to the listener exactly once.
+	 */
+	private void takeOver() {
+		synchronized (this.listener) {
+			if (!this.died) {
+				this.died = true;
+				System.out.println("The thread formatting the labelling has died; the labelling is formatted by "
+						+ Thread.currentThread().getName() + " instead");
+			}
+			long h = this.head.get();
+			if (h != this.tail.get()) {
+				this.process(h);
+			}
+		}
+	}
+
+	/**
+	 * Returns the next free record, waiting while the queue is full. Should the
+	 * writer thread have died, the record at the head of the queue is passed to
+	 * the listener by the search thread instead.
+	 * 
+	 * @return the next free record
+	 */
+	private Record claim() {
+		long t = this.tail.get();
+		for (int attempt = 0; t - this.head.get() > this.mask; attempt++) {
+			if (this.thread.isAlive()) {
+				pause(attempt);
+			} else {
+				this.takeOver();
+			}
+		}
+		return this.records[(int) t & this.mask];
+	}
+
+	/**
+	 * Hands the claimed record over to the writer thread, and unparks the writer
+	 * thread if it is waiting for a record. Since both the tail and the flag are
+	 * volatile, either the writer thread sees the record before it parks or the
+	 * search thread sees that it is waiting.
+	 */
+	private void publish() {
+		this.tail.set(this.tail.get() + 1);
+		if (this.waiting) {
+			LockSupport.unpark(this.thread);
+		}
+	}
+
+	/**
+	 * Waits for the writer thread while the queue is full, or until it has drained:
+	 * first by yielding, then by sleeping briefly.
+	 * 
+	 * @param attempt the number of times waited before
+	 */
+	private static void pause(int attempt) {
+		if (attempt < SPINS) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(WAIT);
+		}
+	}
+
+	/**
+	 * A state, a snapshot of a state or a transition.
+	 */
+	private static class Record {
+		private int kind; // STATE, SNAPSHOT or TRANSITION
+		private int source; // the id of the state or of the source of the transition
+		private int target; // the id of the target of the transition
+		private int set; // the id of the set of labels of the state
+		private final LabelSet labels; // the labels of the state
+		private final LabelSnapshot snapshot; // the snapshot of the labels of the state
+
+		/**
+		 * Creates an empty record.
+		 * 
+		 * @param registry the registry of the labels
+		 */
+		private Record(LabelRegistry registry) {
+			this.labels = new LabelSet(registry);
+			this.snapshot = new LabelSnapshot();
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.search.Search;
+
+/**
+ * Outputs the labels of the state space to a file, named &lt;name of system
+ * under test&gt;.labb, in a compact binary format. The file can be converted
+ * to the text format of TextSink and to the dot format of DotSink by the
+ * LabelConverter.
+ * 
+ * The file consists of the following parts, in which a varint is an unsigned
+ * variable length integer as written by {@link ChannelWriter#writeVarint(long)}
+ * and a string is its length as a varint followed by its UTF-8 encoding.
+ * <ol>
+ * <li>A header: the magic number 0x4A4C4142 and the version 1, both as four
+ * bytes.</li>
+ * <li>A record for each labeled state: the difference between its id and the id
+ * of the state of the previous record (-1 for the first record), zigzag encoded
+ * as a varint, the number of its labels as a varint, and the indices of its
+ * labels in increasing order, the first as a varint and each subsequent one as
+ * the varint difference with its predecessor.</li>
+ * <li>An index: the number of entries as a varint, followed by an entry for
+ * every 1024th record, starting with the first: the offset of the record in the
+ * file as a varint and the id of the state of the previous record, zigzag
+ * encoded as a varint. Reading can start at any indexed record.</li>
+ * <li>A dictionary: the number of labels as a varint, followed by the name and
+ * the description of each label, as strings, in the order of their index.</li>
+ * <li>A footer of 28 bytes: the number of records, the offset of the index and
+ * the offset of the dictionary, each as eight bytes, followed by the magic
+ * number as four bytes.</li>
+ * </ol>
+ * 
+ * By default, the records are kept in memory until the file is written. If the
+ * property label.StateLabelBinary.stream is set to true, they are instead
+ * written to the file &lt;name of system under test&gt;.labb.part as the states
+ * are labelled, after room for the header, and that file is completed and
+ * renamed once the search has finished. If checkpointing is enabled, they are
+ * always streamed.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class BinarySink implements LabelSink {
+	/**
+	 * The magic number identifying the format.
+	 */
+	public static final int MAGIC = 0x4A4C4142;
+
+	/**
+	 * The version of the format.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The size of the header in bytes.
+	 */
+	public static final int HEADER_SIZE = 8;
+
+	/**
+	 * The size of the footer in bytes.
+	 */
+	public static final int FOOTER_SIZE = 28;
+
+	/**
+	 * The number of records between subsequent entries of the index.
+	 */
+	public static final int INDEX_INTERVAL = 1024;
+
+	private boolean stream; // whether the records are streamed to a file
+	private StateOutput states; // the records
+	private int previous; // the id of the state of the last record
+	private long records; // number of records
+	private long[] index; // the offset and previous id of every indexed record
+	private int indexSize; // number of entries of the index
+
+	/**
+	 * Initializes this sink.
+	 * 
+	 * @param configuration JPF's configuration
+	 */
+	public BinarySink(Config configuration) {
+		this.stream = configuration.getBoolean("label.StateLabelBinary.stream", false)
+				|| Checkpoints.isEnabled(configuration);
+		this.states = new StateOutput();
+		this.previous = -1;
+		this.records = 0;
+		this.index = new long[32];
+		this.indexSize = 0;
+	}
+
+	/**
+	 * Opens the file to which the records are streamed, if any.
+	 */
+	@Override
+	public void searchStarted(Search search) {
+		if (this.stream) {
+			File file = new File(LabelSink.getOutputName(search) + ".labb.part");
+			try {
+				this.states = new StateOutput(file, false, HEADER_SIZE);
+			} catch (FileNotFoundException e) {
+				System.out.println("Listener could not write to the file " + file.getName());
+			}
+		}
+	}
+
+	/**
+	 * Writes the record of a state.
+	 */
+	@Override
+	public void labelState(int id, LabelSet labels) {
+		if (!labels.isEmpty()) {
+			ChannelWriter writer = this.states.getWriter();
+			if (this.records % INDEX_INTERVAL == 0) {
+				if (2 * this.indexSize == this.index.length) {
+					this.index = Arrays.copyOf(this.index, 2 * this.index.length);
+				}
+				this.index[2 * this.indexSize] = HEADER_SIZE + writer.size();
+				this.index[2 * this.indexSize + 1] = this.previous;
+				this.indexSize++;
+			}
+			try {
+				writer.writeVarint(zigzag((long) id - this.previous));
+				writer.writeVarint(labels.size());
+				int last = 0;
+				for (int i = labels.next(0); i >= 0; i = labels.next(i + 1)) {
+					writer.writeVarint(i - last);
+					last = i;
+				}
+			} catch (IOException e) {
+				this.states.failed(e);
+			}
+			this.previous = id;
+			this.records++;
+		}
+	}
+
+	/**
+	 * Transitions are not part of the labelling.
+	 */
+	@Override
+	public void labelTransition(int source, int target) {
+	}
+
+	@Override
+	public void writeStateLabels(Search search, String name, LabelRegistry labels) {
+		try {
+			byte[] header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).array();
+			long recordsSize = this.states.getWriter().size();
+			ChannelWriter writer = new ChannelWriter(this.states.moveTo(new File(name + ".labb"), header));
+			try {
+				long indexOffset = HEADER_SIZE + recordsSize;
+				writer.writeVarint(this.indexSize);
+				for (int i = 0; i < this.indexSize; i++) {
+					writer.writeVarint(this.index[2 * i]).writeVarint(zigzag(this.index[2 * i + 1]));
+				}
+
+				long dictionaryOffset = HEADER_SIZE + recordsSize + writer.size();
+				int n = labels.size();
+				writer.writeVarint(n);
+				for (int i = 0; i < n; i++) {
+					Label label = labels.get(i);
+					writer.writeString(label.getName()).writeString(label.getDescription());
+				}
+
+				writer.writeLong(this.records).writeLong(indexOffset).writeLong(dictionaryOffset).writeInt(MAGIC);
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Listener could not write to the output file " + name + ".labb");
+			search.terminate();
+		}
+	}
+
+	/**
+	 * Writes the part of the labelling streamed so far to the file.
+	 */
+	@Override
+	public void flush() throws IOException {
+		this.states.flush();
+	}
+
+	/**
+	 * Removes the file to which the records were streamed, if any.
+	 */
+	@Override
+	public void searchFinished(Search search) {
+		this.states.delete();
+	}
+
+	/**
+	 * Maps a signed number to an unsigned one, so that numbers of small magnitude
+	 * are mapped to small numbers.
+	 * 
+	 * @param l a number
+	 * @return the zigzag encoding of the number
+	 */
+	static long zigzag(long l) {
+		return (l << 1) ^ (l >> 63);
+	}
+
+	/**
+	 * Maps a zigzag encoded number back to the signed number.
+	 * 
+	 * @param l the zigzag encoding of a number
+	 * @return the number
+	 */
+	static long unzigzag(long l) {
+		return (l >>> 1) ^ -(l & 1);
+	}
+}
@@ -24,10 +24,10 @@ import gov.nasa.jpf.jvm.bytecode.PUTSTATIC;
 import gov.nasa.jpf.search.Search;
 import gov.nasa.jpf.util.FieldSpec;
 import gov.nasa.jpf.vm.ClassInfo;
-import gov.nasa.jpf.vm.ClassLoaderInfo;
 import gov.nasa.jpf.vm.ElementInfo;
 import gov.nasa.jpf.vm.FieldInfo;
 import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.ThreadInfo;
 
 /**
  * A labeling function for a static boolean attribute.
@@ -40,6 +40,12 @@ import gov.nasa.jpf.vm.Instruction;
  */
 public class BooleanStaticField extends TransitionLabelMaker {
 	private String[] fieldName; // field signature
+	private FieldSpec[] fieldSpec; // field specifications
+	private String[] mangledName; // mangled names of the fields
+	private MatchCache.Match[] fieldMatch; // the fields, as results of matching
+	private StaticField[] field; // handles of the fields
+	private MatchCache<FieldInfo> matches; // fields matched against the specifications
+	private LabelCache labelCache; // labels created so far
 	private Boolean previousValue;
 
 	/**
@@ -47,6 +53,17 @@ public class BooleanStaticField extends TransitionLabelMaker {
 	 */
 	private BooleanStaticField(Config configuration) {
 		fieldName = getConfiguredProperty(configuration, "label.BooleanStaticField.field");
+		fieldSpec = createFieldSpecs(fieldName);
+		matches = new MatchCache<FieldInfo>();
+		labelCache = new LabelCache();
+		mangledName = new String[fieldName.length];
+		fieldMatch = new MatchCache.Match[fieldName.length];
+		field = new StaticField[fieldName.length];
+		for (int i = 0; i < fieldName.length; i++) {
+			mangledName[i] = fieldName[i].replaceAll("[$.]", "_");
+			fieldMatch[i] = new MatchCache.Match(i, mangledName[i]);
+			field[i] = new StaticField(fieldName[i]);
+		}
 		previousValue = null;
 	}
 
@@ -60,65 +77,86 @@ public class BooleanStaticField extends TransitionLabelMaker {
 		return new BooleanStaticField(configuration);
 	}
 
+	@Override
+	public Class<?>[] getInstructionTypes() {
+		return new Class<?>[] { PUTSTATIC.class };
+	}
+
+	@Override
+	public void classLoaded(ClassInfo loadedClass) {
+		for (StaticField f : field) {
+			f.classLoaded(loadedClass);
+		}
+	}
+
 	@Override
 	public Set<Label> getStateLabels(Search search) {
 		Set<Label> labels = new HashSet<Label>();
-		for (String field : fieldName) {
-			Boolean value = getValue(field);
+		for (int i = 0; i < fieldName.length; i++) {
+			Boolean value = getValue(i);
 			if (value != null) {
-				labels.add(new Label(value + "__" + field.replaceAll("[$.]", "_"), field + " = " + value));
+				labels.add(getLabel(fieldMatch[i], value ? 1 : 0));
 			}
 		}
 		return labels;
 	}
 
 	@Override
-	public Set<Label> breakAfter(Instruction executedInstruction) {
+	public void getStateLabels(Search search, LabelSet labels) {
+		for (int i = 0; i < fieldName.length; i++) {
+			Boolean value = getValue(i);
+			if (value != null) {
+				labels.add(this, fieldMatch[i], value ? 1 : 0);
+			}
+		}
+	}
+
+	@Override
+	public Label getLabel(MatchCache.Match match, int value) {
+		boolean v = value != 0;
+		String mangled = match.getSignature();
+		String field = fieldName[match.getIndex()];
+		return labelCache.computeIfAbsent(mangled, value, () -> new Label(v + "__" + mangled, field + " = " + v));
+	}
+
+	@Override
+	public boolean breakAfter(ThreadInfo thread, Instruction executedInstruction, LabelSet labels) {
 		// static attributes are set in PUTSTATIC instructions
 		if (executedInstruction instanceof PUTSTATIC) {
 			PUTSTATIC instruction = (PUTSTATIC) executedInstruction;
 			FieldInfo fieldInfo = instruction.getFieldInfo();
 			// if the instruction modifies an attribute of interest, break the transition
-			for (String field : fieldName) {
-				if (FieldSpec.createFieldSpec(field).matches(fieldInfo) && !getValue(field).equals(previousValue)) {
-					return new HashSet<Label>();
+			for (int i : matchField(fieldInfo, fieldSpec, matches).getIndices()) {
+				if (!getValue(i).equals(previousValue)) {
+					return true;
 				}
 			}
 		}
-		return null;
+		return false;
 	}
 
 	@Override
-	public void beforeInstruction(Instruction instructionToExecute) {
+	public void beforeInstruction(ThreadInfo thread, Instruction instructionToExecute) {
 		if (instructionToExecute instanceof PUTSTATIC) {
 			PUTSTATIC instruction = (PUTSTATIC) instructionToExecute;
 			FieldInfo fieldInfo = instruction.getFieldInfo();
-			for (String field : fieldName) {
-				if (FieldSpec.createFieldSpec(field).matches(fieldInfo)) {
-					previousValue = getValue(field);
-				}
+			for (int i : matchField(fieldInfo, fieldSpec, matches).getIndices()) {
+				previousValue = getValue(i);
 			}
 		}
 	}
 
 	/**
-	 * Returns the value of the given static boolean field.
+	 * Returns the value of the static boolean field with the given index.
 	 * 
-	 * @param field the signature of the static boolean field
+	 * @param i the index of the static boolean field
 	 * @return the value of the field if the class is resolved, else null.
 	 */
-	private Boolean getValue(String fieldSignature) {
-		ClassLoaderInfo loader = ClassLoaderInfo.getCurrentClassLoader();
-		int index = fieldSignature.lastIndexOf('.');
-		if (loader != null && index > 0) {
-			ClassInfo clazz = loader.tryGetResolvedClassInfo(fieldSignature.substring(0, index).trim());
-			if (clazz != null) {
-				FieldInfo field = clazz.getStaticField(fieldSignature.substring(index + 1).trim());
-				ElementInfo element = clazz.getStaticElementInfo();
-				if (element != null && field != null && field.isBooleanField()) {
-					return element.getBooleanField(field);
-				}
-			}
+	private Boolean getValue(int i) {
+		FieldInfo fieldInfo = field[i].getFieldInfo();
+		ElementInfo element = field[i].getElementInfo();
+		if (element != null && fieldInfo.isBooleanField()) {
+			return element.getBooleanField(fieldInfo);
 		}
 		return null;
 	}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A buffered reader of binary data from a channel, the counterpart of the
+ * binary methods of {@link ChannelWriter}.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class ChannelReader {
+	private static final int DEFAULT_CAPACITY = 65536; // default size of the buffer in bytes
+
+	private ReadableByteChannel channel; // the channel read from
+	private ByteBuffer buffer; // the buffer
+
+	/**
+	 * Creates a reader with a buffer of the default size.
+	 * 
+	 * @param channel the channel to read from
+	 */
+	public ChannelReader(ReadableByteChannel channel) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(DEFAULT_CAPACITY);
+		this.buffer.flip(); // the buffer is empty
+	}
+
+	/**
+	 * Reads a byte.
+	 * 
+	 * @return the byte, as an integer between 0 and 255
+	 * @throws IOException if the channel cannot be read or has been exhausted
+	 */
+	public int readByte() throws IOException {
+		if (!this.buffer.hasRemaining()) {
+			this.fill();
+		}
+		return this.buffer.get() & 0xFF;
+	}
+
+	/**
+	 * Reads an integer written as four bytes, most significant byte first.
+	 * 
+	 * @return the integer
+	 * @throws IOException if the channel cannot be read or has been exhausted
+	 */
+	public int readInt() throws IOException {
+		int i = 0;
+		for (int b = 0; b < 4; b++) {
+			i = (i << 8) | this.readByte();
+		}
+		return i;
+	}
+
+	/**
+	 * Reads a long written as eight bytes, most significant byte first.
+	 * 
+	 * @return the long
+	 * @throws IOException if the channel cannot be read or has been exhausted
+	 */
+	public long readLong() throws IOException {
+		long l = 0;
+		for (int b = 0; b < 8; b++) {
+			l = (l << 8) | this.readByte();
+		}
+		return l;
+	}
+
+	/**
+	 * Reads a variable length integer.
+	 * 
+	 * @return the integer
+	 * @throws IOException if the channel cannot be read, has been exhausted or
+	 *                     does not contain a valid variable length integer
+	 */
+	public long readVarint() throws IOException {
+		long l = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = this.readByte();
+			l |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return l;
+			}
+		}
+		throw new IOException("Invalid variable length integer");
+	}
+
+	/**
+	 * Reads a string written as its length, as a variable length integer,
+	 * followed by its UTF-8 encoding.
+	 * 
+	 * @return the string
+	 * @throws IOException if the channel cannot be read, has been exhausted or
+	 *                     does not contain a valid string
+	 */
+	public String readString() throws IOException {
+		long length = this.readVarint();
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("Invalid string length " + length);
+		}
+		byte[] bytes = new byte[(int) length];
+		int offset = 0;
+		while (offset < bytes.length) {
+			if (!this.buffer.hasRemaining()) {
+				this.fill();
+			}
+			int n = Math.min(this.buffer.remaining(), bytes.length - offset);
+			this.buffer.get(bytes, offset, n);
+			offset += n;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Refills the buffer from the channel.
+	 * 
+	 * @throws IOException if the channel cannot be read or has been exhausted
+	 */
+	private void fill() throws IOException {
+		this.buffer.clear();
+		int n;
+		do {
+			n = this.channel.read(this.buffer);
+		} while (n == 0);
+		this.buffer.flip();
+		if (n < 0) {
+			throw new EOFException();
+		}
+	}
+}
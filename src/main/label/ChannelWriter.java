@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A buffered writer of text and binary data to a channel. Integers are
+ * formatted directly into the buffer and ASCII strings are copied into it, so
+ * that writing does not create any objects. Other strings are encoded with the
+ * default charset of the platform. The writer is reusable: it can be flushed at
+ * any time and the buffer is retained.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class ChannelWriter {
+	private static final int DEFAULT_CAPACITY = 65536; // default size of the buffer in bytes
+	private static final int MAX_DIGITS = 11; // maximal number of characters of an integer
+	private static final int MAX_VARINT = 10; // maximal number of bytes of a variable length integer
+
+	private WritableByteChannel channel; // the channel written to
+	private ByteBuffer buffer; // the buffer
+	private byte[] digits; // the digits of the integer being written, in reverse order
+	private long written; // number of bytes written to the channel
+
+	/**
+	 * Creates a writer with a buffer of the default size.
+	 * 
+	 * @param channel the channel to write to
+	 */
+	public ChannelWriter(WritableByteChannel channel) {
+		this(channel, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a writer with a buffer of the given size.
+	 * 
+	 * @param channel  the channel to write to
+	 * @param capacity the size of the buffer in bytes, at least 11
+	 */
+	public ChannelWriter(WritableByteChannel channel, int capacity) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(Math.max(capacity, MAX_DIGITS));
+		this.digits = new byte[MAX_DIGITS];
+		this.written = 0;
+	}
+
+	/**
+	 * Writes the given character.
+	 * 
+	 * @param c a character
+	 * @return this writer
+	 * @throws IOException if the channel cannot be written to
+	 */
+	public ChannelWriter write(char c) throws IOException {
+		if (c >= 0x80) {
+			return this.write(String.valueOf(c));
+		}
+		if (!this.buffer.hasRemaining()) {
+			this.drain();
+		}
+		this.buffer.put((byte) c);
+		return this;
+	}
+
+	/**
+	 * Writes the decimal representation of the given integer.
+	 * 
+	 * @param i an integer
+	 * @return this writer
+	 * @throws IOException if the channel cannot be written to
+	 */
+	public ChannelWriter write(int i) throws IOException {
+		if (i == Integer.MIN_VALUE) {
+			return this.write(Integer.toString(i));
+		}
+		if (this.buffer.remaining() < MAX_DIGITS) {
+			this.drain();
+		}
+		if (i < 0) {
+			this.buffer.put((byte) '-');
+			i = -i;
+		}
+		int n = 0;
+		do {
+			this.digits[n++] = (byte) ('0' + i % 10);
+			i /= 10;
+		} while (i != 0);
+		while (n > 0) {
+			this.buffer.put(this.digits[--n]);
+		}
+		return this;
+	}
+
+	/**
+	 * Writes the given string.
+	 * 
+	 * @param s a string
+	 * @return this writer
+	 * @throws IOException if the channel cannot be written to
+	 */
+	public ChannelWriter write(String s) throws IOException {
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			if (s.charAt(i) >= 0x80) {
+				return this.write(s.getBytes());
+			}
+		}
+		for (int i = 0; i < length; i++) {
+			if (!this.buffer.hasRemaining()) {
+				this.drain();
+			}
+			this.buffer.put((byte) s.charAt(i));
+		}
+		return this;
+	}
+
+	/**
+	 * Writes the given bytes.
+	 * 
+	 * @param bytes an array of bytes
+	 * @return this writer
+	 * @throws IOException if the channel cannot be written to
+	 */
+	public ChannelWriter write(byte[] bytes) throws IOException {
+		int offset = 0;
+		while (offset < bytes.length) {
+			if (!this.buffer.hasRemaining()) {
+				this.drain();
+			}
+			int n = Math.min(this.buffer.remaining(), bytes.length - offset);
+			this.buffer.put(bytes, offset, n);
+			offset += n;
+		}
+		return this;
+	}
+
+	/**
+	 * Writes the given byte.
+	 * 
+	 * @param b a byte, given by its eight low-order bits
+	 * @return this writer
+	 * @throws IOException if the channel cannot be written to
+	 */
+	public ChannelWriter writeByte(int b) throws IOException {
+		if (!this.buffer.hasRemaining()) {
+			this.drain();
+		}
+		this.buffer.put((byte) b);
+		return this;
+	}
+
+	/**
+	 * Writes the given integer as four bytes, most significant byte first.
+	 * 
+	 * @param i an integer
+	 * @return this writer
+	 * @throws IOException if the channel cannot be written to
+	 */
+	public ChannelWriter writeInt(int i) throws IOException {
+		if (this.buffer.remaining() < 4) {
+			this.drain();
+		}
+		this.buffer.putInt(i);
+		return this;
+	}
+
+	/**
+	 * Writes the given long as eight bytes, most significant byte first.
+	 * 
+	 * @param l a long
+	 * @return this writer
+	 * @throws IOException if the channel cannot be written to
+	 */
+	public ChannelWriter writeLong(long l) throws IOException {
+		if (this.buffer.remaining() < 8) {
+			this.drain();
+		}
+		this.buffer.putLong(l);
+		return this;
+	}
+
+	/**
+	 * Writes the given long, interpreted as an unsigned number, as a variable
+	 * length integer: seven bits per byte, least significant group first, with
+	 * the high-order bit of each byte but the last set.
+	 * 
+	 * @param l a long
+	 * @return this writer
+	 * @throws IOException if the channel cannot be written to
+	 */
+	public ChannelWriter writeVarint(long l) throws IOException {
+		if (this.buffer.remaining() < MAX_VARINT) {
+			this.drain();
+		}
+		while ((l & ~0x7FL) != 0) {
+			this.buffer.put((byte) ((l & 0x7F) | 0x80));
+			l >>>= 7;
+		}
+		this.buffer.put((byte) l);
+		return this;
+	}
+
+	/**
+	 * Writes the given string as its length, as a variable length integer,
+	 * followed by its UTF-8 encoding.
+	 * 
+	 * @param s a string
+	 * @return this writer
+	 * @throws IOException if the channel cannot be written to
+	 */
+	public ChannelWriter writeString(String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		this.writeVarint(bytes.length);
+		return this.write(bytes);
+	}
+
+	/**
+	 * Returns the number of bytes written by this writer so far, including those
+	 * which are still buffered.
+	 * 
+	 * @return the number of bytes written
+	 */
+	public long size() {
+		return this.written + this.buffer.position();
+	}
+
+	/**
+	 * Writes the contents of the buffer to the channel.
+	 * 
+	 * @throws IOException if the channel cannot be written to
+	 */
+	public void flush() throws IOException {
+		this.drain();
+	}
+
+	/**
+	 * Flushes this writer and closes the channel.
+	 * 
+	 * @throws IOException if the channel cannot be written to or closed
+	 */
+	public void close() throws IOException {
+		try {
+			this.drain();
+		} finally {
+			this.channel.close();
+		}
+	}
+
+	/**
+	 * Writes the contents of the buffer to the channel and clears the buffer.
+	 * 
+	 * @throws IOException if the channel cannot be written to
+	 */
+	private void drain() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.written += this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import gov.nasa.jpf.Config;
+
+/**
+ * Decides when the labelling produced so far is checkpointed and keeps the
+ * enumeration of the labels on disk. A checkpoint is taken every number of new
+ * states given by the property label.checkpoint.states and every number of
+ * seconds given by the property label.checkpoint.seconds. Checkpointing is
+ * disabled if neither property is set to a positive value.
+ * 
+ * The labels are appended to the file &lt;name of system under
+ * test&gt;.labels, one label per line, in the same form as in the first line of
+ * the .lab file. Only the labels registered since the previous checkpoint are
+ * written, so that a checkpoint does not rewrite what is already on disk.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class Checkpoints {
+	private int interval; // number of new states between checkpoints, 0 if not counted
+	private long period; // nanoseconds between checkpoints, 0 if not timed
+	private int states; // number of new states since the last checkpoint
+	private long last; // time of the last checkpoint, in nanoseconds
+	private File file; // the file to which the labels are appended, null if not opened
+	private FileChannel channel; // the channel of the file, null if not opened
+	private ChannelWriter writer; // the writer of the labels, null if not opened
+	private int written; // number of labels written to the file
+
+	/**
+	 * Initializes the checkpoints from the given configuration.
+	 * 
+	 * @param configuration JPF's configuration
+	 */
+	public Checkpoints(Config configuration) {
+		this.interval = Math.max(0, configuration.getInt("label.checkpoint.states", 0));
+		this.period = Math.max(0L, configuration.getLong("label.checkpoint.seconds", 0L)) * 1000000000L;
+		this.states = 0;
+		this.last = System.nanoTime();
+		this.file = null;
+		this.channel = null;
+		this.writer = null;
+		this.written = 0;
+	}
+
+	/**
+	 * Tests whether checkpointing is enabled in the given configuration.
+	 * 
+	 * @param configuration JPF's configuration
+	 * @return true if checkpoints are taken, false otherwise
+	 */
+	public static boolean isEnabled(Config configuration) {
+		return configuration.getInt("label.checkpoint.states", 0) > 0
+				|| configuration.getLong("label.checkpoint.seconds", 0L) > 0;
+	}
+
+	/**
+	 * Tests whether checkpointing is enabled.
+	 * 
+	 * @return true if checkpoints are taken, false otherwise
+	 */
+	public boolean isEnabled() {
+		return this.interval > 0 || this.period > 0;
+	}
+
+	/**
+	 * Opens the file to which the labels are appended.
+	 * 
+	 * @param name the name of the system under test
+	 */
+	public void start(String name) {
+		this.file = new File(name + ".labels");
+		try {
+			this.channel = new FileOutputStream(this.file).getChannel();
+			this.writer = new ChannelWriter(this.channel);
+		} catch (FileNotFoundException e) {
+			System.out.println("Listener could not write to the file " + this.file.getName());
+		}
+		this.last = System.nanoTime();
+	}
+
+	/**
+	 * Records that a new state has been labelled.
+	 * 
+	 * @return true if a checkpoint is due, false otherwise
+	 */
+	public boolean stateAdded() {
+		if (this.interval > 0 && ++this.states >= this.interval) {
+			return true;
+		}
+		return this.period > 0 && System.nanoTime() - this.last >= this.period;
+	}
+
+	/**
+	 * Appends the labels registered since the previous checkpoint to the file and
+	 * forces them to disk. Afterwards, the next checkpoint is due after the
+	 * configured number of states or seconds.
+	 * 
+	 * @param labels the registry of all labels
+	 */
+	public void write(LabelRegistry labels) {
+		this.states = 0;
+		this.last = System.nanoTime();
+		if (this.writer != null) {
+			try {
+				int n = labels.size();
+				for (; this.written < n; this.written++) {
+					this.writer.write(this.written).write("=\"").write(labels.get(this.written).getName()).write('"')
+							.write(System.lineSeparator());
+				}
+				this.writer.flush();
+				this.channel.force(false);
+			} catch (IOException e) {
+				System.out.println("Listener could not write to the file " + this.file.getName());
+				this.close();
+			}
+		}
+	}
+
+	/**
+	 * Closes the file to which the labels were appended and deletes it, since the
+	 * labelling has been written completely.
+	 */
+	public void delete() {
+		if (this.file != null) {
+			this.close();
+			this.file.delete();
+			this.file = null;
+		}
+	}
+
+	/**
+	 * Closes the file to which the labels are appended.
+	 */
+	private void close() {
+		if (this.writer != null) {
+			try {
+				this.writer.close();
+			} catch (IOException e) {
+				// the file is no longer written to
+			}
+			this.writer = null;
+			this.channel = null;
+		}
+	}
+}
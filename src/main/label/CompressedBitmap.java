@@ -0,0 +1,657 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A compressed set of non-negative integers, organized like a roaring bitmap.
+ * The integers are partitioned by their high 16 bits into containers, each
+ * holding the low 16 bits of its integers. A container with at most 4096
+ * integers is a sorted array of chars and a container with more integers is a
+ * bitmap of 65536 bits. Hence, a sparse set takes about two bytes per integer
+ * and a dense set about one bit per integer. The operations on sets combine
+ * the containers with the same key pairwise, merging arrays and testing the
+ * integers of an array against a bitmap, so that only the combination of two
+ * bitmaps takes time proportional to the size of a bitmap.
+ * 
+ * Integers are added fastest in increasing order, as is the case for the ids
+ * of the states as they are labelled.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class CompressedBitmap {
+	private static final int ARRAY_MAX = 4096; // maximal number of integers of an array container
+	private static final int BITMAP_WORDS = 1024; // number of words of a bitmap container
+
+	private char[] keys; // the high 16 bits of the integers of each container, in increasing order
+	private char[][] arrays; // the low 16 bits of the integers of each array container, null for a bitmap
+	private long[][] bitmaps; // the bits of each bitmap container, null for an array
+	private int[] cardinalities; // number of integers of each container
+	private int size; // number of containers
+
+	/**
+	 * Creates an empty set.
+	 */
+	public CompressedBitmap() {
+		this(4);
+	}
+
+	/**
+	 * Creates an empty set with room for the given number of containers.
+	 * 
+	 * @param capacity the initial number of containers
+	 */
+	private CompressedBitmap(int capacity) {
+		capacity = Math.max(capacity, 1);
+		this.keys = new char[capacity];
+		this.arrays = new char[capacity][];
+		this.bitmaps = new long[capacity][];
+		this.cardinalities = new int[capacity];
+		this.size = 0;
+	}
+
+	/**
+	 * Adds the given integer to this set.
+	 * 
+	 * @param x a non-negative integer
+	 */
+	public void add(int x) {
+		char key = (char) (x >>> 16);
+		char low = (char) x;
+		int c;
+		if (this.size > 0 && this.keys[this.size - 1] == key) {
+			c = this.size - 1;
+		} else {
+			c = this.find(key);
+			if (c < 0) {
+				c = -c - 1;
+				this.insert(c, key, new char[4], null, 0);
+			}
+		}
+
+		int cardinality = this.cardinalities[c];
+		long[] bitmap = this.bitmaps[c];
+		if (bitmap != null) {
+			long mask = 1L << low;
+			if ((bitmap[low >>> 6] & mask) == 0) {
+				bitmap[low >>> 6] |= mask;
+				this.cardinalities[c] = cardinality + 1;
+			}
+			return;
+		}
+
+		char[] array = this.arrays[c];
+		int position;
+		if (cardinality == 0 || array[cardinality - 1] < low) {
+			position = cardinality;
+		} else {
+			position = Arrays.binarySearch(array, 0, cardinality, low);
+			if (position >= 0) {
+				return;
+			}
+			position = -position - 1;
+		}
+		if (cardinality == ARRAY_MAX) {
+			bitmap = toBitmap(array, cardinality);
+			bitmap[low >>> 6] |= 1L << low;
+			this.arrays[c] = null;
+			this.bitmaps[c] = bitmap;
+		} else {
+			if (cardinality == array.length) {
+				array = Arrays.copyOf(array, Math.min(2 * cardinality, ARRAY_MAX));
+				this.arrays[c] = array;
+			}
+			System.arraycopy(array, position, array, position + 1, cardinality - position);
+			array[position] = low;
+		}
+		this.cardinalities[c] = cardinality + 1;
+	}
+
+	/**
+	 * Tests whether the given integer is in this set.
+	 * 
+	 * @param x an integer
+	 * @return true if the integer is in this set, false otherwise
+	 */
+	public boolean contains(int x) {
+		if (x < 0) {
+			return false;
+		}
+		int c = this.find((char) (x >>> 16));
+		if (c < 0) {
+			return false;
+		}
+		char low = (char) x;
+		if (this.bitmaps[c] != null) {
+			return (this.bitmaps[c][low >>> 6] & (1L << low)) != 0;
+		}
+		return Arrays.binarySearch(this.arrays[c], 0, this.cardinalities[c], low) >= 0;
+	}
+
+	/**
+	 * Returns the number of integers in this set.
+	 * 
+	 * @return the number of integers in this set
+	 */
+	public long cardinality() {
+		long cardinality = 0;
+		for (int c = 0; c < this.size; c++) {
+			cardinality += this.cardinalities[c];
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Tests whether this set is empty.
+	 * 
+	 * @return true if this set contains no integers, false otherwise
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Returns a copy of this set.
+	 * 
+	 * @return a copy of this set
+	 */
+	public CompressedBitmap copy() {
+		CompressedBitmap copy = new CompressedBitmap(this.size);
+		for (int c = 0; c < this.size; c++) {
+			copy.appendCopy(this, c);
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the intersection of this set and the given set.
+	 * 
+	 * @param other a set
+	 * @return the integers in both sets
+	 */
+	public CompressedBitmap and(CompressedBitmap other) {
+		CompressedBitmap result = new CompressedBitmap(Math.min(this.size, other.size));
+		int i = 0;
+		int j = 0;
+		while (i < this.size && j < other.size) {
+			if (this.keys[i] < other.keys[j]) {
+				i++;
+			} else if (this.keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				char key = this.keys[i];
+				if (this.bitmaps[i] != null && other.bitmaps[j] != null) {
+					long[] bits = this.bitmaps[i].clone();
+					long[] others = other.bitmaps[j];
+					for (int w = 0; w < BITMAP_WORDS; w++) {
+						bits[w] &= others[w];
+					}
+					result.append(key, bits);
+				} else if (this.bitmaps[i] != null) {
+					result.appendArray(key, filter(other.arrays[j], other.cardinalities[j], this.bitmaps[i], true));
+				} else if (other.bitmaps[j] != null) {
+					result.appendArray(key, filter(this.arrays[i], this.cardinalities[i], other.bitmaps[j], true));
+				} else {
+					result.appendArray(key, intersect(this.arrays[i], this.cardinalities[i], other.arrays[j],
+							other.cardinalities[j]));
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the union of this set and the given set.
+	 * 
+	 * @param other a set
+	 * @return the integers in either set
+	 */
+	public CompressedBitmap or(CompressedBitmap other) {
+		CompressedBitmap result = new CompressedBitmap(this.size + other.size);
+		int i = 0;
+		int j = 0;
+		while (i < this.size || j < other.size) {
+			if (j == other.size || (i < this.size && this.keys[i] < other.keys[j])) {
+				result.appendCopy(this, i);
+				i++;
+			} else if (i == this.size || this.keys[i] > other.keys[j]) {
+				result.appendCopy(other, j);
+				j++;
+			} else {
+				char key = this.keys[i];
+				if (this.bitmaps[i] != null && other.bitmaps[j] != null) {
+					long[] bits = this.bitmaps[i].clone();
+					long[] others = other.bitmaps[j];
+					for (int w = 0; w < BITMAP_WORDS; w++) {
+						bits[w] |= others[w];
+					}
+					result.append(key, bits);
+				} else if (this.bitmaps[i] != null) {
+					result.appendUnion(key, this.bitmaps[i], this.cardinalities[i], other.arrays[j],
+							other.cardinalities[j]);
+				} else if (other.bitmaps[j] != null) {
+					result.appendUnion(key, other.bitmaps[j], other.cardinalities[j], this.arrays[i],
+							this.cardinalities[i]);
+				} else {
+					result.appendUnion(key, this.arrays[i], this.cardinalities[i], other.arrays[j],
+							other.cardinalities[j]);
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the difference of this set and the given set.
+	 * 
+	 * @param other a set
+	 * @return the integers in this set but not in the given set
+	 */
+	public CompressedBitmap andNot(CompressedBitmap other) {
+		CompressedBitmap result = new CompressedBitmap(this.size);
+		int j = 0;
+		for (int i = 0; i < this.size; i++) {
+			while (j < other.size && other.keys[j] < this.keys[i]) {
+				j++;
+			}
+			char key = this.keys[i];
+			if (j == other.size || other.keys[j] != key) {
+				result.appendCopy(this, i);
+			} else if (this.bitmaps[i] != null && other.bitmaps[j] != null) {
+				long[] bits = this.bitmaps[i].clone();
+				long[] others = other.bitmaps[j];
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					bits[w] &= ~others[w];
+				}
+				result.append(key, bits);
+			} else if (this.bitmaps[i] != null) {
+				long[] bits = this.bitmaps[i].clone();
+				int cardinality = this.cardinalities[i];
+				char[] array = other.arrays[j];
+				for (int k = 0; k < other.cardinalities[j]; k++) {
+					long mask = 1L << array[k];
+					if ((bits[array[k] >>> 6] & mask) != 0) {
+						bits[array[k] >>> 6] &= ~mask;
+						cardinality--;
+					}
+				}
+				result.append(key, bits, cardinality);
+			} else if (other.bitmaps[j] != null) {
+				result.appendArray(key, filter(this.arrays[i], this.cardinalities[i], other.bitmaps[j], false));
+			} else {
+				result.appendArray(key, subtract(this.arrays[i], this.cardinalities[i], other.arrays[j],
+						other.cardinalities[j]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the integers in this set, in increasing order.
+	 * 
+	 * @return the integers in this set
+	 */
+	public int[] toArray() {
+		int[] values = new int[(int) this.cardinality()];
+		int n = 0;
+		for (int c = 0; c < this.size; c++) {
+			int high = this.keys[c] << 16;
+			if (this.bitmaps[c] != null) {
+				long[] bitmap = this.bitmaps[c];
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					for (long bits = bitmap[w]; bits != 0; bits &= bits - 1) {
+						values[n++] = high | (w << 6) | Long.numberOfTrailingZeros(bits);
+					}
+				}
+			} else {
+				char[] array = this.arrays[c];
+				for (int k = 0; k < this.cardinalities[c]; k++) {
+					values[n++] = high | array[k];
+				}
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Writes this set. An array container is written as the differences of its
+	 * consecutive integers and a bitmap container as its words.
+	 * 
+	 * @param writer a writer
+	 * @throws IOException if the set cannot be written
+	 */
+	public void write(ChannelWriter writer) throws IOException {
+		writer.writeVarint(this.size);
+		for (int c = 0; c < this.size; c++) {
+			int cardinality = this.cardinalities[c];
+			writer.writeVarint(this.keys[c]).writeVarint(cardinality);
+			if (this.bitmaps[c] != null) {
+				for (long word : this.bitmaps[c]) {
+					writer.writeLong(word);
+				}
+			} else {
+				int last = 0;
+				for (int k = 0; k < cardinality; k++) {
+					writer.writeVarint(this.arrays[c][k] - last);
+					last = this.arrays[c][k];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a set written by write.
+	 * 
+	 * @param reader a reader
+	 * @return the set
+	 * @throws IOException if the set cannot be read
+	 */
+	public static CompressedBitmap read(ChannelReader reader) throws IOException {
+		int size = (int) reader.readVarint();
+		CompressedBitmap bitmap = new CompressedBitmap(size);
+		for (int c = 0; c < size; c++) {
+			char key = (char) reader.readVarint();
+			int cardinality = (int) reader.readVarint();
+			if (cardinality > ARRAY_MAX) {
+				long[] bits = new long[BITMAP_WORDS];
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					bits[w] = reader.readLong();
+				}
+				bitmap.insert(c, key, null, bits, cardinality);
+			} else {
+				char[] array = new char[cardinality];
+				int last = 0;
+				for (int k = 0; k < cardinality; k++) {
+					last += (int) reader.readVarint();
+					array[k] = (char) last;
+				}
+				bitmap.insert(c, key, array, null, cardinality);
+			}
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Appends a copy of the given container of the given set.
+	 * 
+	 * @param set a set
+	 * @param c   the index of a container of the set
+	 */
+	private void appendCopy(CompressedBitmap set, int c) {
+		int cardinality = set.cardinalities[c];
+		if (set.bitmaps[c] != null) {
+			this.insert(this.size, set.keys[c], null, set.bitmaps[c].clone(), cardinality);
+		} else {
+			this.insert(this.size, set.keys[c], Arrays.copyOf(set.arrays[c], cardinality), null, cardinality);
+		}
+	}
+
+	/**
+	 * Appends a container with the given integers, unless it is empty.
+	 * 
+	 * @param key   the high 16 bits of the integers of the container
+	 * @param array the low 16 bits of at most 4096 integers, in increasing order
+	 */
+	private void appendArray(char key, char[] array) {
+		if (array.length > 0) {
+			this.insert(this.size, key, array, null, array.length);
+		}
+	}
+
+	/**
+	 * Appends a container with the union of the given bitmap and array.
+	 * 
+	 * @param key         the high 16 bits of the integers of the container
+	 * @param bitmap      the bits of more than 4096 integers
+	 * @param cardinality number of integers of the bitmap
+	 * @param array       the low 16 bits of integers, in increasing order
+	 * @param length      number of integers of the array
+	 */
+	private void appendUnion(char key, long[] bitmap, int cardinality, char[] array, int length) {
+		long[] bits = bitmap.clone();
+		for (int k = 0; k < length; k++) {
+			long mask = 1L << array[k];
+			if ((bits[array[k] >>> 6] & mask) == 0) {
+				bits[array[k] >>> 6] |= mask;
+				cardinality++;
+			}
+		}
+		this.insert(this.size, key, null, bits, cardinality);
+	}
+
+	/**
+	 * Appends a container with the union of the given arrays, as an array if it
+	 * has few integers.
+	 * 
+	 * @param key    the high 16 bits of the integers of the container
+	 * @param first  the low 16 bits of integers, in increasing order
+	 * @param m      number of integers of the first array
+	 * @param second the low 16 bits of integers, in increasing order
+	 * @param n      number of integers of the second array
+	 */
+	private void appendUnion(char key, char[] first, int m, char[] second, int n) {
+		if (m + n > ARRAY_MAX) {
+			long[] bits = toBitmap(first, m);
+			int cardinality = m;
+			for (int k = 0; k < n; k++) {
+				long mask = 1L << second[k];
+				if ((bits[second[k] >>> 6] & mask) == 0) {
+					bits[second[k] >>> 6] |= mask;
+					cardinality++;
+				}
+			}
+			this.append(key, bits, cardinality);
+			return;
+		}
+		char[] union = new char[m + n];
+		int i = 0;
+		int j = 0;
+		int size = 0;
+		while (i < m && j < n) {
+			if (first[i] < second[j]) {
+				union[size++] = first[i++];
+			} else if (first[i] > second[j]) {
+				union[size++] = second[j++];
+			} else {
+				union[size++] = first[i++];
+				j++;
+			}
+		}
+		while (i < m) {
+			union[size++] = first[i++];
+		}
+		while (j < n) {
+			union[size++] = second[j++];
+		}
+		this.insert(this.size, key, Arrays.copyOf(union, size), null, size);
+	}
+
+	/**
+	 * Appends a container with the given bits, unless it is empty.
+	 * 
+	 * @param key  the high 16 bits of the integers of the container
+	 * @param bits the bits of the container
+	 */
+	private void append(char key, long[] bits) {
+		int cardinality = 0;
+		for (long word : bits) {
+			cardinality += Long.bitCount(word);
+		}
+		this.append(key, bits, cardinality);
+	}
+
+	/**
+	 * Appends a container with the given bits, as an array if it has few
+	 * integers, unless it is empty.
+	 * 
+	 * @param key         the high 16 bits of the integers of the container
+	 * @param bits        the bits of the container
+	 * @param cardinality number of integers of the container
+	 */
+	private void append(char key, long[] bits, int cardinality) {
+		if (cardinality == 0) {
+			return;
+		}
+		if (cardinality > ARRAY_MAX) {
+			this.insert(this.size, key, null, bits, cardinality);
+		} else {
+			char[] array = new char[cardinality];
+			int n = 0;
+			for (int w = 0; w < BITMAP_WORDS; w++) {
+				for (long word = bits[w]; word != 0; word &= word - 1) {
+					array[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+				}
+			}
+			this.insert(this.size, key, array, null, cardinality);
+		}
+	}
+
+	/**
+	 * Inserts a container at the given index.
+	 * 
+	 * @param c           the index of the container
+	 * @param key         the high 16 bits of the integers of the container
+	 * @param array       the low 16 bits of the integers, or null for a bitmap
+	 * @param bitmap      the bits of the integers, or null for an array
+	 * @param cardinality number of integers of the container
+	 */
+	private void insert(int c, char key, char[] array, long[] bitmap, int cardinality) {
+		if (this.size == this.keys.length) {
+			int capacity = 2 * this.size;
+			this.keys = Arrays.copyOf(this.keys, capacity);
+			this.arrays = Arrays.copyOf(this.arrays, capacity);
+			this.bitmaps = Arrays.copyOf(this.bitmaps, capacity);
+			this.cardinalities = Arrays.copyOf(this.cardinalities, capacity);
+		}
+		int moved = this.size - c;
+		System.arraycopy(this.keys, c, this.keys, c + 1, moved);
+		System.arraycopy(this.arrays, c, this.arrays, c + 1, moved);
+		System.arraycopy(this.bitmaps, c, this.bitmaps, c + 1, moved);
+		System.arraycopy(this.cardinalities, c, this.cardinalities, c + 1, moved);
+		this.keys[c] = key;
+		this.arrays[c] = array;
+		this.bitmaps[c] = bitmap;
+		this.cardinalities[c] = cardinality;
+		this.size++;
+	}
+
+	/**
+	 * Returns the index of the container with the given key.
+	 * 
+	 * @param key the high 16 bits of an integer
+	 * @return the index of the container, or -(insertion point) - 1 if there is
+	 *         none
+	 */
+	private int find(char key) {
+		return Arrays.binarySearch(this.keys, 0, this.size, key);
+	}
+
+	/**
+	 * Returns the integers of the given array which are, or are not, in the given
+	 * bitmap.
+	 * 
+	 * @param array       the low 16 bits of integers, in increasing order
+	 * @param cardinality number of integers of the array
+	 * @param bitmap      the bits of integers
+	 * @param in          whether the integers in the bitmap are kept, rather than
+	 *                    those not in it
+	 * @return the kept integers, in increasing order
+	 */
+	private static char[] filter(char[] array, int cardinality, long[] bitmap, boolean in) {
+		char[] result = new char[cardinality];
+		int size = 0;
+		for (int k = 0; k < cardinality; k++) {
+			if (((bitmap[array[k] >>> 6] & (1L << array[k])) != 0) == in) {
+				result[size++] = array[k];
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Returns the integers in both of the given arrays.
+	 * 
+	 * @param first  the low 16 bits of integers, in increasing order
+	 * @param m      number of integers of the first array
+	 * @param second the low 16 bits of integers, in increasing order
+	 * @param n      number of integers of the second array
+	 * @return the integers in both arrays, in increasing order
+	 */
+	private static char[] intersect(char[] first, int m, char[] second, int n) {
+		char[] result = new char[Math.min(m, n)];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < m && j < n) {
+			if (first[i] < second[j]) {
+				i++;
+			} else if (first[i] > second[j]) {
+				j++;
+			} else {
+				result[size++] = first[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Returns the integers in the first but not in the second of the given arrays.
+	 * 
+	 * @param first  the low 16 bits of integers, in increasing order
+	 * @param m      number of integers of the first array
+	 * @param second the low 16 bits of integers, in increasing order
+	 * @param n      number of integers of the second array
+	 * @return the integers in the first array only, in increasing order
+	 */
+	private static char[] subtract(char[] first, int m, char[] second, int n) {
+		char[] result = new char[m];
+		int size = 0;
+		int j = 0;
+		for (int i = 0; i < m; i++) {
+			while (j < n && second[j] < first[i]) {
+				j++;
+			}
+			if (j == n || second[j] != first[i]) {
+				result[size++] = first[i];
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * Returns the bitmap of the given integers.
+	 * 
+	 * @param array       the low 16 bits of integers, in increasing order
+	 * @param cardinality number of integers
+	 * @return the bitmap of the integers
+	 */
+	private static long[] toBitmap(char[] array, int cardinality) {
+		long[] bitmap = new long[BITMAP_WORDS];
+		for (int k = 0; k < cardinality; k++) {
+			bitmap[array[k] >>> 6] |= 1L << array[k];
+		}
+		return bitmap;
+	}
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.search.Search;
+
+/**
+ * Produces a dot file representing the state space, in which each state is
+ * coloured according to its labels. The name of the dot file is &lt;name of
+ * system under test&gt;.dot. A legend mapping each colour to the description
+ * of the label it represents is written to &lt;name of system under
+ * test&gt;_legend.dot.
+ * 
+ * By default, the states and transitions are kept in memory until the file is
+ * written. If the property label.StateLabelDot.stream is set to true, they are
+ * instead written to the file &lt;name of system under test&gt;.dot.part as
+ * they are traversed, after a region reserved for the first lines of the dot
+ * file, which are written there once the search has finished. That file is then
+ * renamed to the dot file. If checkpointing is enabled, they are always
+ * streamed.
+ * 
+ * If the output is compressed, the dot file is named &lt;name of system under
+ * test&gt;.dot.gz and consists of gzip members. The legend is not compressed.
+ * 
+ * @author Syyeda Zainab Fatmi
+ * @author Franck van Breugel
+ */
+public class DotSink implements LabelSink {
+	private static final byte[] HEADER = ("digraph statespace {" + System.lineSeparator()
+			+ "node [colorscheme=\"set312\" style=wedged]" + System.lineSeparator()).getBytes(); // first lines
+
+	private boolean stream; // whether the states and transitions are streamed to a file
+	private boolean compress; // whether the output is compressed
+	private StateOutput states; // the states and transitions
+	private IntFunction<String> palette; // computes the colour of a label, given its index
+	private String[] colours; // colours of the labels, computed when first needed
+
+	/**
+	 * Initializes this sink. The output is compressed if the property label.gzip
+	 * is set to true.
+	 * 
+	 * @param configuration JPF's configuration
+	 */
+	public DotSink(Config configuration) {
+		this(configuration, configuration.getBoolean("label.gzip", false));
+	}
+
+	/**
+	 * Initializes this sink.
+	 * 
+	 * @param configuration JPF's configuration
+	 * @param compress      whether the output is compressed in the gzip format
+	 */
+	public DotSink(Config configuration, boolean compress) {
+		this(configuration, compress, DotSink::computeColour);
+	}
+
+	/**
+	 * Initializes this sink, which colours the labels with the given palette. The
+	 * output is compressed if the property label.gzip is set to true.
+	 * 
+	 * @param configuration JPF's configuration
+	 * @param palette       the colour of each label, given its index
+	 */
+	public DotSink(Config configuration, IntFunction<String> palette) {
+		this(configuration, configuration.getBoolean("label.gzip", false), palette);
+	}
+
+	/**
+	 * Initializes this sink, which colours the labels with the given palette.
+	 * 
+	 * @param configuration JPF's configuration
+	 * @param compress      whether the output is compressed in the gzip format
+	 * @param palette       the colour of each label, given its index
+	 */
+	public DotSink(Config configuration, boolean compress, IntFunction<String> palette) {
+		this.stream = configuration.getBoolean("label.StateLabelDot.stream", false)
+				|| Checkpoints.isEnabled(configuration);
+		this.compress = compress;
+		this.states = new StateOutput(compress);
+		this.palette = palette;
+		this.colours = new String[0];
+	}
+
+	/**
+	 * Opens the file to which the states and transitions are streamed, if any.
+	 */
+	@Override
+	public void searchStarted(Search search) {
+		if (this.stream) {
+			File file = new File(LabelSink.getOutputName(search) + this.getExtension() + ".part");
+			try {
+				int reserve = (this.compress ? GzipChannel.member(HEADER).length : HEADER.length);
+				this.states = new StateOutput(file, this.compress, reserve);
+			} catch (FileNotFoundException e) {
+				System.out.println("Listener could not write to the file " + file.getName());
+			}
+		}
+	}
+
+	/**
+	 * Colours a state according to its labels.
+	 */
+	@Override
+	public void labelState(int id, LabelSet labels) {
+		if (!labels.isEmpty()) {
+			ChannelWriter writer = this.states.getWriter();
+			try {
+				int i = labels.next(0);
+				if (labels.size() == 1) {
+					writer.write(id).write(" [style=filled fillcolor=").write(this.getColour(i)).write("]\n");
+				} else {
+					writer.write(id).write(" [fillcolor=\"");
+					while (i >= 0) {
+						writer.write(this.getColour(i));
+						i = labels.next(i + 1);
+						if (i >= 0) {
+							writer.write(':');
+						}
+					}
+					writer.write("\"]\n");
+				}
+			} catch (IOException e) {
+				this.states.failed(e);
+			}
+		}
+	}
+
+	/**
+	 * Writes a transition.
+	 */
+	@Override
+	public void labelTransition(int source, int target) {
+		try {
+			this.states.getWriter().write(source).write(" -> ").write(target).write('\n');
+		} catch (IOException e) {
+			this.states.failed(e);
+		}
+	}
+
+	@Override
+	public void writeStateLabels(Search search, String name, LabelRegistry labels) {
+		try {
+			ChannelWriter writer = StateOutput.createWriter(
+					this.states.moveTo(new File(name + this.getExtension()), HEADER), this.compress);
+			try {
+				writer.write("}").write(System.lineSeparator());
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Listener could not write to the output file " + name + this.getExtension());
+			search.terminate();
+		}
+		writeLegendFile(LabelSink.getOutputName(search) + "_legend.dot", labels, this::getColour);
+	}
+
+	/**
+	 * Returns the extension of the output file.
+	 * 
+	 * @return the extension of the output file
+	 */
+	private String getExtension() {
+		return (this.compress ? ".dot.gz" : ".dot");
+	}
+
+	/**
+	 * Writes the part of the labelling streamed so far to the file.
+	 */
+	@Override
+	public void flush() throws IOException {
+		this.states.flush();
+	}
+
+	/**
+	 * Removes the file to which the states and transitions were streamed, if any.
+	 */
+	@Override
+	public void searchFinished(Search search) {
+		this.states.delete();
+	}
+
+	/**
+	 * Returns the colour for the label with given index. The colour of a label is
+	 * obtained from the palette once and cached.
+	 * 
+	 * @param i the index of the label.
+	 * @return the hexadecimal representation of the colour associated with that
+	 *         label.
+	 */
+	private String getColour(int i) {
+		if (i >= this.colours.length) {
+			this.colours = Arrays.copyOf(this.colours, Math.max(i + 1, 2 * this.colours.length));
+		}
+		String colour = this.colours[i];
+		if (colour == null) {
+			colour = this.palette.apply(i);
+			this.colours[i] = colour;
+		}
+		return colour;
+	}
+
+	/**
+	 * Computes the colour palette/scheme for the label with given index.
+	 * 
+	 * @param i the index of the label.
+	 * @return the hexadecimal representation of the colour associated with that
+	 *         label.
+	 */
+	static String computeColour(int i) {
+		if (i < 12) {
+			// use a colour scheme for the first 12 colours
+			return Integer.toString(i + 1);
+		} else {
+			i -= 12;
+			// Reference: https://krazydad.com/tutorials/makecolors.php
+			String r = Integer.toHexString((int) (Math.sin(2.4 * i + 0) * 127 + 128));
+			if (r.length() == 1)
+				r = "0" + r;
+			String g = Integer.toHexString((int) (Math.sin(2.4 * i + 2) * 127 + 128));
+			if (g.length() == 1)
+				g = "0" + g;
+			String b = Integer.toHexString((int) (Math.sin(2.4 * i + 4) * 127 + 128));
+			if (b.length() == 1)
+				b = "0" + b;
+			return "#" + r + g + b;
+		}
+	}
+
+	/**
+	 * Produces a dot file with a legend mapping each colour to the description of
+	 * the label it represents.
+	 * 
+	 * @param name    the name of the dot file
+	 * @param labels  the registry of all labels
+	 * @param colours the colour of each label, given its index
+	 */
+	static void writeLegendFile(String name, LabelRegistry labels, IntFunction<String> colours) {
+		try {
+			PrintWriter writer = new PrintWriter(name);
+			writer.println("digraph legend {");
+			writer.println("node [colorscheme=\"set312\" shape=plaintext]");
+			writer.println("{ legend_node [");
+			writer.println("label=<");
+			writer.println("<table border=\"0\" cellborder=\"0\" cellspacing=\"0\">");
+			writer.println("<tr><td colspan=\"2\">Legend</td></tr>");
+			int n = labels.size();
+			for (int i = 0; i < n; i++) {
+				writer.println("<tr><td width=\"35\" bgcolor=\"" + colours.apply(i) + "\"></td><td align=\"left\">"
+						+ labels.get(i).getDescription() + "</td></tr>");
+			}
+			writer.println("</table>>");
+			writer.println("];}");
+			writer.println("}");
+			writer.close();
+		} catch (FileNotFoundException e) {
+			System.out.println("Listener could not write to the legend file " + name);
+			e.printStackTrace();
+		}
+	}
+}
@@ -16,9 +16,6 @@
  */
 package label;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.search.Search;
 
@@ -28,6 +25,7 @@ import gov.nasa.jpf.search.Search;
  * @author Syyeda Zainab Fatmi
  */
 public class End extends StateLabelMaker {
+	private static final Label END = new Label("end", "end"); // the label of the final states
 
 	/**
 	 * Initializes this labeling function.
@@ -46,11 +44,9 @@ public class End extends StateLabelMaker {
 	}
 
 	@Override
-	public Set<Label> getStateLabels(Search search) {
-		Set<Label> labels = new HashSet<Label>();
+	public void getStateLabels(Search search, LabelSet labels) {
 		if (search.isEndState()) {
-			labels.add(new Label("end", "end"));
+			labels.add(END);
 		}
-		return labels;
 	}
 }
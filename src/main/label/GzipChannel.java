@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A channel which compresses the data written to it in the gzip format. Each
+ * write produces a complete gzip member. Since a sequence of gzip members is a
+ * valid gzip file, whatever has been written remains readable, even if the
+ * channel is never closed. Also, compressed data can be appended by copying it.
+ * 
+ * Used with a ChannelWriter, a member is written whenever the writer is
+ * flushed or its buffer is full, so the buffer of the writer should be large.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class GzipChannel implements WritableByteChannel {
+	/**
+	 * The recommended size of the buffer of a ChannelWriter writing to this
+	 * channel, in bytes.
+	 */
+	public static final int BUFFER_SIZE = 262144;
+
+	private static final byte[] HEADER = { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff }; // member header
+	private static final int TRAILER_SIZE = 8; // size of a member trailer in bytes
+	private static final int FLAGS = 3; // offset of the flags in the member header
+	private static final int FCOMMENT = 0x10; // flag of a member header followed by a comment
+
+	private WritableByteChannel channel; // the channel to which the compressed data is written
+	private Deflater deflater; // compresses the data
+	private CRC32 crc; // computes the checksum of the data of a member
+	private byte[] input; // the data of a member
+	private ByteBuffer output; // the compressed data of a member
+
+	/**
+	 * Creates a channel compressing the data written to the given channel with the
+	 * fastest compression level.
+	 * 
+	 * @param channel the channel to write the compressed data to
+	 */
+	public GzipChannel(WritableByteChannel channel) {
+		this(channel, Deflater.BEST_SPEED);
+	}
+
+	/**
+	 * Creates a channel compressing the data written to the given channel.
+	 * 
+	 * @param channel the channel to write the compressed data to
+	 * @param level   the compression level, from 0 to 9
+	 */
+	public GzipChannel(WritableByteChannel channel, int level) {
+		this.channel = channel;
+		this.deflater = new Deflater(level, true);
+		this.crc = new CRC32();
+		this.input = new byte[0];
+		this.output = ByteBuffer.allocate(BUFFER_SIZE);
+	}
+
+	/**
+	 * Compresses the given data as a gzip member.
+	 * 
+	 * @param src the data
+	 * @return the number of bytes of the data
+	 * @throws IOException if the compressed data cannot be written
+	 */
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		int n = src.remaining();
+		if (n == 0) {
+			return 0;
+		}
+		if (n > this.input.length) {
+			this.input = new byte[n];
+		}
+		src.get(this.input, 0, n);
+		this.crc.reset();
+		this.crc.update(this.input, 0, n);
+		this.deflater.reset();
+		this.deflater.setInput(this.input, 0, n);
+		this.deflater.finish();
+
+		this.output.clear();
+		this.output.put(HEADER);
+		while (!this.deflater.finished()) {
+			if (!this.output.hasRemaining()) {
+				this.drain();
+			}
+			int length = this.deflater.deflate(this.output.array(), this.output.position(), this.output.remaining());
+			this.output.position(this.output.position() + length);
+		}
+		if (this.output.remaining() < TRAILER_SIZE) {
+			this.drain();
+		}
+		int checksum = (int) this.crc.getValue();
+		this.output.put((byte) checksum).put((byte) (checksum >> 8)).put((byte) (checksum >> 16))
+				.put((byte) (checksum >> 24));
+		this.output.put((byte) n).put((byte) (n >> 8)).put((byte) (n >> 16)).put((byte) (n >> 24));
+		this.drain();
+		return n;
+	}
+
+	/**
+	 * Returns the given data compressed as a single gzip member.
+	 * 
+	 * @param data the data
+	 * @return the member
+	 */
+	public static byte[] member(byte[] data) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+		deflater.setInput(data);
+		deflater.finish();
+		byte[] buffer = new byte[4096];
+		int length = 0;
+		while (!deflater.finished()) {
+			length += deflater.deflate(buffer);
+		}
+		deflater.end();
+		return member(data, HEADER.length + length + TRAILER_SIZE);
+	}
+
+	/**
+	 * Returns the given data compressed as a single gzip member of the given size.
+	 * The member is padded to that size by a comment of spaces in its header,
+	 * which is ignored when the member is decompressed.
+	 * 
+	 * @param data the data
+	 * @param size the size of the member in bytes
+	 * @return the member, or null if the compressed data does not fit in a member
+	 *         of the given size
+	 */
+	public static byte[] member(byte[] data, int size) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+		deflater.setInput(data);
+		deflater.finish();
+		byte[] member = new byte[size];
+		int padding = size - HEADER.length - TRAILER_SIZE;
+		int offset = size - TRAILER_SIZE;
+		byte[] compressed = new byte[Math.max(padding, 0) + 1]; // one more byte to detect that it does not fit
+		int length = 0;
+		while (!deflater.finished() && length < compressed.length) {
+			length += deflater.deflate(compressed, length, compressed.length - length);
+		}
+		deflater.end();
+		padding -= length;
+		if (padding < 0) {
+			return null;
+		}
+
+		System.arraycopy(HEADER, 0, member, 0, HEADER.length);
+		if (padding > 0) {
+			member[FLAGS] = FCOMMENT;
+			Arrays.fill(member, HEADER.length, HEADER.length + padding - 1, (byte) ' ');
+			member[HEADER.length + padding - 1] = 0; // the comment is terminated by a zero byte
+		}
+		System.arraycopy(compressed, 0, member, offset - length, length);
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		int checksum = (int) crc.getValue();
+		int n = data.length;
+		byte[] trailer = { (byte) checksum, (byte) (checksum >> 8), (byte) (checksum >> 16), (byte) (checksum >> 24),
+				(byte) n, (byte) (n >> 8), (byte) (n >> 16), (byte) (n >> 24) };
+		System.arraycopy(trailer, 0, member, offset, TRAILER_SIZE);
+		return member;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return this.channel.isOpen();
+	}
+
+	/**
+	 * Releases the compressor and closes the underlying channel.
+	 * 
+	 * @throws IOException if the underlying channel cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		this.deflater.end();
+		this.channel.close();
+	}
+
+	/**
+	 * Writes the compressed data to the underlying channel.
+	 * 
+	 * @throws IOException if the compressed data cannot be written
+	 */
+	private void drain() throws IOException {
+		this.output.flip();
+		while (this.output.hasRemaining()) {
+			this.channel.write(this.output);
+		}
+		this.output.clear();
+	}
+}
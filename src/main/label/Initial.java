@@ -16,9 +16,6 @@
  */
 package label;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.search.Search;
 
@@ -28,6 +25,8 @@ import gov.nasa.jpf.search.Search;
  * @author Syyeda Zainab Fatmi
  */
 public class Initial extends StateLabelMaker {
+	private static final Label INITIAL = new Label("init", "initial"); // the label of the initial state
+
 	private boolean init; // true for the first state, false otherwise
 
 	/**
@@ -48,12 +47,10 @@ public class Initial extends StateLabelMaker {
 	}
 
 	@Override
-	public Set<Label> getStateLabels(Search search) {
-		Set<Label> labels = new HashSet<Label>();
+	public void getStateLabels(Search search, LabelSet labels) {
 		if (this.init) {
 			this.init = false;
-			labels.add(new Label("init", "initial"));
+			labels.add(INITIAL);
 		}
-		return labels;
 	}
 }
@@ -42,20 +42,41 @@ import gov.nasa.jpf.vm.ThreadInfo;
  */
 public class IntegerLocalVariable extends TransitionLabelMaker {
 	private String[] varName; // variable signature
+	private VarSpec[] varSpec; // variable specifications
+	private MethodSpec[] methodSpec; // specifications of the methods declaring the variables
+	private String[] variable; // names of the variables
+	private LocalVariableCache methods; // the local variables declared by the methods
+	private LabelCache labelCache; // labels created so far
+	private MatchCache<String> names; // the variables, by their mangled name
 	private Integer previousValue; // the previous value
 
-	private String lastModified; // the name of last modified variable
+	private int lastModified; // the index of last modified variable, -1 if none
 	private Integer lastValue; // the value of last modified variable
 	private MethodInfo lastMethod; // the method which the last modified variable belongs to
+	private Instruction lastInstruction; // the instruction which modified the last modified variable
 
 	/**
 	 * Initializes this labeling function.
 	 */
 	private IntegerLocalVariable(Config configuration) {
 		varName = getConfiguredProperty(configuration, "label.IntegerLocalVariable.variable");
-		lastModified = null;
+		varSpec = createVarSpecs(varName);
+		methodSpec = new MethodSpec[varName.length];
+		variable = new String[varName.length];
+		for (int i = 0; i < varName.length; i++) {
+			int index = varName[i].indexOf(':');
+			if (index > 0) {
+				methodSpec[i] = MethodSpec.createMethodSpec(varName[i].substring(0, index).trim());
+			}
+			variable[i] = varName[i].substring(index + 1).trim();
+		}
+		methods = new LocalVariableCache(methodSpec, variable);
+		labelCache = new LabelCache();
+		names = new MatchCache<String>();
+		lastModified = -1;
 		lastValue = null;
 		lastMethod = null;
+		lastInstruction = null;
 		previousValue = null;
 	}
 
@@ -69,71 +90,104 @@ public class IntegerLocalVariable extends TransitionLabelMaker {
 		return new IntegerLocalVariable(configuration);
 	}
 
+	@Override
+	public Class<?>[] getInstructionTypes() {
+		return new Class<?>[] { ISTORE.class, IINC.class };
+	}
+
 	@Override
 	public Set<Label> getStateLabels(Search search) {
 		Set<Label> labels = new HashSet<Label>();
-		for (String var : varName) {
-			Integer value = getValue(var);
+		ThreadInfo thread = search.getVM().getCurrentThread();
+		for (int i = 0; i < varName.length; i++) {
+			Integer value = getValue(thread, i);
 			if (value != null) {
 				// label the state with the value of the local variable
-				String sign = (value < 0 ? "minus" : "");
-				labels.add(new Label(sign + Math.abs(value) + "__" + getSignature(var), var + " = " + value));
+				labels.add(getLabel(getMatch(getMangledName(thread, i), i), value));
 			}
 		}
 		return labels;
 	}
 
 	@Override
-	public Set<Label> breakAfter(Instruction executedInstruction) {
+	public void getStateLabels(Search search, LabelSet labels) {
+		ThreadInfo thread = search.getVM().getCurrentThread();
+		for (int i = 0; i < varName.length; i++) {
+			Integer value = getValue(thread, i);
+			if (value != null) {
+				labels.add(this, getMatch(getMangledName(thread, i), i), value);
+			}
+		}
+	}
+
+	@Override
+	public Label getLabel(MatchCache.Match match, int value) {
+		String name = match.getSignature();
+		String variable = varName[match.getIndex()];
+		return labelCache.computeIfAbsent(name, value, () -> new Label(
+				(value < 0 ? "minus" : "") + Math.abs(value) + "__" + name, variable + " = " + value));
+	}
+
+	@Override
+	public boolean breakAfter(ThreadInfo thread, Instruction executedInstruction, LabelSet labels) {
 		// break the transition after the local variable instruction, if the variable
 		// value has changed
 		MethodInfo mi = executedInstruction.getMethodInfo();
 		this.lastMethod = mi;
+		this.lastInstruction = executedInstruction;
 		int pc = executedInstruction.getPosition();
+		LocalVariableCache.Entry entry = this.methods.get(mi);
 
 		if (executedInstruction instanceof ISTORE) {
 			ISTORE instruction = (ISTORE) executedInstruction;
 			int slotIdx = instruction.getLocalVariableIndex();
-			for (String var : varName) {
-				LocalVarInfo localVar = VarSpec.createVarSpec(var).getMatchingLocalVarInfo(mi, pc, slotIdx);
+			for (int i = 0; i < varName.length; i++) {
+				if (!entry.declares(i)) {
+					continue;
+				}
+				LocalVarInfo localVar = getMatchingLocalVarInfo(i, mi, pc, slotIdx);
 				if (localVar != null) {
-					this.lastModified = var;
-					this.lastValue = ThreadInfo.getCurrentThread().getTopFrame().getLocalVariable(slotIdx);
+					this.lastModified = i;
+					this.lastValue = thread.getTopFrame().getLocalVariable(slotIdx);
 					if (!this.lastValue.equals(this.previousValue)) {
-						return new HashSet<Label>();
+						return true;
 					}
 				}
 				// if the scope would begin on the next instruction after the xSTORE
-				localVar = VarSpec.createVarSpec(var).getMatchingLocalVarInfo(mi, pc + 1, slotIdx);
+				localVar = getMatchingLocalVarInfo(i, mi, pc + 1, slotIdx);
 				if (localVar != null && localVar.getStartPC() == pc + 1) {
-					this.lastModified = var;
-					this.lastValue = ThreadInfo.getCurrentThread().getTopFrame().getLocalVariable(slotIdx);
+					this.lastModified = i;
+					this.lastValue = thread.getTopFrame().getLocalVariable(slotIdx);
 					if (!this.lastValue.equals(this.previousValue)) {
-						return new HashSet<Label>();
+						return true;
 					}
 				}
 			}
 		} else if (executedInstruction instanceof IINC) {
 			IINC instruction = (IINC) executedInstruction;
 			int slotIdx = instruction.getIndex(); // local variable slot
-			for (String var : varName) {
-				LocalVarInfo localVar = VarSpec.createVarSpec(var).getMatchingLocalVarInfo(mi, pc, slotIdx);
+			for (int i = 0; i < varName.length; i++) {
+				if (!entry.declares(i)) {
+					continue;
+				}
+				LocalVarInfo localVar = getMatchingLocalVarInfo(i, mi, pc, slotIdx);
 				if (localVar != null) {
-					this.lastModified = var;
-					this.lastValue = ThreadInfo.getCurrentThread().getTopFrame().getLocalVariable(slotIdx);
+					this.lastModified = i;
+					this.lastValue = thread.getTopFrame().getLocalVariable(slotIdx);
 					if (!this.lastValue.equals(this.previousValue)) {
-						return new HashSet<Label>();
+						return true;
 					}
 				}
 			}
 		}
-		this.lastModified = null;
-		return null;
+		this.lastModified = -1;
+		return false;
 	}
 
 	@Override
-	public void beforeInstruction(Instruction instructionToExecute) {
+	public void beforeInstruction(ThreadInfo thread, Instruction instructionToExecute) {
 		// get the value before the local variable instruction
+		this.previousValue = null;
 		Integer slotIdx = null;
 		if (instructionToExecute instanceof ISTORE) {
 			slotIdx = ((ISTORE) instructionToExecute).getLocalVariableIndex();
@@ -143,62 +197,121 @@ public class IntegerLocalVariable extends TransitionLabelMaker {
 		if (slotIdx != null) {
 			MethodInfo mi = instructionToExecute.getMethodInfo();
 			int pc = instructionToExecute.getPosition() - 1;
-			for (String var : varName) {
-				LocalVarInfo localVar = VarSpec.createVarSpec(var).getMatchingLocalVarInfo(mi, pc, slotIdx);
-				Integer value = getValue(var);
-				if (localVar != null && value != null) {
-					this.previousValue = value;
+			LocalVariableCache.Entry entry = this.methods.get(mi);
+			for (int i = 0; i < varName.length; i++) {
+				if (entry.declares(i) && getMatchingLocalVarInfo(i, mi, pc, slotIdx) != null) {
+					Integer value = getValue(thread, i);
+					if (value != null) {
+						this.previousValue = value;
+					}
 				}
 			}
-		} else {
-			this.previousValue = null;
 		}
 	}
 
+	@Override
+	protected boolean isMatched(int i) {
+		return this.methods.isDeclared(i);
+	}
+
 	/**
 	 * Returns the value of the given integer variable.
 	 * 
-	 * @param localVariable the signature of the integer local variable
+	 * @param thread the thread whose stack is inspected
+	 * @param i      the index of the integer local variable
 	 * @return the value of the variable if it is defined, else null.
 	 */
-	private Integer getValue(String localVariable) {
-		StackFrame top = ThreadInfo.getCurrentThread().getTopFrame();
-		int index = localVariable.indexOf(':');
-		if (top != null && index > 0) {
-			MethodSpec methodSpec = MethodSpec.createMethodSpec(localVariable.substring(0, index).trim());
-			String varSpec = localVariable.substring(index + 1).trim();
+	private Integer getValue(ThreadInfo thread, int i) {
+		StackFrame top = thread.getTopFrame();
+		if (top != null && methodSpec[i] != null) {
 			for (StackFrame frame = top; frame != null; frame = frame.getPrevious()) {
-				MethodInfo method = frame.getMethodInfo();
-				int slotIdx = frame.getLocalVariableSlotIndex(varSpec);
-				if (methodSpec != null && methodSpec.matches(method) && slotIdx >= 0) {
-					return frame.getLocalVariable(slotIdx);
+				LocalVariableCache.Entry entry = this.methods.get(frame.getMethodInfo());
+				if (entry.declares(i) && frame.getPC() != null) {
+					int slotIdx = entry.getSlotIndex(i, frame.getPC().getPosition());
+					if (slotIdx >= 0) {
+						return frame.getLocalVariable(slotIdx);
+					}
 				}
 			}
 		}
-		if (localVariable.equals(this.lastModified)) {
+		if (this.isLastModified(thread, i)) {
 			return this.lastValue; // the scope of the variable has ended
 		}
 		return null;
 	}
 
-	private String getSignature(String localVariable) {
-		int index = localVariable.indexOf(':');
-		String variableName = localVariable.substring(index + 1).trim();
+	/**
+	 * Checks whether the given variable was modified by the last instruction
+	 * executed by the current thread. Since only local variable instructions are
+	 * observed, the program counter of the top frame is used to determine whether
+	 * any other instruction has been executed since.
+	 * 
+	 * @param thread the thread whose stack is inspected
+	 * @param i      the index of the local variable
+	 * @return true if the variable was modified by the last executed instruction,
+	 *         false otherwise
+	 */
+	private boolean isLastModified(ThreadInfo thread, int i) {
+		if (i == this.lastModified) {
+			StackFrame top = thread.getTopFrame();
+			return top != null && top.getPC() == this.lastInstruction.getNext();
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the local variable information of the variable with the given index
+	 * if it is stored in the given slot at the given position of the given method.
+	 * 
+	 * @param i       the index of the local variable
+	 * @param mi      the method
+	 * @param pc      the position in the method
+	 * @param slotIdx the slot
+	 * @return the local variable information if the variable matches, else null.
+	 */
+	private LocalVarInfo getMatchingLocalVarInfo(int i, MethodInfo mi, int pc, int slotIdx) {
+		return (varSpec[i] == null ? null : varSpec[i].getMatchingLocalVarInfo(mi, pc, slotIdx));
+	}
 
-		String signature = null;
-		StackFrame top = ThreadInfo.getCurrentThread().getTopFrame();
-		if (top != null) {
-			MethodSpec methodSpec = MethodSpec.createMethodSpec(localVariable.substring(0, index).trim());
+	/**
+	 * Returns the mangled name of the given variable, which consists of the
+	 * mangled signature of the method declaring it and its name.
+	 * 
+	 * @param thread the thread whose stack is inspected
+	 * @param i      the index of the local variable
+	 * @return the mangled name of the variable if it is defined, else null.
+	 */
+	private String getMangledName(ThreadInfo thread, int i) {
+		String name = null;
+		StackFrame top = thread.getTopFrame();
+		if (top != null && methodSpec[i] != null) {
 			for (StackFrame frame = top; frame != null; frame = frame.getPrevious()) {
-				MethodInfo method = frame.getMethodInfo();
-				if (methodSpec != null && methodSpec.matches(method)) {
-					signature = method.getClassName().replaceAll("[$.]", "_") + "_" + method.getJNIName();
+				LocalVariableCache.Entry entry = this.methods.get(frame.getMethodInfo());
+				if (entry.declares(i)) {
+					name = entry.getMangledName(i);
 				}
 			}
 		}
-		if (signature == null && localVariable.equals(this.lastModified)) { // the scope of the variable has ended
-			signature = this.lastMethod.getClassName().replaceAll("[$.]", "_") + "_" + this.lastMethod.getJNIName();
+		if (name == null && this.isLastModified(thread, i)) { // the scope of the variable has ended
+			name = this.methods.get(this.lastMethod).getMangledName(i);
+		}
+		return name;
+	}
+
+	/**
+	 * Returns the variable with the given index and mangled name, as the result of
+	 * matching it against the specifications.
+	 * 
+	 * @param name the mangled name of the variable
+	 * @param i    the index of the variable
+	 * @return the variable as the result of matching
+	 */
+	private MatchCache.Match getMatch(String name, int i) {
+		MatchCache.Match match = names.get(name);
+		if (match == null || match.getIndex() != i) {
+			match = new MatchCache.Match(i, name);
+			names.put(name, match);
 		}
-		return signature + "__" + variableName;
+		return match;
 	}
 }
@@ -16,15 +16,13 @@
  */
 package label;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.jvm.bytecode.INVOKESTATIC;
 import gov.nasa.jpf.jvm.bytecode.InstanceInvocation;
 import gov.nasa.jpf.util.MethodSpec;
 import gov.nasa.jpf.vm.Instruction;
 import gov.nasa.jpf.vm.MethodInfo;
+import gov.nasa.jpf.vm.ThreadInfo;
 import gov.nasa.jpf.vm.Types;
 
 /**
@@ -38,12 +36,20 @@ import gov.nasa.jpf.vm.Types;
  */
 public class InvokedMethod extends TransitionLabelMaker {
 	private String[] methodName; // method signatures
+	private MethodSpec[] methodSpec; // method specifications
+	private MatchCache<MethodInfo> matches; // methods matched against the specifications
+	private MatchCache<Instruction> invocations; // instance invocations matched against the specifications
+	private LabelCache labelCache; // labels created so far
 
 	/**
 	 * Initializes this labeling function.
 	 */
 	private InvokedMethod(Config configuration) {
 		methodName = getConfiguredProperty(configuration, "label.InvokedMethod.method");
+		methodSpec = createMethodSpecs(methodName);
+		matches = new MatchCache<MethodInfo>();
+		invocations = new MatchCache<Instruction>();
+		labelCache = new LabelCache();
 	}
 
 	/**
@@ -57,35 +63,68 @@ public class InvokedMethod extends TransitionLabelMaker {
 	}
 
 	@Override
-	public Set<Label> breakBefore(Instruction nextInstruction) {
+	public Class<?>[] getInstructionTypes() {
+		return new Class<?>[] { INVOKESTATIC.class, InstanceInvocation.class };
+	}
+
+	@Override
+	public boolean breakBefore(ThreadInfo thread, Instruction nextInstruction, LabelSet labels) {
 		if (nextInstruction instanceof INVOKESTATIC) {
 			INVOKESTATIC instruction = (INVOKESTATIC) nextInstruction;
 			MethodInfo methodInfo = instruction.getInvokedMethod();
-			for (String method : methodName) {
-				if (MethodSpec.createMethodSpec(method).matches(methodInfo)) {
-					Set<Label> labels = new HashSet<Label>();
-					String signature = methodInfo.getClassName().replaceAll("[$.]", "_") + "_"
-							+ methodInfo.getJNIName();
-					labels.add(new Label("invoked__" + signature, method + " is invoked"));
-					return labels;
-				}
+			MatchCache.Match match = matchMethod(methodInfo, methodSpec, matches);
+			if (match.matches()) {
+				labels.add(this, match, 0);
+				return true;
 			}
 		} else if (nextInstruction instanceof InstanceInvocation) {
 			InstanceInvocation instruction = (InstanceInvocation) nextInstruction;
-			// The MethodInfo object is not yet initialized for an instance invocation
-			String invokedClass = instruction.getInvokedMethodClassName();
-			String invokedMethod = instruction.getInvokedMethodName();
-			invokedMethod = invokedMethod.split("\\(", 2)[0]; // remove the signature part
-			for (String method : methodName) {
-				if (MethodSpec.createMethodSpec(method).matches(invokedClass, invokedMethod)) {
-					Set<Label> labels = new HashSet<Label>();
-					String signature = invokedClass.replaceAll("[$.]", "_") + "_" + Types.getJNIMangledMethodName(null,
-							invokedMethod, instruction.getInvokedMethodSignature());
-					labels.add(new Label("invoked__" + signature, method + " is invoked"));
-					return labels;
-				}
+			MatchCache.Match match = invocations.get(instruction);
+			if (match == null) {
+				match = matchInvocation(instruction);
+				invocations.put(instruction, match);
+			}
+			if (match.matches()) {
+				labels.add(this, match, 0);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the label of the invocation of the given matched method.
+	 * 
+	 * @param match the result of matching the invoked method
+	 * @param value not used
+	 * @return the label of the invocation
+	 */
+	@Override
+	public Label getLabel(MatchCache.Match match, int value) {
+		return labelCache.computeIfAbsent(match.getSignature(),
+				() -> new Label("invoked__" + match.getSignature(), methodName[match.getIndex()] + " is invoked"));
+	}
+
+	/**
+	 * Determines which of the method specifications the method invoked by the
+	 * given instance invocation matches.
+	 * 
+	 * @param instruction an instance invocation
+	 * @return the result of matching the invoked method
+	 */
+	private MatchCache.Match matchInvocation(InstanceInvocation instruction) {
+		// The MethodInfo object is not yet initialized for an instance invocation
+		String invokedClass = instruction.getInvokedMethodClassName();
+		String invokedMethod = instruction.getInvokedMethodName();
+		invokedMethod = invokedMethod.split("\\(", 2)[0]; // remove the signature part
+		for (int i = 0; i < methodName.length; i++) {
+			if (methodSpec[i] != null && methodSpec[i].matches(invokedClass, invokedMethod)) {
+				String signature = invokedClass.replaceAll("[$.]", "_") + "_"
+						+ Types.getJNIMangledMethodName(null, invokedMethod, instruction.getInvokedMethodSignature());
+				this.setMatched(methodSpec, i);
+				return new MatchCache.Match(i, signature);
 			}
 		}
-		return null;
+		return MatchCache.NO_MATCH;
 	}
 }
@@ -22,8 +22,9 @@ package label;
  * @author Syyeda Zainab Fatmi
  */
 public class Label {
-	private String name;
-	private String description;
+	private final String name;
+	private final String description;
+	private final int hash; // precomputed hash code
 
 	/**
 	 * Creates a state label.
@@ -34,6 +35,7 @@ public class Label {
 	public Label(String name, String description) {
 		this.name = name;
 		this.description = description;
+		this.hash = computeHashCode(name, description);
 	}
 
 	/**
@@ -60,6 +62,9 @@ public class Label {
 			return true;
 		if (object != null && object instanceof Label) {
 			Label other = (Label) object;
+			if (this.hash != other.hash) {
+				return false;
+			}
 			if (this.name == null) {
 				if (other.name != null) {
 					return false;
@@ -82,6 +87,17 @@ public class Label {
 
 	@Override
 	public int hashCode() {
+		return this.hash;
+	}
+
+	/**
+	 * Computes the hash code of a label with the given name and description.
+	 * 
+	 * @param name        the name of the label
+	 * @param description the description of the label
+	 * @return the hash code of the label
+	 */
+	private static int computeHashCode(String name, String description) {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((description == null) ? 0 : description.hashCode());
@@ -0,0 +1,406 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+
+/**
+ * Runs JPF, with the listeners of jpf-label, on a batch of application
+ * properties files and writes a summary of the runs.
+ * 
+ * Usage: java label.LabelBatch [-threads n] [-output directory] [-summary file]
+ * [-inprocess] (&lt;file&gt;.jpf | directory)...
+ * 
+ * The runs are distributed over a work-stealing pool of n threads, by default
+ * one per core. The output files of the run of &lt;name&gt;.jpf are written to
+ * the directory &lt;name&gt; within the output directory, labels by default,
+ * by setting the property label.directory. By default, each run is performed by
+ * a separate JVM, whose output is written to the file jpf.log in that
+ * directory, so that the runs proceed concurrently. With -inprocess, the runs
+ * are instead performed in this JVM, which reuses the classes loaded, including
+ * those of the label makers, and the code compiled by earlier runs. They are
+ * then performed one at a time, by a single thread, since jpf-core keeps part
+ * of the state of a run in static fields, shared by all runs in a JVM: the
+ * current VM, returned by VM.getVM(), the current thread, returned by
+ * ThreadInfo.getCurrentThread(), and the settings which a new VM stores in
+ * static fields of ClassInfo, ClassLoaderInfo, ThreadInfo and other classes
+ * when it initializes them. The time taken by a run excludes the time spent
+ * waiting for the previous runs.
+ * 
+ * The summary, written to the file summary.csv within the output directory by
+ * default, contains a line for each run with the name of the properties file,
+ * the status of the run, the number of states and labels, the time taken in
+ * seconds and the total size in bytes of the output files.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelBatch {
+	private static final String RESULT = "label-batch:"; // prefix of the result printed by a separate JVM
+	private static final String LOG = "jpf.log"; // name of the file to which the output of a separate JVM is written
+
+	private File output; // the directory containing the output of the runs
+	private boolean inProcess; // whether the runs are performed by this JVM
+
+	/**
+	 * Creates a batch.
+	 * 
+	 * @param output    the directory containing the output of the runs
+	 * @param inProcess whether the runs are performed by this JVM
+	 */
+	public LabelBatch(File output, boolean inProcess) {
+		this.output = output;
+		this.inProcess = inProcess;
+	}
+
+	/**
+	 * Runs the batch.
+	 * 
+	 * @param args the options and the properties files and directories
+	 */
+	public static void main(String[] args) {
+		if (args.length == 3 && args[0].equals("-run")) {
+			Result result = runJPF(new File(args[1]), new File(args[2]));
+			System.out.println(RESULT + " " + result.status + " " + result.states + " " + result.labels);
+			return;
+		}
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		File output = new File("labels");
+		File summary = null;
+		boolean inProcess = false;
+		List<File> configs = new ArrayList<File>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-threads")) {
+					threads = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-output")) {
+					output = new File(args[++i]);
+				} else if (args[i].equals("-summary")) {
+					summary = new File(args[++i]);
+				} else if (args[i].equals("-inprocess")) {
+					inProcess = true;
+				} else {
+					addConfigs(new File(args[i]), configs);
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+			configs.clear();
+		}
+		if (configs.isEmpty() || threads < 1) {
+			System.out.println("Usage: java label.LabelBatch [-threads n] [-output directory] [-summary file] "
+					+ "[-inprocess] (<file>.jpf | directory)...");
+			return;
+		}
+		if (summary == null) {
+			summary = new File(output, "summary.csv");
+		}
+
+		List<Result> results = new LabelBatch(output, inProcess).run(configs, threads);
+		try {
+			writeSummary(summary, results);
+		} catch (IOException e) {
+			System.out.println("Could not write the summary to " + summary.getPath());
+		}
+	}
+
+	/**
+	 * Runs JPF on the given properties files. If the runs are performed by this
+	 * JVM, a single thread is used, since they are performed one at a time.
+	 * 
+	 * @param configs the properties files
+	 * @param threads the number of threads
+	 * @return the result of each run, in the same order as the properties files
+	 */
+	public List<Result> run(List<File> configs, int threads) {
+		ExecutorService pool = Executors.newWorkStealingPool(this.inProcess ? 1 : threads);
+		try {
+			List<Future<Result>> futures = new ArrayList<Future<Result>>();
+			Set<String> names = new HashSet<String>();
+			for (File config : configs) {
+				String name = config.getName().replaceFirst("\\.jpf$", "");
+				String unique = name;
+				for (int k = 2; !names.add(unique); k++) {
+					unique = name + "_" + k;
+				}
+				File directory = new File(this.output, unique);
+				futures.add(pool.submit(() -> this.run(config, directory)));
+			}
+
+			List<Result> results = new ArrayList<Result>();
+			for (int i = 0; i < configs.size(); i++) {
+				try {
+					results.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					results.add(new Result(configs.get(i), "failed: " + e.getCause()));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					results.add(new Result(configs.get(i), "interrupted"));
+				}
+			}
+			return results;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Runs JPF on the given properties file.
+	 * 
+	 * @param config    the properties file
+	 * @param directory the directory to which the output files are written
+	 * @return the result of the run
+	 */
+	private Result run(File config, File directory) {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			return new Result(config, "failed: could not create " + directory.getPath());
+		}
+		Result result;
+		if (this.inProcess) {
+			synchronized (LabelBatch.class) { // the current VM and thread of jpf-core are static
+				long start = System.nanoTime();
+				result = runJPF(config, directory);
+				result.seconds = (System.nanoTime() - start) / 1e9;
+			}
+		} else {
+			long start = System.nanoTime();
+			result = this.fork(config, directory);
+			result.seconds = (System.nanoTime() - start) / 1e9;
+		}
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (!file.getName().equals(LOG)) {
+					result.bytes += file.length();
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Runs JPF on the given properties file in a separate JVM.
+	 * 
+	 * @param config    the properties file
+	 * @param directory the directory to which the output files are written
+	 * @return the result of the run
+	 */
+	private Result fork(File config, File directory) {
+		String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				LabelBatch.class.getName(), "-run", config.getPath(), directory.getPath());
+		File log = new File(directory, LOG);
+		builder.redirectErrorStream(true).redirectOutput(log);
+		try {
+			int exit = builder.start().waitFor();
+			Result result = new Result(config, "failed: exit code " + exit);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(log)));
+			try {
+				for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+					if (line.startsWith(RESULT)) {
+						String[] fields = line.substring(RESULT.length()).trim().split(" ");
+						result.status = fields[0];
+						result.states = Integer.parseInt(fields[1]);
+						result.labels = Integer.parseInt(fields[2]);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+			return result;
+		} catch (IOException e) {
+			return new Result(config, "failed: " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new Result(config, "interrupted");
+		}
+	}
+
+	/**
+	 * Runs JPF on the given properties file in this JVM.
+	 * 
+	 * @param config    the properties file
+	 * @param directory the directory to which the output files are written
+	 * @return the result of the run
+	 */
+	private static Result runJPF(File config, File directory) {
+		Result result = new Result(config, "ok");
+		try {
+			Config configuration = JPF.createConfig(
+					new String[] { config.getPath(), "+label.directory=" + directory.getPath() });
+			JPF jpf = new JPF(configuration);
+			jpf.run();
+			if (jpf.foundErrors()) {
+				result.status = "errors";
+			}
+			StateLabel listener = jpf.getListenerOfType(StateLabel.class);
+			if (listener != null) {
+				result.states = listener.getNumberOfStates();
+				result.labels = listener.getNumberOfLabels();
+			}
+		} catch (RuntimeException e) {
+			result.status = "failed: " + e;
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the given properties file, or the properties files in the given
+	 * directory, to the given list.
+	 * 
+	 * @param file    a properties file or a directory
+	 * @param configs the list of properties files
+	 */
+	private static void addConfigs(File file, List<File> configs) {
+		if (file.isDirectory()) {
+			File[] files = file.listFiles((directory, name) -> name.endsWith(".jpf"));
+			if (files != null) {
+				Arrays.sort(files);
+				configs.addAll(Arrays.asList(files));
+			}
+		} else {
+			configs.add(file);
+		}
+	}
+
+	/**
+	 * Writes the summary of the given results as comma separated values.
+	 * 
+	 * @param summary the file to which the summary is written
+	 * @param results the results of the runs
+	 * @throws IOException if the file cannot be written
+	 */
+	private static void writeSummary(File summary, List<Result> results) throws IOException {
+		File parent = summary.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		ChannelWriter writer = new ChannelWriter(new FileOutputStream(summary).getChannel());
+		try {
+			String newline = System.lineSeparator();
+			writer.write("config,status,states,labels,seconds,bytes").write(newline);
+			for (Result result : results) {
+				writer.write(result.config.getPath().replace(',', ';')).write(',');
+				writer.write(result.status.replace(',', ';').replace('\n', ' ')).write(',');
+				writer.write(result.states).write(',').write(result.labels).write(',');
+				writer.write(String.format(Locale.ROOT, "%.3f", result.seconds)).write(',');
+				writer.write(Long.toString(result.bytes)).write(newline);
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * The result of running JPF on a properties file.
+	 */
+	public static class Result {
+		private File config; // the properties file
+		private String status; // ok, errors if JPF found errors, or the reason of the failure
+		private int states; // number of states labelled
+		private int labels; // number of labels
+		private double seconds; // time taken
+		private long bytes; // total size of the output files
+
+		/**
+		 * Creates the result of a run.
+		 * 
+		 * @param config the properties file
+		 * @param status the status of the run
+		 */
+		private Result(File config, String status) {
+			this.config = config;
+			this.status = status;
+			this.states = 0;
+			this.labels = 0;
+			this.seconds = 0;
+			this.bytes = 0;
+		}
+
+		/**
+		 * Returns the properties file.
+		 * 
+		 * @return the properties file
+		 */
+		public File getConfig() {
+			return this.config;
+		}
+
+		/**
+		 * Returns the status of the run: ok, errors if JPF found errors, or the
+		 * reason of the failure.
+		 * 
+		 * @return the status of the run
+		 */
+		public String getStatus() {
+			return this.status;
+		}
+
+		/**
+		 * Returns the number of states labelled.
+		 * 
+		 * @return the number of states labelled
+		 */
+		public int getStates() {
+			return this.states;
+		}
+
+		/**
+		 * Returns the number of labels.
+		 * 
+		 * @return the number of labels
+		 */
+		public int getLabels() {
+			return this.labels;
+		}
+
+		/**
+		 * Returns the time taken by the run.
+		 * 
+		 * @return the time taken, in seconds
+		 */
+		public double getSeconds() {
+			return this.seconds;
+		}
+
+		/**
+		 * Returns the total size of the output files.
+		 * 
+		 * @return the total size of the output files, in bytes
+		 */
+		public long getBytes() {
+			return this.bytes;
+		}
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of labels, keyed by a specification and a value. A labeling
+ * function can use it to reuse the label it created earlier for, say, a
+ * variable having a particular value, rather than building the name and
+ * description of the label again. A typical use is
+ * 
+ * <pre>
+ * Label label = cache.computeIfAbsent(signature, value,
+ * 		() -&gt; new Label(value + "__" + signature, name + " = " + value));
+ * </pre>
+ * 
+ * The key identifies the specification, for example by its mangled signature,
+ * and is compared by equality. Labels without a value use the value 0. Once the
+ * cache is full, it is cleared.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelCache {
+	private static final int DEFAULT_CAPACITY = 65536; // default maximal number of labels
+
+	private Map<Object, Labels> labels; // the labels of each key
+	private int size; // number of labels
+	private int capacity; // maximal number of labels
+
+	/**
+	 * Creates an empty cache with the default capacity.
+	 */
+	public LabelCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty cache with the given capacity.
+	 * 
+	 * @param capacity the maximal number of labels of the cache
+	 */
+	public LabelCache(int capacity) {
+		this.labels = new HashMap<Object, Labels>();
+		this.size = 0;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Returns the cached label for the given key.
+	 * 
+	 * @param key a specification
+	 * @return the label, or null if it has not been cached
+	 */
+	public Label get(Object key) {
+		return this.get(key, 0);
+	}
+
+	/**
+	 * Returns the cached label for the given key and value.
+	 * 
+	 * @param key   a specification
+	 * @param value a value
+	 * @return the label, or null if it has not been cached
+	 */
+	public Label get(Object key, int value) {
+		Labels values = this.labels.get(key);
+		return (values == null ? null : values.get(value));
+	}
+
+	/**
+	 * Caches the label for the given key.
+	 * 
+	 * @param key   a specification
+	 * @param label the label
+	 * @return the given label
+	 */
+	public Label put(Object key, Label label) {
+		return this.put(key, 0, label);
+	}
+
+	/**
+	 * Caches the label for the given key and value.
+	 * 
+	 * @param key   a specification
+	 * @param value a value
+	 * @param label the label
+	 * @return the given label
+	 */
+	public Label put(Object key, int value, Label label) {
+		if (this.size >= this.capacity) {
+			this.labels.clear();
+			this.size = 0;
+		}
+		Labels values = this.labels.get(key);
+		if (values == null) {
+			values = new Labels();
+			this.labels.put(key, values);
+		}
+		if (values.put(value, label)) {
+			this.size++;
+		}
+		return label;
+	}
+
+	/**
+	 * Returns the cached label for the given key, creating it by means of the
+	 * given supplier and caching it if it has not been cached.
+	 * 
+	 * @param key      a specification
+	 * @param supplier creates the label, only invoked if it has not been cached
+	 * @return the label
+	 */
+	public Label computeIfAbsent(Object key, Supplier<Label> supplier) {
+		return this.computeIfAbsent(key, 0, supplier);
+	}
+
+	/**
+	 * Returns the cached label for the given key and value, creating it by means
+	 * of the given supplier and caching it if it has not been cached.
+	 * 
+	 * @param key      a specification
+	 * @param value    a value
+	 * @param supplier creates the label, only invoked if it has not been cached
+	 * @return the label
+	 */
+	public Label computeIfAbsent(Object key, int value, Supplier<Label> supplier) {
+		Label label = this.get(key, value);
+		return (label == null ? this.put(key, value, supplier.get()) : label);
+	}
+
+	/**
+	 * The labels of a key, in an open addressing hash table indexed by value.
+	 */
+	private static class Labels {
+		private static final int INITIAL_CAPACITY = 4; // must be a power of two
+
+		private int[] values; // the values
+		private Label[] labels; // the labels, null for an empty slot
+		private int size; // number of labels
+
+		/**
+		 * Creates an empty table.
+		 */
+		private Labels() {
+			this.values = new int[INITIAL_CAPACITY];
+			this.labels = new Label[INITIAL_CAPACITY];
+			this.size = 0;
+		}
+
+		/**
+		 * Returns the label of the given value.
+		 * 
+		 * @param value a value
+		 * @return the label, or null if there is none
+		 */
+		private Label get(int value) {
+			int mask = this.labels.length - 1;
+			for (int slot = hash(value) & mask; this.labels[slot] != null; slot = (slot + 1) & mask) {
+				if (this.values[slot] == value) {
+					return this.labels[slot];
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Sets the label of the given value.
+		 * 
+		 * @param value a value
+		 * @param label the label
+		 * @return true if the value did not have a label yet, false otherwise
+		 */
+		private boolean put(int value, Label label) {
+			if (2 * (this.size + 1) > this.labels.length) {
+				this.resize();
+			}
+			int mask = this.labels.length - 1;
+			int slot = hash(value) & mask;
+			while (this.labels[slot] != null) {
+				if (this.values[slot] == value) {
+					this.labels[slot] = label;
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+			this.values[slot] = value;
+			this.labels[slot] = label;
+			this.size++;
+			return true;
+		}
+
+		/**
+		 * Doubles the capacity of the table.
+		 */
+		private void resize() {
+			int[] oldValues = this.values;
+			Label[] oldLabels = this.labels;
+			this.values = new int[2 * oldValues.length];
+			this.labels = new Label[2 * oldLabels.length];
+			int mask = this.labels.length - 1;
+			for (int i = 0; i < oldLabels.length; i++) {
+				if (oldLabels[i] != null) {
+					int slot = hash(oldValues[i]) & mask;
+					while (this.labels[slot] != null) {
+						slot = (slot + 1) & mask;
+					}
+					this.values[slot] = oldValues[i];
+					this.labels[slot] = oldLabels[i];
+				}
+			}
+		}
+
+		/**
+		 * Spreads the bits of the given value.
+		 * 
+		 * @param value a value
+		 * @return the hash of the value
+		 */
+		private static int hash(int value) {
+			int h = value * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Converts a file written by BinarySink to the text format of TextSink or to
+ * the dot format of DotSink. The records are streamed, so that the memory
+ * needed does not depend on the number of states.
+ * Since the binary format only contains the labelling of the states, the dot
+ * file contains the labeled states but no transitions.
+ * 
+ * Usage: java label.LabelConverter &lt;file&gt;.labb [lab|dot]
+ * 
+ * The result is written to &lt;file&gt;.lab or &lt;file&gt;.dot. By default,
+ * the file is converted to the text format.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelConverter {
+	private static final String EXTENSION = ".labb"; // extension of the binary format
+
+	/**
+	 * Converts the given file.
+	 * 
+	 * @param args the name of the file and, optionally, the format to convert to
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1 || args.length > 2) {
+			System.out.println("Usage: java label.LabelConverter <file>" + EXTENSION + " [lab|dot]");
+			return;
+		}
+		String input = args[0];
+		String format = (args.length == 2 ? args[1] : "lab");
+		String name = (input.endsWith(EXTENSION) ? input.substring(0, input.length() - EXTENSION.length()) : input);
+		try {
+			if (format.equals("lab")) {
+				convertToText(input, name + ".lab");
+			} else if (format.equals("dot")) {
+				convertToDot(input, name + ".dot");
+			} else {
+				System.out.println("Unknown format " + format);
+			}
+		} catch (IOException e) {
+			System.out.println("Could not convert the file " + input + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Converts the given binary file to the text format.
+	 * 
+	 * @param input  the name of the binary file
+	 * @param output the name of the text file
+	 * @throws IOException if a file cannot be read or written, or the binary
+	 *                     file is not valid
+	 */
+	public static void convertToText(String input, String output) throws IOException {
+		Records records = new Records(input);
+		try {
+			ChannelWriter writer = new ChannelWriter(new FileOutputStream(output).getChannel());
+			try {
+				Label[] labels = records.getLabels();
+				for (int i = 0; i < labels.length; i++) {
+					writer.write(i).write("=\"").write(labels[i].getName()).write("\" ");
+				}
+				writer.write(System.lineSeparator());
+				while (records.next()) {
+					writer.write(records.getId()).write(':');
+					for (int j = 0; j < records.getSize(); j++) {
+						writer.write(' ').write(records.getLabel(j));
+					}
+					writer.write('\n');
+				}
+			} finally {
+				writer.close();
+			}
+		} finally {
+			records.close();
+		}
+	}
+
+	/**
+	 * Converts the given binary file to the dot format.
+	 * 
+	 * @param input  the name of the binary file
+	 * @param output the name of the dot file
+	 * @throws IOException if a file cannot be read or written, or the binary
+	 *                     file is not valid
+	 */
+	public static void convertToDot(String input, String output) throws IOException {
+		Records records = new Records(input);
+		try {
+			ChannelWriter writer = new ChannelWriter(new FileOutputStream(output).getChannel());
+			try {
+				String newline = System.lineSeparator();
+				writer.write("digraph statespace {").write(newline);
+				writer.write("node [colorscheme=\"set312\" style=wedged]").write(newline);
+				String[] colours = new String[records.getLabels().length];
+				for (int i = 0; i < colours.length; i++) {
+					colours[i] = DotSink.computeColour(i);
+				}
+				while (records.next()) {
+					if (records.getSize() == 1) {
+						writer.write(records.getId()).write(" [style=filled fillcolor=")
+								.write(colours[records.getLabel(0)]).write("]\n");
+					} else {
+						writer.write(records.getId()).write(" [fillcolor=\"");
+						for (int j = 0; j < records.getSize(); j++) {
+							if (j > 0) {
+								writer.write(':');
+							}
+							writer.write(colours[records.getLabel(j)]);
+						}
+						writer.write("\"]\n");
+					}
+				}
+				writer.write("}").write(newline);
+			} finally {
+				writer.close();
+			}
+		} finally {
+			records.close();
+		}
+	}
+
+	/**
+	 * Reads the records of a binary file one by one.
+	 */
+	public static class Records {
+		private FileChannel channel; // the channel of the file
+		private ChannelReader reader; // reader of the records
+		private Label[] labels; // the dictionary
+		private long remaining; // number of records not read yet
+		private long previous; // id of the state of the last record read
+		private int[] current; // labels of the last record read
+		private int size; // number of labels of the last record read
+
+		/**
+		 * Opens the given binary file and reads its dictionary.
+		 * 
+		 * @param name the name of the file
+		 * @throws IOException if the file cannot be read or is not valid
+		 */
+		public Records(String name) throws IOException {
+			this.channel = new FileInputStream(name).getChannel();
+			try {
+				long length = this.channel.size();
+				if (length < BinarySink.HEADER_SIZE + BinarySink.FOOTER_SIZE) {
+					throw new IOException("Not a binary labelling file");
+				}
+				ByteBuffer footer = ByteBuffer.allocate(BinarySink.FOOTER_SIZE);
+				while (footer.hasRemaining()) {
+					if (this.channel.read(footer, length - footer.remaining()) < 0) {
+						throw new IOException("Not a binary labelling file");
+					}
+				}
+				footer.flip();
+				this.remaining = footer.getLong();
+				footer.getLong(); // the offset of the index
+				long dictionaryOffset = footer.getLong();
+				if (footer.getInt() != BinarySink.MAGIC) {
+					throw new IOException("Not a binary labelling file");
+				}
+
+				this.channel.position(dictionaryOffset);
+				ChannelReader dictionary = new ChannelReader(this.channel);
+				this.labels = new Label[(int) dictionary.readVarint()];
+				for (int i = 0; i < this.labels.length; i++) {
+					String labelName = dictionary.readString();
+					this.labels[i] = new Label(labelName, dictionary.readString());
+				}
+
+				this.channel.position(0);
+				this.reader = new ChannelReader(this.channel);
+				if (this.reader.readInt() != BinarySink.MAGIC) {
+					throw new IOException("Not a binary labelling file");
+				}
+				int version = this.reader.readInt();
+				if (version != BinarySink.VERSION) {
+					throw new IOException("Unsupported version " + version);
+				}
+			} catch (IOException e) {
+				this.channel.close();
+				throw e;
+			}
+			this.previous = -1;
+			this.current = new int[8];
+			this.size = 0;
+		}
+
+		/**
+		 * Returns the labels, in the order of their index.
+		 * 
+		 * @return the labels
+		 */
+		public Label[] getLabels() {
+			return this.labels;
+		}
+
+		/**
+		 * Reads the next record.
+		 * 
+		 * @return true if a record was read, false if all records have been read
+		 * @throws IOException if the file cannot be read or is not valid
+		 */
+		public boolean next() throws IOException {
+			if (this.remaining == 0) {
+				return false;
+			}
+			this.remaining--;
+			this.previous += BinarySink.unzigzag(this.reader.readVarint());
+			this.size = (int) this.reader.readVarint();
+			if (this.size > this.current.length) {
+				this.current = new int[Math.max(this.size, 2 * this.current.length)];
+			}
+			int label = 0;
+			for (int j = 0; j < this.size; j++) {
+				label += (int) this.reader.readVarint();
+				if (label < 0 || label >= this.labels.length) {
+					throw new IOException("Invalid label index " + label);
+				}
+				this.current[j] = label;
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the id of the state of the last record read.
+		 * 
+		 * @return the id of the state
+		 */
+		public int getId() {
+			return (int) this.previous;
+		}
+
+		/**
+		 * Returns the number of labels of the last record read.
+		 * 
+		 * @return the number of labels
+		 */
+		public int getSize() {
+			return this.size;
+		}
+
+		/**
+		 * Returns the index of a label of the last record read.
+		 * 
+		 * @param j the position of the label in the record
+		 * @return the index of the label
+		 */
+		public int getLabel(int j) {
+			return this.current[j];
+		}
+
+		/**
+		 * Closes the file.
+		 * 
+		 * @throws IOException if the file cannot be closed
+		 */
+		public void close() throws IOException {
+			this.channel.close();
+		}
+	}
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An index of the states with each label, as written by LabelIndexSink. A
+ * query combines the sets of states with particular labels by means of and, or
+ * and not, for example
+ * 
+ * <pre>
+ * LabelIndex index = LabelIndex.read("Method.labx");
+ * int[] states = index.getStates(index.get("end").and(index.not(index.get("x"))));
+ * </pre>
+ * 
+ * Usage: java label.LabelIndex &lt;file&gt;.labx &lt;query&gt;
+ * 
+ * prints the ids of the states satisfying the query, one per line. A query is
+ * built from names of labels, ! (not), &amp; (and), | (or) and parentheses,
+ * where ! binds strongest and | weakest, for example "end &amp; !(x | y)".
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelIndex {
+	private Label[] labels; // the labels, by index
+	private Map<String, Integer> indices; // the index of each label, by name
+	private CompressedBitmap all; // all labelled states
+	private CompressedBitmap[] states; // the states with each label
+
+	/**
+	 * Creates an index.
+	 * 
+	 * @param labels the labels, by index
+	 * @param all    all labelled states
+	 * @param states the states with each label
+	 */
+	private LabelIndex(Label[] labels, CompressedBitmap all, CompressedBitmap[] states) {
+		this.labels = labels;
+		this.indices = new HashMap<String, Integer>();
+		for (int i = 0; i < labels.length; i++) {
+			this.indices.put(labels[i].getName(), i);
+		}
+		this.all = all;
+		this.states = states;
+	}
+
+	/**
+	 * Reads the index from the given file.
+	 * 
+	 * @param file the name of the file
+	 * @return the index
+	 * @throws IOException if the file cannot be read or is not valid
+	 */
+	public static LabelIndex read(String file) throws IOException {
+		FileChannel channel = new FileInputStream(file).getChannel();
+		try {
+			ChannelReader reader = new ChannelReader(channel);
+			if (reader.readInt() != LabelIndexSink.MAGIC) {
+				throw new IOException("Not a label index");
+			}
+			int version = reader.readInt();
+			if (version != LabelIndexSink.VERSION) {
+				throw new IOException("Unsupported version " + version);
+			}
+			int n = (int) reader.readVarint();
+			CompressedBitmap all = CompressedBitmap.read(reader);
+			Label[] labels = new Label[n];
+			CompressedBitmap[] states = new CompressedBitmap[n];
+			for (int i = 0; i < n; i++) {
+				labels[i] = new Label(reader.readString(), reader.readString());
+				states[i] = CompressedBitmap.read(reader);
+			}
+			return new LabelIndex(labels, all, states);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Returns the labels of the index.
+	 * 
+	 * @return the labels, by index
+	 */
+	public Label[] getLabels() {
+		return this.labels.clone();
+	}
+
+	/**
+	 * Returns the set of states with the label with the given name. The set is a
+	 * copy, which may be modified.
+	 * 
+	 * @param name the name of a label
+	 * @return the states with the label
+	 * @throws IllegalArgumentException if there is no label with the given name
+	 */
+	public CompressedBitmap get(String name) {
+		return this.find(name).copy();
+	}
+
+	/**
+	 * Returns the set of all labelled states. The set is a copy, which may be
+	 * modified.
+	 * 
+	 * @return all labelled states
+	 */
+	public CompressedBitmap all() {
+		return this.all.copy();
+	}
+
+	/**
+	 * Returns the complement of the given set of states.
+	 * 
+	 * @param states a set of states
+	 * @return the labelled states not in the given set
+	 */
+	public CompressedBitmap not(CompressedBitmap states) {
+		return this.all.andNot(states);
+	}
+
+	/**
+	 * Returns the ids of the given set of states.
+	 * 
+	 * @param states a set of states
+	 * @return the ids of the states, in increasing order
+	 */
+	public int[] getStates(CompressedBitmap states) {
+		int[] ids = states.toArray();
+		for (int i = 0; i < ids.length; i++) {
+			ids[i]--;
+		}
+		return ids;
+	}
+
+	/**
+	 * Returns the set of states satisfying the given query.
+	 * 
+	 * @param query a query, as described above
+	 * @return the states satisfying the query, which may be modified
+	 * @throws IllegalArgumentException if the query is not well formed or
+	 *                                  contains an unknown label
+	 */
+	public CompressedBitmap query(String query) {
+		Query parser = new Query(query);
+		CompressedBitmap result = parser.or();
+		parser.skipSpaces();
+		if (parser.position < query.length()) {
+			throw new IllegalArgumentException("Unexpected " + query.charAt(parser.position) + " at "
+					+ parser.position);
+		}
+		return (parser.shared ? result.copy() : result);
+	}
+
+	/**
+	 * Returns the set of states with the label with the given name, which should
+	 * not be modified.
+	 * 
+	 * @param name the name of a label
+	 * @return the states with the label
+	 * @throws IllegalArgumentException if there is no label with the given name
+	 */
+	private CompressedBitmap find(String name) {
+		Integer index = this.indices.get(name);
+		if (index == null) {
+			throw new IllegalArgumentException("Unknown label " + name);
+		}
+		return this.states[index];
+	}
+
+	/**
+	 * Prints the ids of the states satisfying a query.
+	 * 
+	 * @param args the name of the file and the query
+	 */
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.out.println("Usage: java label.LabelIndex <file>.labx <query>");
+			return;
+		}
+		try {
+			LabelIndex index = read(args[0]);
+			StringBuilder output = new StringBuilder();
+			for (int id : index.getStates(index.query(args[1]))) {
+				output.append(id).append(System.lineSeparator());
+			}
+			System.out.print(output);
+		} catch (IOException e) {
+			System.out.println("Could not read the file " + args[0] + ": " + e.getMessage());
+		} catch (IllegalArgumentException e) {
+			System.out.println("Could not parse the query: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * A recursive descent parser of a query, which evaluates the query while it
+	 * is parsed.
+	 */
+	private class Query {
+		private final String query; // the query
+		private int position; // the position of the next character to be parsed
+		private boolean shared; // whether the last result is the set of states of a label, which is not copied
+
+		/**
+		 * Creates a parser of the given query.
+		 * 
+		 * @param query a query
+		 */
+		private Query(String query) {
+			this.query = query;
+			this.position = 0;
+			this.shared = false;
+		}
+
+		/**
+		 * Parses a disjunction of conjunctions.
+		 * 
+		 * @return the states satisfying the disjunction
+		 */
+		private CompressedBitmap or() {
+			CompressedBitmap result = this.and();
+			while (this.accept('|')) {
+				result = result.or(this.and());
+				this.shared = false;
+			}
+			return result;
+		}
+
+		/**
+		 * Parses a conjunction of negations.
+		 * 
+		 * @return the states satisfying the conjunction
+		 */
+		private CompressedBitmap and() {
+			CompressedBitmap result = this.not();
+			while (this.accept('&')) {
+				result = result.and(this.not());
+				this.shared = false;
+			}
+			return result;
+		}
+
+		/**
+		 * Parses a negation, a parenthesized query or the name of a label.
+		 * 
+		 * @return the states satisfying the negation
+		 */
+		private CompressedBitmap not() {
+			if (this.accept('!')) {
+				CompressedBitmap result = LabelIndex.this.not(this.not());
+				this.shared = false;
+				return result;
+			}
+			if (this.accept('(')) {
+				CompressedBitmap result = this.or();
+				if (!this.accept(')')) {
+					throw new IllegalArgumentException("Missing ) at " + this.position);
+				}
+				return result;
+			}
+			int start = this.position;
+			while (this.position < this.query.length() && "!&|() ".indexOf(this.query.charAt(this.position)) < 0) {
+				this.position++;
+			}
+			if (start == this.position) {
+				throw new IllegalArgumentException("Missing label at " + start);
+			}
+			this.shared = true;
+			return LabelIndex.this.find(this.query.substring(start, this.position));
+		}
+
+		/**
+		 * Skips spaces and the given character, if it is next.
+		 * 
+		 * @param c a character
+		 * @return true if the character was skipped, false otherwise
+		 */
+		private boolean accept(char c) {
+			this.skipSpaces();
+			if (this.position < this.query.length() && this.query.charAt(this.position) == c) {
+				this.position++;
+				this.skipSpaces();
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Skips spaces.
+		 */
+		private void skipSpaces() {
+			while (this.position < this.query.length() && this.query.charAt(this.position) == ' ') {
+				this.position++;
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.search.Search;
+
+/**
+ * Maintains, for each label, the set of states with that label, and writes
+ * these sets as an index to a file, named &lt;name of system under
+ * test&gt;.labx. The index can be queried by means of LabelIndex, without
+ * scanning the labelling of all states.
+ * 
+ * The file consists of
+ * 
+ * <ol>
+ * <li>a header: the magic number and the version of the format, as ints,</li>
+ * <li>the number of labels, as a varint,</li>
+ * <li>the set of all labelled states, and</li>
+ * <li>for each label, its name and description, as strings, followed by the
+ * set of states with that label.</li>
+ * </ol>
+ * 
+ * The sets of states are compressed bitmaps, as written by CompressedBitmap, in
+ * which a state with id i is represented by i + 1, since the initial state has
+ * id -1. The encoding of ints, varints and strings is that of ChannelWriter.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelIndexSink implements LabelSink {
+	/**
+	 * The magic number identifying the format.
+	 */
+	public static final int MAGIC = 0x4A4C4958;
+
+	/**
+	 * The version of the format.
+	 */
+	public static final int VERSION = 1;
+
+	private CompressedBitmap all; // all labelled states
+	private CompressedBitmap[] states; // the states with each label
+
+	/**
+	 * Initializes this sink.
+	 * 
+	 * @param configuration JPF's configuration
+	 */
+	public LabelIndexSink(Config configuration) {
+		this.all = new CompressedBitmap();
+		this.states = new CompressedBitmap[16];
+	}
+
+	@Override
+	public void searchStarted(Search search) {
+	}
+
+	/**
+	 * Adds the state to the set of states of each of its labels.
+	 */
+	@Override
+	public void labelState(int id, LabelSet labels) {
+		this.all.add(id + 1);
+		for (int i = labels.next(0); i >= 0; i = labels.next(i + 1)) {
+			if (i >= this.states.length) {
+				this.states = Arrays.copyOf(this.states, Math.max(i + 1, 2 * this.states.length));
+			}
+			if (this.states[i] == null) {
+				this.states[i] = new CompressedBitmap();
+			}
+			this.states[i].add(id + 1);
+		}
+	}
+
+	/**
+	 * Transitions are not part of the index.
+	 */
+	@Override
+	public void labelTransition(int source, int target) {
+	}
+
+	@Override
+	public void writeStateLabels(Search search, String name, LabelRegistry labels) {
+		try {
+			ChannelWriter writer = new ChannelWriter(new FileOutputStream(name + ".labx").getChannel());
+			try {
+				writer.writeInt(MAGIC).writeInt(VERSION);
+				int n = labels.size();
+				writer.writeVarint(n);
+				this.all.write(writer);
+				CompressedBitmap none = new CompressedBitmap();
+				for (int i = 0; i < n; i++) {
+					Label label = labels.get(i);
+					writer.writeString(label.getName()).writeString(label.getDescription());
+					(i < this.states.length && this.states[i] != null ? this.states[i] : none).write(writer);
+				}
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Listener could not write to the output file " + name + ".labx");
+			search.terminate();
+		}
+	}
+
+	@Override
+	public void searchFinished(Search search) {
+	}
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Merges the labellings of the same system under test written, in the text
+ * format of TextSink, by several runs, for example with different label makers
+ * or configurations. Since the labels of each file are numbered independently,
+ * the labels of all files are collected in a single dictionary, in the order in
+ * which they first occur in the files, and the labels of each state are
+ * renumbered accordingly.
+ * 
+ * Usage: java label.LabelMerge [-threads n] [-side] &lt;output&gt;.lab
+ * &lt;file&gt;.lab...
+ * 
+ * By default, the labels of a state in the merged file are the union of its
+ * labels in the files. With -side, the labels of the state in each of the
+ * files are listed side by side, separated by |, so that the runs can be
+ * compared; a state which does not occur in a file has no labels in that
+ * column.
+ * 
+ * The files, which may be compressed in the gzip format, are parsed in chunks
+ * of states by a pool of n threads, by default one per core, while the states
+ * are merged by their ids. Since TextSink lists the states in increasing order
+ * of their ids, the files are streamed, so that the memory needed does not
+ * depend on the number of states. The merged file is compressed in the gzip
+ * format if its name ends with .gz.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelMerge {
+	private static final int CHUNK = 4096; // number of states parsed at a time
+	private static final int BUFFER_SIZE = 65536; // size of the buffer of a file in bytes
+
+	/**
+	 * Merges the given files.
+	 * 
+	 * @param args the options, the name of the merged file and the names of the
+	 *             files to be merged
+	 */
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean side = false;
+		int i = 0;
+		try {
+			for (; i < args.length && args[i].startsWith("-"); i++) {
+				if (args[i].equals("-threads")) {
+					threads = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("-side")) {
+					side = true;
+				} else {
+					i = args.length;
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+			i = args.length;
+		}
+		if (args.length - i < 2 || threads < 1) {
+			System.out.println("Usage: java label.LabelMerge [-threads n] [-side] <output>.lab <file>.lab...");
+			return;
+		}
+		String output = args[i];
+		List<String> inputs = Arrays.asList(args).subList(i + 1, args.length);
+		try {
+			merge(inputs, output, side, threads);
+		} catch (IOException e) {
+			System.out.println("Could not merge the files into " + output + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Merges the given files.
+	 * 
+	 * @param inputs  the names of the files to be merged
+	 * @param output  the name of the merged file
+	 * @param side    whether the labels of the files are listed side by side,
+	 *                rather than united
+	 * @param threads the number of threads parsing the files
+	 * @throws IOException if a file cannot be read or written, or a file to be
+	 *                     merged is not valid
+	 */
+	public static void merge(List<String> inputs, String output, boolean side, int threads) throws IOException {
+		int n = inputs.size();
+		Source[] sources = new Source[n];
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			for (int k = 0; k < n; k++) {
+				sources[k] = new Source(inputs.get(k));
+			}
+
+			// read the labels of the files in parallel and number them in order
+			List<Future<String[]>> headers = new ArrayList<Future<String[]>>();
+			for (Source source : sources) {
+				headers.add(pool.submit(source::readLabels));
+			}
+			LabelRegistry dictionary = new LabelRegistry();
+			for (int k = 0; k < n; k++) {
+				String[] names = get(headers.get(k));
+				int[] remap = new int[names.length];
+				for (int j = 0; j < names.length; j++) {
+					remap[j] = (names[j] == null ? -1 : dictionary.register(new Label(names[j], null)));
+				}
+				sources[k].remap = remap;
+			}
+
+			ChannelWriter writer = StateOutput.createWriter(new FileOutputStream(output).getChannel(),
+					output.endsWith(".gz"));
+			try {
+				for (int j = 0; j < dictionary.size(); j++) {
+					writer.write(j).write("=\"").write(dictionary.get(j).getName()).write("\" ");
+				}
+				writer.write(System.lineSeparator());
+				merge(sources, pool, writer, side, new LabelSet(dictionary));
+			} finally {
+				writer.close();
+			}
+		} finally {
+			pool.shutdownNow();
+			for (Source source : sources) {
+				if (source != null) {
+					source.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Merges the states of the given files by their ids.
+	 * 
+	 * @param sources the files, whose labels have been read
+	 * @param pool    the threads parsing the files
+	 * @param writer  the writer of the merged file
+	 * @param side    whether the labels of the files are listed side by side
+	 * @param union   a set used to unite the labels of a state
+	 * @throws IOException if a file cannot be read or written, or a file to be
+	 *                     merged is not valid
+	 */
+	private static void merge(Source[] sources, ExecutorService pool, ChannelWriter writer, boolean side,
+			LabelSet union) throws IOException {
+		int n = sources.length;
+		// the sources which have a current state, ordered by the id of that state
+		int[] heap = new int[n];
+		int size = 0;
+		for (int k = 0; k < n; k++) {
+			sources[k].next = pool.submit(sources[k]::readChunk);
+		}
+		for (int k = 0; k < n; k++) {
+			if (advance(sources[k], pool)) {
+				size = push(heap, size, k, sources);
+			}
+		}
+
+		int[] current = new int[n]; // the sources whose current state has the smallest id
+		while (size > 0) {
+			int id = sources[heap[0]].id();
+			int count = 0;
+			while (size > 0 && sources[heap[0]].id() == id) {
+				current[count++] = heap[0];
+				size = pop(heap, size, sources);
+			}
+			writer.write(id).write(':');
+			if (side) {
+				Arrays.sort(current, 0, count);
+				for (int k = 0, c = 0; k < n; k++) {
+					if (k > 0) {
+						writer.write(" |");
+					}
+					if (c < count && current[c] == k) {
+						Source source = sources[k];
+						Chunk chunk = source.chunk;
+						for (int j = chunk.offsets[source.position]; j < chunk.offsets[source.position + 1]; j++) {
+							writer.write(' ').write(chunk.labels[j]);
+						}
+						c++;
+					}
+				}
+			} else {
+				union.clear();
+				for (int c = 0; c < count; c++) {
+					Source source = sources[current[c]];
+					Chunk chunk = source.chunk;
+					for (int j = chunk.offsets[source.position]; j < chunk.offsets[source.position + 1]; j++) {
+						union.add(chunk.labels[j]);
+					}
+				}
+				for (int j = union.next(0); j >= 0; j = union.next(j + 1)) {
+					writer.write(' ').write(j);
+				}
+			}
+			writer.write('\n');
+
+			for (int c = 0; c < count; c++) {
+				if (advance(sources[current[c]], pool)) {
+					size = push(heap, size, current[c], sources);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves the given file to its next state, taking the next chunk of states
+	 * once the current one is exhausted and starting to parse the one after.
+	 * 
+	 * @param source a file
+	 * @param pool   the threads parsing the files
+	 * @return true if the file has a next state, false otherwise
+	 * @throws IOException if the file cannot be read or is not valid
+	 */
+	private static boolean advance(Source source, ExecutorService pool) throws IOException {
+		source.position++;
+		if (source.chunk == null || source.position == source.chunk.size) {
+			if (source.next == null) {
+				return false;
+			}
+			source.chunk = get(source.next);
+			source.position = 0;
+			source.next = (source.chunk.size == CHUNK ? pool.submit(source::readChunk) : null);
+			if (source.chunk.size == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the given file to the heap of files.
+	 * 
+	 * @param heap    the heap of indices of the files
+	 * @param size    the size of the heap
+	 * @param k       the index of the file
+	 * @param sources the files
+	 * @return the new size of the heap
+	 */
+	private static int push(int[] heap, int size, int k, Source[] sources) {
+		int i = size;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (sources[heap[parent]].id() <= sources[k].id()) {
+				break;
+			}
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = k;
+		return size + 1;
+	}
+
+	/**
+	 * Removes the file with the smallest state id from the heap of files.
+	 * 
+	 * @param heap    the heap of indices of the files
+	 * @param size    the size of the heap
+	 * @param sources the files
+	 * @return the new size of the heap
+	 */
+	private static int pop(int[] heap, int size, Source[] sources) {
+		size--;
+		int k = heap[size];
+		int i = 0;
+		while (2 * i + 1 < size) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && sources[heap[child + 1]].id() < sources[heap[child]].id()) {
+				child++;
+			}
+			if (sources[k].id() <= sources[heap[child]].id()) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = k;
+		return size;
+	}
+
+	/**
+	 * Waits for the given task and returns its result.
+	 * 
+	 * @param future a task reading a file
+	 * @return the result of the task
+	 * @throws IOException if the file cannot be read or is not valid
+	 */
+	private static <T> T get(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading the files");
+		}
+	}
+
+	/**
+	 * A chunk of states of a file, with their labels renumbered.
+	 */
+	private static class Chunk {
+		private int size; // number of states
+		private int[] ids; // the id of each state
+		private int[] offsets; // the start of the labels of each state in labels, followed by the end
+		private int[] labels; // the labels of the states, each in increasing order
+
+		/**
+		 * Creates an empty chunk.
+		 */
+		private Chunk() {
+			this.size = 0;
+			this.ids = new int[CHUNK];
+			this.offsets = new int[CHUNK + 1];
+			this.labels = new int[CHUNK];
+		}
+	}
+
+	/**
+	 * A file to be merged. Its labels and chunks are read by the threads of the
+	 * pool, one at a time.
+	 */
+	private static class Source {
+		private String name; // the name of the file
+		private InputStream input; // the contents of the file
+		private byte[] buffer; // the bytes read from the file
+		private int position; // the position of the current state in the chunk
+		private int limit; // number of bytes in the buffer
+		private int offset; // the position of the next byte in the buffer
+		private int last; // the id of the last state parsed
+		private int[] remap; // the index in the dictionary of each label of the file
+		private Chunk chunk; // the current chunk, null if none has been taken yet
+		private Future<Chunk> next; // the next chunk being parsed, null if there are no more states
+
+		/**
+		 * Opens the given file.
+		 * 
+		 * @param name the name of the file
+		 * @throws IOException if the file cannot be opened
+		 */
+		private Source(String name) throws IOException {
+			this.name = name;
+			InputStream input = new FileInputStream(name);
+			this.input = (name.endsWith(".gz") ? new GZIPInputStream(input, BUFFER_SIZE) : input);
+			this.buffer = new byte[BUFFER_SIZE];
+			this.position = -1;
+			this.limit = 0;
+			this.offset = 0;
+			this.last = Integer.MIN_VALUE;
+			this.remap = null;
+			this.chunk = null;
+			this.next = null;
+		}
+
+		/**
+		 * Returns the id of the current state.
+		 * 
+		 * @return the id of the current state
+		 */
+		private int id() {
+			return this.chunk.ids[this.position];
+		}
+
+		/**
+		 * Reads the first line of the file, which enumerates the labels.
+		 * 
+		 * @return the name of the label with each index, null for an index without
+		 *         a label
+		 * @throws IOException if the file cannot be read or the line is not valid
+		 */
+		private String[] readLabels() throws IOException {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			for (int b = this.read(); b >= 0 && b != '\n'; b = this.read()) {
+				bytes.write(b);
+			}
+			String line = bytes.toString().trim();
+			List<String> names = new ArrayList<String>();
+			int from = 0;
+			while (from < line.length()) {
+				int equals = line.indexOf("=\"", from);
+				int end = (equals < 0 ? -1 : line.indexOf('"', equals + 2));
+				if (end < 0) {
+					throw new IOException("The labels of " + this.name + " are not valid");
+				}
+				int index;
+				try {
+					index = Integer.parseInt(line.substring(from, equals).trim());
+				} catch (NumberFormatException e) {
+					throw new IOException("The labels of " + this.name + " are not valid");
+				}
+				while (names.size() <= index) {
+					names.add(null);
+				}
+				names.set(index, line.substring(equals + 2, end));
+				from = end + 1;
+			}
+			return names.toArray(new String[names.size()]);
+		}
+
+		/**
+		 * Parses the next chunk of states, with their labels renumbered and sorted.
+		 * 
+		 * @return the chunk, which contains fewer than CHUNK states only if the end
+		 *         of the file has been reached
+		 * @throws IOException if the file cannot be read or is not valid
+		 */
+		private Chunk readChunk() throws IOException {
+			Chunk chunk = new Chunk();
+			int count = 0;
+			int b = this.read();
+			while (chunk.size < CHUNK && b >= 0) {
+				if (b == '\n' || b == '\r') {
+					b = this.read();
+					continue;
+				}
+				boolean negative = (b == '-');
+				if (negative) {
+					b = this.read();
+				}
+				int id = 0;
+				for (; b >= '0' && b <= '9'; b = this.read()) {
+					id = 10 * id + (b - '0');
+				}
+				if (b != ':') {
+					throw new IOException("The labelling of " + this.name + " is not valid after state " + this.last);
+				}
+				id = (negative ? -id : id);
+				if (id <= this.last) {
+					throw new IOException("The states of " + this.name + " are not in increasing order");
+				}
+				this.last = id;
+				int start = count;
+				for (b = this.read(); b == ' ';) {
+					b = this.read();
+					if (b < '0' || b > '9') {
+						continue; // trailing space
+					}
+					int label = 0;
+					for (; b >= '0' && b <= '9'; b = this.read()) {
+						label = 10 * label + (b - '0');
+					}
+					if (label >= this.remap.length || this.remap[label] < 0) {
+						throw new IOException("State " + id + " of " + this.name + " has an unknown label " + label);
+					}
+					if (count == chunk.labels.length) {
+						chunk.labels = Arrays.copyOf(chunk.labels, 2 * count);
+					}
+					chunk.labels[count++] = this.remap[label];
+				}
+				Arrays.sort(chunk.labels, start, count);
+				chunk.ids[chunk.size] = id;
+				chunk.offsets[chunk.size] = start;
+				chunk.size++;
+				chunk.offsets[chunk.size] = count;
+			}
+			if (b >= 0) {
+				this.offset--; // the first byte of the next state
+			}
+			return chunk;
+		}
+
+		/**
+		 * Reads the next byte of the file.
+		 * 
+		 * @return the next byte, or -1 if the end of the file has been reached
+		 * @throws IOException if the file cannot be read
+		 */
+		private int read() throws IOException {
+			if (this.offset == this.limit) {
+				this.limit = this.input.read(this.buffer);
+				this.offset = 0;
+				if (this.limit <= 0) {
+					this.limit = 0;
+					return -1;
+				}
+			}
+			return this.buffer[this.offset++] & 0xFF;
+		}
+
+		/**
+		 * Closes the file.
+		 */
+		private void close() {
+			try {
+				this.input.close();
+			} catch (IOException e) {
+				// the file has been read
+			}
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The registry of all labels encountered during the search. Each label is
+ * assigned an index, which is a non-negative integer, in the order in which the
+ * labels are registered. The index of a label is found by means of a hash map,
+ * and the label with a given index by means of an array.
+ *
+ * Labels are registered by a single thread: the search thread or, if the
+ * property label.async.format is set to true, the thread formatting the
+ * labelling. The labels registered so far, as given by size, can be retrieved
+ * by any other thread. The registry can also be viewed as a read-only list of
+ * the labels, in the order of their indices.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelRegistry {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private Map<Label, Integer> indices; // the index of each label
+	private Label[] labels; // the label of each index
+	private volatile int size; // number of labels, published after the label is stored
+	private List<Label> list; // read-only view of the labels
+
+	/**
+	 * Creates an empty registry.
+	 */
+	public LabelRegistry() {
+		this.indices = new HashMap<Label, Integer>();
+		this.labels = new Label[INITIAL_CAPACITY];
+		this.size = 0;
+		this.list = new AbstractList<Label>() {
+			@Override
+			public Label get(int index) {
+				return LabelRegistry.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return LabelRegistry.this.size();
+			}
+
+			@Override
+			public int indexOf(Object label) {
+				return (label instanceof Label ? LabelRegistry.this.indexOf((Label) label) : -1);
+			}
+
+			@Override
+			public boolean contains(Object label) {
+				return this.indexOf(label) >= 0;
+			}
+		};
+	}
+
+	/**
+	 * Returns the index of the given label, registering the label if it has not
+	 * been registered before.
+	 *
+	 * @param label a label
+	 * @return the index of the label
+	 */
+	public int register(Label label) {
+		Integer index = this.indices.get(label);
+		if (index == null) {
+			if (this.size == this.labels.length) {
+				this.labels = Arrays.copyOf(this.labels, 2 * this.size);
+			}
+			index = this.size;
+			this.labels[index] = label;
+			this.indices.put(label, index);
+			this.size = index + 1;
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the index of the given label.
+	 *
+	 * @param label a label
+	 * @return the index of the label, or -1 if the label has not been registered
+	 */
+	public int indexOf(Label label) {
+		Integer index = this.indices.get(label);
+		return (index == null ? -1 : index);
+	}
+
+	/**
+	 * Returns the label with the given index.
+	 *
+	 * @param index the index of a label
+	 * @return the label with the given index
+	 * @throws IndexOutOfBoundsException if no label has the given index
+	 */
+	public Label get(int index) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException("No label with index " + index);
+		}
+		return this.labels[index];
+	}
+
+	/**
+	 * Returns the number of registered labels.
+	 *
+	 * @return the number of registered labels
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns a read-only view of the registered labels, in which the label with
+	 * a given index is found at that index.
+	 *
+	 * @return a read-only view of the registered labels
+	 */
+	public List<Label> asList() {
+		return this.list;
+	}
+}
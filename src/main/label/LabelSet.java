@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A set of labels of a state, represented by the indices of the labels. The set
+ * is backed by a bit set which grows as needed and is cleared rather than
+ * reallocated, so that labelling a state does not create any objects.
+ *
+ * Labels added to the set are resolved to their index by the label registry;
+ * labels which have not been seen before are registered. A set may instead
+ * have a snapshot, in which the labels added to the set are recorded rather
+ * than resolved, so that they are built and registered later, on the thread
+ * formatting the labelling (see LabelSnapshot). The methods contains, next,
+ * size, toArray and set only concern the labels added by their index.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelSet {
+	private static final int INITIAL_WORDS = 2; // room for the first 128 labels
+
+	private LabelRegistry registry; // the registry of all labels
+	private long[] words; // the bits of the set
+	private int used; // number of words which may contain set bits
+	private int size; // number of labels in the set
+	private LabelSnapshot snapshot; // the labels recorded rather than resolved, null if labels are resolved at once
+
+	/**
+	 * Creates an empty set of labels.
+	 *
+	 * @param registry the registry which is used to resolve the index of a label
+	 */
+	public LabelSet(LabelRegistry registry) {
+		this(registry, null);
+	}
+
+	/**
+	 * Creates an empty set of labels which records the labels added to it in the
+	 * given snapshot.
+	 *
+	 * @param registry the registry which is used to resolve the index of a label
+	 * @param snapshot the snapshot in which the labels are recorded, or null
+	 */
+	public LabelSet(LabelRegistry registry, LabelSnapshot snapshot) {
+		this.registry = registry;
+		this.words = new long[INITIAL_WORDS];
+		this.used = 0;
+		this.size = 0;
+		this.snapshot = snapshot;
+	}
+
+	/**
+	 * Returns the snapshot in which the labels added to this set are recorded.
+	 *
+	 * @return the snapshot of this set, or null if labels are resolved at once
+	 */
+	public LabelSnapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	/**
+	 * Adds the given label to this set.
+	 *
+	 * @param label a label
+	 */
+	public void add(Label label) {
+		if (this.snapshot != null) {
+			this.snapshot.add(label);
+		} else {
+			this.add(this.registry.register(label));
+		}
+	}
+
+	/**
+	 * Adds the label of the given label maker for the given specification and
+	 * value to this set. The label is obtained from the label maker by means of
+	 * its method getLabel. Label makers may use this method, rather than building
+	 * the label themselves, so that the label is only built once needed, which
+	 * may be on a thread other than the search thread (see LabelSnapshot).
+	 *
+	 * @param maker the label maker
+	 * @param spec  the result of matching a specification
+	 * @param value a value
+	 */
+	public void add(StateLabelMaker maker, MatchCache.Match spec, int value) {
+		if (this.snapshot != null) {
+			this.snapshot.add(maker, spec, value);
+			return;
+		}
+		Label label = maker.getLabel(spec, value);
+		if (label != null) {
+			this.add(label);
+		}
+	}
+
+	/**
+	 * Adds the given labels to this set.
+	 *
+	 * @param labels a collection of labels, may be null
+	 * @return false if the given collection was null, true otherwise
+	 */
+	public boolean addAll(Collection<Label> labels) {
+		if (labels != null) {
+			for (Label label : labels) {
+				this.add(label);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Makes this set contain exactly the labels of the given set.
+	 *
+	 * @param labels a set of labels
+	 */
+	public void set(LabelSet labels) {
+		this.clear();
+		if (labels.used > this.words.length) {
+			this.words = Arrays.copyOf(this.words, labels.used);
+		}
+		System.arraycopy(labels.words, 0, this.words, 0, labels.used);
+		this.used = labels.used;
+		this.size = labels.size;
+	}
+
+	/**
+	 * Adds the label with the given index to this set.
+	 *
+	 * @param index the index of a label
+	 */
+	public void add(int index) {
+		int word = index >>> 6;
+		if (word >= this.words.length) {
+			this.words = Arrays.copyOf(this.words, Math.max(word + 1, 2 * this.words.length));
+		}
+		long mask = 1L << index;
+		if ((this.words[word] & mask) == 0) {
+			this.words[word] |= mask;
+			this.size++;
+			if (word >= this.used) {
+				this.used = word + 1;
+			}
+		}
+	}
+
+	/**
+	 * Tests whether the label with the given index is in this set.
+	 *
+	 * @param index the index of a label
+	 * @return true if the label is in this set, false otherwise
+	 */
+	public boolean contains(int index) {
+		int word = index >>> 6;
+		return word < this.used && (this.words[word] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Returns the smallest index of a label in this set that is greater than or
+	 * equal to the given index. To iterate over the labels of a set, use
+	 *
+	 * <pre>
+	 * for (int i = set.next(0); i &gt;= 0; i = set.next(i + 1)) {
+	 * 	...
+	 * }
+	 * </pre>
+	 *
+	 * @param from the index to start from
+	 * @return the index of the next label in this set, or -1 if there is none
+	 */
+	public int next(int from) {
+		int word = from >>> 6;
+		if (word >= this.used) {
+			return -1;
+		}
+		long bits = this.words[word] & (-1L << from);
+		while (true) {
+			if (bits != 0) {
+				return (word << 6) + Long.numberOfTrailingZeros(bits);
+			}
+			word++;
+			if (word == this.used) {
+				return -1;
+			}
+			bits = this.words[word];
+		}
+	}
+
+	/**
+	 * Returns the number of labels in this set.
+	 *
+	 * @return the number of labels in this set
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the indices of the labels in this set, in increasing order.
+	 *
+	 * @return the indices of the labels in this set
+	 */
+	public int[] toArray() {
+		int[] indices = new int[this.size];
+		int n = 0;
+		for (int i = this.next(0); i >= 0; i = this.next(i + 1)) {
+			indices[n++] = i;
+		}
+		return indices;
+	}
+
+	/**
+	 * Tests whether this set is empty.
+	 *
+	 * @return true if this set contains no labels, false otherwise
+	 */
+	public boolean isEmpty() {
+		return this.size == 0 && (this.snapshot == null || this.snapshot.isEmpty());
+	}
+
+	/**
+	 * Removes all labels from this set.
+	 */
+	public void clear() {
+		if (this.size != 0) {
+			Arrays.fill(this.words, 0, this.used, 0L);
+			this.used = 0;
+			this.size = 0;
+		}
+		if (this.snapshot != null) {
+			this.snapshot.clear();
+		}
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.search.Search;
+
+/**
+ * Outputs the labels of the state space to a file, named &lt;name of system
+ * under test&gt;.lset, in which each state refers to its set of labels by the
+ * id of the set. Since few distinct sets of labels usually recur across many
+ * states, the file is considerably smaller than the .lab file. The file
+ * consists of
+ * 
+ * <ol>
+ * <li>a line enumerating all possible labels, as in the .lab file,</li>
+ * <li>a line with the number of distinct sets of labels,</li>
+ * <li>for each set, a line with the id of the set followed by a colon and the
+ * indices of its labels, separated by a single space, and</li>
+ * <li>for each labelled state, a line with the state id followed by a single
+ * space and the id of its set of labels.</li>
+ * </ol>
+ * 
+ * By default, the sets and states are kept in memory until the file is
+ * written. If the property label.StateLabelSets.stream is set to true, or
+ * checkpointing is enabled, they are instead written to the files &lt;name of
+ * system under test&gt;.lset.sets.part and &lt;name of system under
+ * test&gt;.lset.part as the states are labelled. A region at the start of the
+ * latter, of label.stream.reserve bytes (64 KB by default), is reserved for the
+ * enumeration of the labels and the sets, which are written there once the
+ * search has finished, after which the file is renamed. Should they not fit,
+ * the file is assembled from the enumeration, the sets and the states instead.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelSetSink implements LabelSink {
+	private boolean stream; // whether the sets and states are streamed to files
+	private int reserve; // size of the region reserved for the enumeration of the labels and the sets, in bytes
+	private StateOutput sets; // the distinct sets of labels
+	private StateOutput states; // the set of labels of each state
+	private int known; // number of sets written
+	private LabelSetTable table; // interns the sets of labels passed without an id, null until needed
+
+	/**
+	 * Initializes this sink.
+	 * 
+	 * @param configuration JPF's configuration
+	 */
+	public LabelSetSink(Config configuration) {
+		this.stream = configuration.getBoolean("label.StateLabelSets.stream", false)
+				|| Checkpoints.isEnabled(configuration);
+		this.reserve = StateOutput.getReserve(configuration);
+		this.sets = new StateOutput();
+		this.states = new StateOutput();
+		this.known = 0;
+		this.table = null;
+	}
+
+	/**
+	 * Opens the files to which the sets and states are streamed, if any.
+	 */
+	@Override
+	public void searchStarted(Search search) {
+		if (this.stream) {
+			String name = LabelSink.getOutputName(search);
+			File file = new File(name + ".lset.sets.part");
+			try {
+				this.sets = new StateOutput(file);
+				file = new File(name + ".lset.part");
+				this.states = new StateOutput(file, false, this.reserve);
+			} catch (FileNotFoundException e) {
+				System.out.println("Listener could not write to the file " + file.getName());
+			}
+		}
+	}
+
+	/**
+	 * Interns the set of labels and writes the id of the set for the state.
+	 */
+	@Override
+	public void labelState(int id, LabelSet labels) {
+		if (this.table == null) {
+			this.table = new LabelSetTable();
+		}
+		this.labelState(id, this.table.intern(labels), labels);
+	}
+
+	/**
+	 * Writes the id of the set of labels for a state, preceded by the set if it
+	 * has not been written before.
+	 */
+	@Override
+	public void labelState(int id, int set, LabelSet labels) {
+		if (set >= this.known) {
+			ChannelWriter writer = this.sets.getWriter();
+			try {
+				writer.write(set).write(':');
+				for (int i = labels.next(0); i >= 0; i = labels.next(i + 1)) {
+					writer.write(' ').write(i);
+				}
+				writer.write('\n');
+			} catch (IOException e) {
+				this.sets.failed(e);
+			}
+			this.known = set + 1;
+		}
+		if (!labels.isEmpty()) {
+			try {
+				this.states.getWriter().write(id).write(' ').write(set).write('\n');
+			} catch (IOException e) {
+				this.states.failed(e);
+			}
+		}
+	}
+
+	/**
+	 * Transitions are not part of the labelling.
+	 */
+	@Override
+	public void labelTransition(int source, int target) {
+	}
+
+	@Override
+	public void writeStateLabels(Search search, String name, LabelRegistry labels) {
+		try {
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			ChannelWriter writer = new ChannelWriter(Channels.newChannel(header));
+			String newline = System.lineSeparator();
+			int n = labels.size();
+			for (int i = 0; i < n; i++) {
+				writer.write(i).write("=\"").write(labels.get(i).getName()).write("\" ");
+			}
+			writer.write(newline);
+			writer.write(this.known).write(newline);
+			writer.flush();
+			this.sets.transferTo(Channels.newChannel(header));
+			this.states.moveTo(new File(name + ".lset"), header.toByteArray()).close();
+		} catch (IOException e) {
+			System.out.println("Listener could not write to the output file " + name + ".lset");
+			search.terminate();
+		}
+	}
+
+	/**
+	 * Writes the part of the sets and states streamed so far to the files.
+	 */
+	@Override
+	public void flush() throws IOException {
+		this.sets.flush();
+		this.states.flush();
+	}
+
+	/**
+	 * Removes the files to which the sets and states were streamed, if any.
+	 */
+	@Override
+	public void searchFinished(Search search) {
+		this.sets.delete();
+		this.states.delete();
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.util.Arrays;
+
+/**
+ * A table of the distinct sets of labels encountered during the search. Each
+ * set is assigned an id, which is a non-negative integer, in the order in which
+ * the sets are interned. Since few distinct sets of labels usually recur across
+ * many states, a state can be represented by the id of its set of labels.
+ * 
+ * The sets are hash-consed: a set is looked up in an open addressing hash
+ * table, and only a set which has not been seen before is copied into the
+ * table, as the indices of its labels.
+ * 
+ * Sets are interned by a single thread at a time: the search thread or, if the
+ * property label.async.format is set to true, the thread formatting the
+ * labelling, which then interns the sets instead. The sets interned so far, as
+ * given by size, can be retrieved by any other thread.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelSetTable {
+	private static final int INITIAL_CAPACITY = 64; // initial number of slots of the hash table, a power of two
+
+	private int[] slots; // the id of the set plus one in each slot of the hash table, 0 if the slot is empty
+	private int[] hashes; // the hash code of each set
+	private int[][] sets; // the indices of the labels of each set
+	private volatile int size; // number of sets, published after the set is stored
+
+	/**
+	 * Creates an empty table.
+	 */
+	public LabelSetTable() {
+		this.slots = new int[INITIAL_CAPACITY];
+		this.hashes = new int[INITIAL_CAPACITY / 2];
+		this.sets = new int[INITIAL_CAPACITY / 2][];
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the id of the given set of labels, adding a copy of the set to this
+	 * table if it has not been interned before.
+	 * 
+	 * @param labels a set of labels
+	 * @return the id of the set
+	 */
+	public int intern(LabelSet labels) {
+		int hash = hash(labels);
+		int mask = this.slots.length - 1;
+		int slot = mix(hash) & mask;
+		while (this.slots[slot] != 0) {
+			int id = this.slots[slot] - 1;
+			if (this.hashes[id] == hash && matches(labels, this.sets[id])) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		int id = this.size;
+		if (id == this.sets.length) {
+			this.hashes = Arrays.copyOf(this.hashes, 2 * id);
+			this.sets = Arrays.copyOf(this.sets, 2 * id);
+		}
+		this.hashes[id] = hash;
+		this.sets[id] = labels.toArray();
+		this.slots[slot] = id + 1;
+		this.size = id + 1;
+		if (2 * this.size > this.slots.length) {
+			this.rehash();
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the indices of the labels of the set with the given id, in
+	 * increasing order. The returned array should not be modified.
+	 * 
+	 * @param id the id of a set
+	 * @return the indices of the labels of the set
+	 * @throws IndexOutOfBoundsException if no set has the given id
+	 */
+	public int[] get(int id) {
+		if (id < 0 || id >= this.size) {
+			throw new IndexOutOfBoundsException("No set of labels with id " + id);
+		}
+		return this.sets[id];
+	}
+
+	/**
+	 * Returns the number of interned sets.
+	 * 
+	 * @return the number of interned sets
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Doubles the number of slots of the hash table.
+	 */
+	private void rehash() {
+		int[] slots = new int[2 * this.slots.length];
+		int mask = slots.length - 1;
+		for (int id = 0; id < this.size; id++) {
+			int slot = mix(this.hashes[id]) & mask;
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = id + 1;
+		}
+		this.slots = slots;
+	}
+
+	/**
+	 * Returns the hash code of the given set of labels.
+	 * 
+	 * @param labels a set of labels
+	 * @return the hash code of the set
+	 */
+	private static int hash(LabelSet labels) {
+		int hash = 1;
+		for (int i = labels.next(0); i >= 0; i = labels.next(i + 1)) {
+			hash = 31 * hash + i;
+		}
+		return hash;
+	}
+
+	/**
+	 * Spreads the bits of the given hash code, so that the low bits, which select
+	 * the slot, depend on all bits.
+	 * 
+	 * @param hash a hash code
+	 * @return the spread hash code
+	 */
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Tests whether the given set of labels consists of the labels with the given
+	 * indices.
+	 * 
+	 * @param labels  a set of labels
+	 * @param indices the indices of labels, in increasing order
+	 * @return true if the set consists of exactly those labels, false otherwise
+	 */
+	private static boolean matches(LabelSet labels, int[] indices) {
+		if (labels.size() != indices.length) {
+			return false;
+		}
+		int n = 0;
+		for (int i = labels.next(0); i >= 0; i = labels.next(i + 1)) {
+			if (indices[n++] != i) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
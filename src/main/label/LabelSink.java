@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.File;
+import java.io.IOException;
+
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.vm.VM;
+
+/**
+ * An output format of the labelling of the state space. A StateLabel listener
+ * determines the labels of each state once and passes them to each of its
+ * sinks, so that all output files use the same label indices.
+ * 
+ * A class implementing this interface, specified in the property label.output,
+ * should have a public constructor with JPF's configuration as its only
+ * parameter.
+ * 
+ * The output files are named after the system under test and are written to
+ * the current directory or, if the property label.directory is set, to that
+ * directory, which should exist.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public interface LabelSink {
+
+	/**
+	 * Returns the name, without extension, of the output files of the given
+	 * search.
+	 * 
+	 * @param search JPF's search
+	 * @return the name of the system under test, prefixed with the directory given
+	 *         by the property label.directory, if set
+	 */
+	static String getOutputName(Search search) {
+		VM vm = search.getVM();
+		String directory = vm.getConfig().getString("label.directory");
+		return (directory == null ? vm.getSUTName() : new File(directory, vm.getSUTName()).getPath());
+	}
+
+	/**
+	 * Invoked when JPF starts, before the initial state is labelled.
+	 * 
+	 * @param search JPF's search
+	 */
+	void searchStarted(Search search);
+
+	/**
+	 * Formats the labelling of the given state with the given set of labels. The
+	 * set is reused for subsequent states and, hence, should not be retained.
+	 * 
+	 * @param id     the id of the state
+	 * @param labels the set of indices of the labels
+	 */
+	void labelState(int id, LabelSet labels);
+
+	/**
+	 * Formats the labelling of the given state with the given set of labels,
+	 * which has the given id in the table of distinct sets of labels of the
+	 * listener. The sets are numbered in the order in which they first occur, so
+	 * that a set with an id not passed before has the next id. By default, the
+	 * id is ignored.
+	 * 
+	 * @param id     the id of the state
+	 * @param set    the id of the set of labels
+	 * @param labels the set of indices of the labels
+	 */
+	default void labelState(int id, int set, LabelSet labels) {
+		this.labelState(id, labels);
+	}
+
+	/**
+	 * Formats the given transition.
+	 * 
+	 * @param source the id of the source state
+	 * @param target the id of the target state
+	 */
+	void labelTransition(int source, int target);
+
+	/**
+	 * Writes the current labelling of the state space to a file.
+	 * 
+	 * @param search JPF's search
+	 * @param name   the name of the system under test, appended with the search
+	 *               constraint if one was hit.
+	 * @param labels the registry of all labels
+	 */
+	void writeStateLabels(Search search, String name, LabelRegistry labels);
+
+	/**
+	 * Writes whatever has been formatted so far to disk, at a checkpoint. By
+	 * default, nothing is written.
+	 * 
+	 * @throws IOException if the output cannot be written
+	 */
+	default void flush() throws IOException {
+	}
+
+	/**
+	 * Invoked when JPF finishes, after the labelling has been written.
+	 * 
+	 * @param search JPF's search
+	 */
+	void searchFinished(Search search);
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The labels of a state which a label maker added to a set of labels on the
+ * search thread, recorded so that they are built and registered later, on the
+ * thread formatting the labelling. A set of labels records such labels in its
+ * snapshot, if it has one (see LabelSet), rather than resolving them to their
+ * index at once, since labels are registered by a single thread.
+ * 
+ * A label is recorded either as a label or, by a label maker which supports
+ * it, as a raw entry consisting of the label maker, the result of matching a
+ * specification and a value. The name and description of a raw label are only
+ * built, by the label maker, once the snapshot is materialized into a set of
+ * labels.
+ * 
+ * An entry equal to one recorded before is not recorded again. The entries are
+ * found by means of an open addressing hash table, since they have no index in
+ * the registry of the labels until the snapshot is materialized. The entries
+ * and the hash table are kept in arrays which grow as needed and are reused
+ * when the snapshot is cleared, so that recording a state does not create any
+ * objects.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelSnapshot {
+	private static final int INITIAL_CAPACITY = 8; // initial number of entries
+
+	private StateLabelMaker[] makers; // the label maker of each raw entry, null for a label
+	private Object[] specs; // the result of matching of each raw entry, or the label
+	private int[] values; // the value of each raw entry
+	private int[] slots; // the index plus one of the entry in each slot of the hash table, 0 if the slot is empty
+	private int size; // number of entries
+
+	/**
+	 * Creates an empty snapshot.
+	 */
+	public LabelSnapshot() {
+		this.makers = new StateLabelMaker[INITIAL_CAPACITY];
+		this.specs = new Object[INITIAL_CAPACITY];
+		this.values = new int[INITIAL_CAPACITY];
+		this.slots = new int[2 * INITIAL_CAPACITY];
+		this.size = 0;
+	}
+
+	/**
+	 * Records the given label.
+	 * 
+	 * @param label a label
+	 */
+	public void add(Label label) {
+		this.record(null, label, 0);
+	}
+
+	/**
+	 * Records the raw label of the given label maker for the given specification
+	 * and value. The label is built when this snapshot is materialized.
+	 * 
+	 * @param maker the label maker
+	 * @param spec  the result of matching a specification
+	 * @param value a value
+	 */
+	public void add(StateLabelMaker maker, MatchCache.Match spec, int value) {
+		this.record(maker, spec, value);
+	}
+
+	/**
+	 * Makes this snapshot contain exactly the entries of the given snapshot.
+	 * 
+	 * @param snapshot a snapshot
+	 */
+	public void set(LabelSnapshot snapshot) {
+		if (snapshot.makers.length > this.makers.length) {
+			this.makers = new StateLabelMaker[snapshot.makers.length];
+			this.specs = new Object[snapshot.makers.length];
+			this.values = new int[snapshot.makers.length];
+		}
+		if (snapshot.slots.length != this.slots.length) {
+			this.slots = new int[snapshot.slots.length];
+		}
+		System.arraycopy(snapshot.makers, 0, this.makers, 0, snapshot.size);
+		System.arraycopy(snapshot.specs, 0, this.specs, 0, snapshot.size);
+		System.arraycopy(snapshot.values, 0, this.values, 0, snapshot.size);
+		System.arraycopy(snapshot.slots, 0, this.slots, 0, snapshot.slots.length);
+		this.size = snapshot.size;
+	}
+
+	/**
+	 * Adds the labels recorded by this snapshot to the given set, in the order in
+	 * which they were recorded. Raw labels are built by their label makers and all
+	 * labels are resolved to their index by the registry of the set.
+	 * 
+	 * @param labels a set of labels without a snapshot
+	 */
+	public void materialize(LabelSet labels) {
+		for (int i = 0; i < this.size; i++) {
+			if (this.makers[i] != null) {
+				Label label = this.makers[i].getLabel((MatchCache.Match) this.specs[i], this.values[i]);
+				if (label != null) {
+					labels.add(label);
+				}
+			} else {
+				labels.add((Label) this.specs[i]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of distinct entries of this snapshot.
+	 * 
+	 * @return the number of distinct entries of this snapshot
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Tests whether this snapshot is empty.
+	 * 
+	 * @return true if this snapshot contains no entries, false otherwise
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Removes all entries from this snapshot.
+	 */
+	public void clear() {
+		if (this.size != 0) {
+			Arrays.fill(this.slots, 0);
+			this.size = 0;
+		}
+	}
+
+	/**
+	 * Appends an entry to this snapshot, unless an equal entry has been recorded.
+	 * 
+	 * @param maker the label maker, or null
+	 * @param spec  the result of matching, or the label
+	 * @param value the value
+	 */
+	private void record(StateLabelMaker maker, Object spec, int value) {
+		int mask = this.slots.length - 1;
+		int slot = LabelSnapshot.hash(maker, spec, value) & mask;
+		while (this.slots[slot] != 0) {
+			int i = this.slots[slot] - 1;
+			if (this.makers[i] == maker && this.values[i] == value && LabelSnapshot.same(maker, this.specs[i], spec)) {
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		if (this.size == this.makers.length) {
+			int capacity = 2 * this.size;
+			this.makers = Arrays.copyOf(this.makers, capacity);
+			this.specs = Arrays.copyOf(this.specs, capacity);
+			this.values = Arrays.copyOf(this.values, capacity);
+		}
+		this.makers[this.size] = maker;
+		this.specs[this.size] = spec;
+		this.values[this.size] = value;
+		this.slots[slot] = this.size + 1;
+		this.size++;
+		if (2 * this.size > this.slots.length) {
+			this.rehash();
+		}
+	}
+
+	/**
+	 * Doubles the number of slots of the hash table.
+	 */
+	private void rehash() {
+		int[] slots = new int[2 * this.slots.length];
+		int mask = slots.length - 1;
+		for (int i = 0; i < this.size; i++) {
+			int slot = LabelSnapshot.hash(this.makers[i], this.specs[i], this.values[i]) & mask;
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = i + 1;
+		}
+		this.slots = slots;
+	}
+
+	/**
+	 * Returns the hash code of the given entry, consistent with same.
+	 * 
+	 * @param maker the label maker, or null
+	 * @param spec  the result of matching, or the label
+	 * @param value the value
+	 * @return the hash code of the entry
+	 */
+	private static int hash(StateLabelMaker maker, Object spec, int value) {
+		int hash;
+		if (maker == null) {
+			hash = spec.hashCode();
+		} else {
+			MatchCache.Match match = (MatchCache.Match) spec;
+			hash = 31 * System.identityHashCode(maker) + match.getIndex();
+			hash = 31 * hash + Objects.hashCode(match.getSignature());
+			hash = 31 * hash + value;
+		}
+		hash *= 0x9E3779B9; // spreads the bits, so that the low bits, which select the slot, depend on all bits
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Tests whether the given specifications of two entries of the given label
+	 * maker are the same.
+	 * 
+	 * @param maker the label maker, or null
+	 * @param spec  the result of matching, or the label
+	 * @param other the result of matching, or the label
+	 * @return true if the specifications are the same, false otherwise
+	 */
+	private static boolean same(StateLabelMaker maker, Object spec, Object other) {
+		if (spec == other) {
+			return true;
+		} else if (maker == null) {
+			return spec.equals(other);
+		} else {
+			MatchCache.Match match = (MatchCache.Match) spec;
+			MatchCache.Match that = (MatchCache.Match) other;
+			return match.getIndex() == that.getIndex() && Objects.equals(match.getSignature(), that.getSignature());
+		}
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import gov.nasa.jpf.util.MethodSpec;
+import gov.nasa.jpf.vm.LocalVarInfo;
+import gov.nasa.jpf.vm.MethodInfo;
+
+/**
+ * A bounded cache which records, for a method, which of the configured local
+ * variables it declares, together with the slot and scope of those variables
+ * and the mangled signature of the method. This information is determined once
+ * per method, so that walking the stack only requires a lookup per frame.
+ * 
+ * The entries are keyed by the identity of the method. Once the cache is full,
+ * it is cleared.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class LocalVariableCache {
+	private static final int DEFAULT_CAPACITY = 4096; // default maximal number of entries
+
+	private MethodSpec[] methodSpec; // specifications of the methods declaring the variables
+	private String[] variable; // names of the variables
+	private boolean[] declared; // whether a method declaring each variable has been encountered
+	private Map<MethodInfo, Entry> entries; // the cached entries
+	private int capacity; // maximal number of entries
+
+	/**
+	 * Creates an empty cache for the given local variables.
+	 * 
+	 * @param methodSpec the specifications of the methods declaring the variables
+	 * @param variable   the names of the variables
+	 */
+	public LocalVariableCache(MethodSpec[] methodSpec, String[] variable) {
+		this.methodSpec = methodSpec;
+		this.variable = variable;
+		this.declared = new boolean[variable.length];
+		this.entries = new IdentityHashMap<MethodInfo, Entry>();
+		this.capacity = DEFAULT_CAPACITY;
+	}
+
+	/**
+	 * Returns the entry of the given method.
+	 * 
+	 * @param method a method
+	 * @return the entry of the method
+	 */
+	public Entry get(MethodInfo method) {
+		Entry entry = this.entries.get(method);
+		if (entry == null) {
+			if (this.entries.size() >= this.capacity) {
+				this.entries.clear();
+			}
+			entry = new Entry(method);
+			this.entries.put(method, entry);
+		}
+		return entry;
+	}
+
+	/**
+	 * Tests whether a method declaring the variable with the given index has been
+	 * encountered.
+	 * 
+	 * @param i the index of the variable
+	 * @return true if a method declaring the variable has been encountered, false
+	 *         otherwise
+	 */
+	public boolean isDeclared(int i) {
+		return this.declared[i];
+	}
+
+	/**
+	 * The local variables of a method.
+	 */
+	public class Entry {
+		private final String signature; // the mangled signature of the method
+		private final int[][] slots; // for each variable the slot, start and end of each of its scopes
+		private final String[] mangledName; // for each variable declared by the method its mangled name
+
+		/**
+		 * Determines the local variables of the given method.
+		 * 
+		 * @param method a method
+		 */
+		private Entry(MethodInfo method) {
+			this.signature = method.getClassName().replaceAll("[$.]", "_") + "_" + method.getJNIName();
+			this.slots = new int[variable.length][];
+			this.mangledName = new String[variable.length];
+			LocalVarInfo[] localVars = method.getLocalVars();
+			for (int i = 0; i < variable.length; i++) {
+				if (methodSpec[i] != null && methodSpec[i].matches(method)) {
+					this.mangledName[i] = this.signature + "__" + variable[i];
+					List<LocalVarInfo> scopes = new ArrayList<LocalVarInfo>();
+					if (localVars != null) {
+						for (LocalVarInfo localVar : localVars) {
+							if (variable[i].equals(localVar.getName())) {
+								scopes.add(localVar);
+							}
+						}
+					}
+					this.slots[i] = new int[3 * scopes.size()];
+					declared[i] |= !scopes.isEmpty();
+					for (int j = 0; j < scopes.size(); j++) {
+						LocalVarInfo localVar = scopes.get(j);
+						this.slots[i][3 * j] = localVar.getSlotIndex();
+						this.slots[i][3 * j + 1] = localVar.getStartPC();
+						this.slots[i][3 * j + 2] = localVar.getStartPC() + localVar.getLength();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Tests whether the method is specified as the method declaring the variable
+		 * with the given index.
+		 * 
+		 * @param i the index of the variable
+		 * @return true if the method declares the variable, false otherwise
+		 */
+		public boolean declares(int i) {
+			return this.slots[i] != null;
+		}
+
+		/**
+		 * Returns the slot of the variable with the given index at the given position
+		 * of the method.
+		 * 
+		 * @param i  the index of the variable
+		 * @param pc the position in the method
+		 * @return the slot of the variable, or -1 if the variable is not in scope
+		 */
+		public int getSlotIndex(int i, int pc) {
+			int[] scopes = this.slots[i];
+			if (scopes != null) {
+				for (int j = 0; j < scopes.length; j += 3) {
+					if (scopes[j + 1] <= pc && pc < scopes[j + 2]) {
+						return scopes[j];
+					}
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Returns the mangled name of the variable with the given index, which
+		 * consists of the mangled signature of the method and the name of the
+		 * variable.
+		 * 
+		 * @param i the index of the variable
+		 * @return the mangled name of the variable, or null if the method does not
+		 *         declare it
+		 */
+		public String getMangledName(int i) {
+			return this.mangledName[i];
+		}
+
+		/**
+		 * Returns the mangled signature of the method.
+		 * 
+		 * @return the mangled signature of the method
+		 */
+		public String getSignature() {
+			return this.signature;
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache which records, for a method, field or instruction, which of
+ * the configured specifications it matches, if any. Whether a method or field
+ * matches a specification does not change during the search, so it only needs
+ * to be determined once.
+ * 
+ * The entries are keyed by object identity. Since JPF creates a new MethodInfo
+ * and FieldInfo for each class loader that loads a class, the entries of
+ * classes loaded by different class loaders are kept apart. Once the cache is
+ * full, it is cleared.
+ * 
+ * @param <K> the type of the keys
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class MatchCache<K> {
+	/**
+	 * The result of a key that does not match any specification.
+	 */
+	public static final Match NO_MATCH = new Match(-1, null);
+
+	private static final int DEFAULT_CAPACITY = 4096; // default maximal number of entries
+
+	private Map<K, Match> matches; // the cached results
+	private int capacity; // maximal number of entries
+
+	/**
+	 * Creates an empty cache with the default capacity.
+	 */
+	public MatchCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates an empty cache with the given capacity.
+	 * 
+	 * @param capacity the maximal number of entries of the cache
+	 */
+	public MatchCache(int capacity) {
+		this.matches = new IdentityHashMap<K, Match>();
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Returns the cached result for the given key.
+	 * 
+	 * @param key a method, field or instruction
+	 * @return the result for the key, or null if it has not been cached
+	 */
+	public Match get(K key) {
+		return this.matches.get(key);
+	}
+
+	/**
+	 * Caches the result for the given key.
+	 * 
+	 * @param key   a method, field or instruction
+	 * @param match the result for the key
+	 */
+	public void put(K key, Match match) {
+		if (this.matches.size() >= this.capacity) {
+			this.matches.clear();
+		}
+		this.matches.put(key, match);
+	}
+
+	/**
+	 * The result of matching against the configured specifications: the indices
+	 * of the matching specifications and the mangled signature of the matched
+	 * method, field or instruction.
+	 */
+	public static class Match {
+		private final int index;
+		private final int[] indices;
+		private final String signature;
+
+		/**
+		 * Creates a result with at most one matching specification.
+		 * 
+		 * @param index     the index of the matching specification, -1 if none
+		 * @param signature the mangled signature, may be null
+		 */
+		public Match(int index, String signature) {
+			this(index < 0 ? new int[0] : new int[] { index }, signature);
+		}
+
+		/**
+		 * Creates a result.
+		 * 
+		 * @param indices   the indices of the matching specifications, in increasing
+		 *                  order
+		 * @param signature the mangled signature, may be null
+		 */
+		public Match(int[] indices, String signature) {
+			this.index = (indices.length == 0 ? -1 : indices[0]);
+			this.indices = indices;
+			this.signature = signature;
+		}
+
+		/**
+		 * Tests whether a specification was matched.
+		 * 
+		 * @return true if a specification was matched, false otherwise
+		 */
+		public boolean matches() {
+			return this.index >= 0;
+		}
+
+		/**
+		 * Returns the index of the first matching specification.
+		 * 
+		 * @return the index of the first matching specification, -1 if none
+		 */
+		public int getIndex() {
+			return this.index;
+		}
+
+		/**
+		 * Returns the indices of all matching specifications.
+		 * 
+		 * @return the indices of the matching specifications, in increasing order
+		 */
+		public int[] getIndices() {
+			return this.indices;
+		}
+
+		/**
+		 * Returns the mangled signature of the matched method, field or instruction.
+		 * 
+		 * @return the mangled signature, or null if none
+		 */
+		public String getSignature() {
+			return this.signature;
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.search.Search;
+
+/**
+ * Outputs the state space and its labelling in the explicit format of the
+ * probabilistic model checker PRISM, so that the model can be imported by
+ * means of
+ * 
+ * <pre>
+ * prism -importmodel &lt;name of system under test&gt;_prism.tra,sta,lab -mdp
+ * </pre>
+ * 
+ * The states are numbered from 0 in PRISM, whereas the initial state of JPF has
+ * id -1. Therefore, the state with id i in JPF is state i + 1 in PRISM. Since
+ * the choices of JPF, such as those of the scheduler, are nondeterministic, the
+ * state space is a Markov decision process in which each transition of JPF is
+ * a separate choice, taken with probability 1. Three files are written, whose
+ * names end in _prism so that they do not clash with the file written by
+ * TextSink:
+ * 
+ * <ol>
+ * <li>&lt;name of system under test&gt;_prism.tra, consisting of a line with
+ * the number of states, choices and transitions, followed by a line "source
+ * choice target 1" for each transition, in the order in which the transitions
+ * were traversed.</li>
+ * <li>&lt;name of system under test&gt;_prism.lab, in the same format as
+ * written by TextSink, except that the initial state has the label init, with
+ * index 0, and the label with index i is given index i + 1.</li>
+ * <li>&lt;name of system under test&gt;_prism.sta, mapping each state of PRISM
+ * to the id of the state in JPF.</li>
+ * </ol>
+ * 
+ * The transitions and the labels of the states are kept in memory until the
+ * files are written. If the property label.StateLabelPrism.stream is set to
+ * true, or checkpointing is enabled, they are instead written to the files
+ * &lt;name of system under test&gt;_prism.tra.part and &lt;name of system
+ * under test&gt;_prism.lab.part as they are traversed, after a region reserved
+ * for their first line, which is written there, padded with spaces, once the
+ * search has finished. The files are then renamed. The region of the labels is
+ * label.stream.reserve bytes (64 KB by default).
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class PrismSink implements LabelSink {
+	private static final String SUFFIX = "_prism"; // ends the names of the files, to keep them apart from TextSink's
+	private static final int TRA_RESERVE = 64; // size of the region reserved for the first line of the .tra file
+	private boolean stream; // whether the transitions and labels are streamed to files
+	private int reserve; // size of the region reserved for the enumeration of the labels, in bytes
+	private StateOutput transitions; // the transitions
+	private StateOutput states; // the labelling of the states
+	private int[] choices; // number of choices of each state
+	private int size; // number of states
+	private long count; // number of transitions
+
+	/**
+	 * Initializes this sink.
+	 * 
+	 * @param configuration JPF's configuration
+	 */
+	public PrismSink(Config configuration) {
+		this.stream = configuration.getBoolean("label.StateLabelPrism.stream", false)
+				|| Checkpoints.isEnabled(configuration);
+		this.reserve = StateOutput.getReserve(configuration);
+		this.transitions = new StateOutput();
+		this.states = new StateOutput();
+		this.choices = new int[1024];
+		this.size = 0;
+		this.count = 0;
+	}
+
+	/**
+	 * Opens the files to which the transitions and labels are streamed, if any.
+	 */
+	@Override
+	public void searchStarted(Search search) {
+		if (this.stream) {
+			String name = LabelSink.getOutputName(search) + PrismSink.SUFFIX;
+			File file = new File(name + ".tra.part");
+			try {
+				this.transitions = new StateOutput(file, false, PrismSink.TRA_RESERVE);
+				file = new File(name + ".lab.part");
+				this.states = new StateOutput(file, false, this.reserve);
+			} catch (FileNotFoundException e) {
+				System.out.println("Listener could not write to the file " + file.getName());
+			}
+		}
+	}
+
+	/**
+	 * Writes the labels for a state, preceded by the label init for the initial
+	 * state.
+	 */
+	@Override
+	public void labelState(int id, LabelSet labels) {
+		int state = id + 1;
+		this.size = Math.max(this.size, state + 1);
+		if (state == 0 || !labels.isEmpty()) {
+			ChannelWriter writer = this.states.getWriter();
+			try {
+				writer.write(state).write(':');
+				if (state == 0) {
+					writer.write(" 0");
+				}
+				for (int i = labels.next(0); i >= 0; i = labels.next(i + 1)) {
+					writer.write(' ').write(i + 1);
+				}
+				writer.write('\n');
+			} catch (IOException e) {
+				this.states.failed(e);
+			}
+		}
+	}
+
+	/**
+	 * Writes a transition as a new choice of its source state.
+	 */
+	@Override
+	public void labelTransition(int source, int target) {
+		int from = source + 1;
+		int to = target + 1;
+		this.size = Math.max(this.size, Math.max(from, to) + 1);
+		if (from >= this.choices.length) {
+			this.choices = Arrays.copyOf(this.choices, Math.max(from + 1, 2 * this.choices.length));
+		}
+		try {
+			this.transitions.getWriter().write(from).write(' ').write(this.choices[from]++).write(' ').write(to)
+					.write(" 1\n");
+		} catch (IOException e) {
+			this.transitions.failed(e);
+		}
+		this.count++;
+	}
+
+	@Override
+	public void writeStateLabels(Search search, String name, LabelRegistry labels) {
+		String prism = name + PrismSink.SUFFIX;
+		String newline = System.lineSeparator();
+		try {
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			ChannelWriter writer = new ChannelWriter(Channels.newChannel(header));
+			writer.write(this.size).write(' ').write(Long.toString(this.count)).write(' ')
+					.write(Long.toString(this.count)).write(newline);
+			writer.flush();
+			this.transitions.moveTo(new File(prism + ".tra"), header.toByteArray()).close();
+		} catch (IOException e) {
+			System.out.println("Listener could not write to the output file " + prism + ".tra");
+			search.terminate();
+		}
+
+		try {
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			ChannelWriter writer = new ChannelWriter(Channels.newChannel(header));
+			writer.write("0=\"init\" ");
+			int n = labels.size();
+			for (int i = 0; i < n; i++) {
+				writer.write(i + 1).write("=\"").write(labels.get(i).getName()).write("\" ");
+			}
+			writer.write(newline);
+			writer.flush();
+			this.states.moveTo(new File(prism + ".lab"), header.toByteArray()).close();
+		} catch (IOException e) {
+			System.out.println("Listener could not write to the output file " + prism + ".lab");
+			search.terminate();
+		}
+
+		try {
+			ChannelWriter writer = new ChannelWriter(new FileOutputStream(prism + ".sta").getChannel());
+			try {
+				writer.write("(jpf)").write(newline);
+				for (int state = 0; state < this.size; state++) {
+					writer.write(state).write(":(").write(state - 1).write(')').write(newline);
+				}
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Listener could not write to the output file " + prism + ".sta");
+			search.terminate();
+		}
+	}
+
+	/**
+	 * Writes the part of the transitions and labelling streamed so far to the
+	 * files.
+	 */
+	@Override
+	public void flush() throws IOException {
+		this.transitions.flush();
+		this.states.flush();
+	}
+
+	/**
+	 * Removes the files to which the transitions and labels were streamed, if
+	 * any.
+	 */
+	@Override
+	public void searchFinished(Search search) {
+		this.transitions.delete();
+		this.states.delete();
+	}
+}
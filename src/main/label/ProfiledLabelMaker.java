@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Set;
+
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.vm.ClassInfo;
+import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.ThreadInfo;
+
+/**
+ * A label maker which delegates to another label maker and records, for each
+ * of the methods getStateLabels, breakAfter, breakBefore and
+ * beforeInstruction, the number of times it is invoked and the time spent in
+ * it, as well as the number of labels added. A listener wraps its label makers
+ * only if the property label.profile is set to true, so that the label makers
+ * are invoked directly otherwise.
+ * 
+ * The label makers are invoked on the search thread only; the labels of raw
+ * snapshots, which may be built on another thread, are built by the wrapped
+ * label maker and are not timed. The labels recorded in the snapshot of a set
+ * of labels are counted as added, unless they were recorded before.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class ProfiledLabelMaker extends TransitionLabelMaker {
+	private static final String[] METHODS = { "getStateLabels", "breakAfter", "breakBefore", "beforeInstruction" };
+	private static final int STATE = 0; // index of getStateLabels
+	private static final int AFTER = 1; // index of breakAfter
+	private static final int BEFORE = 2; // index of breakBefore
+	private static final int INSTRUCTION = 3; // index of beforeInstruction
+	private static final Class<?>[] NONE = new Class<?>[0]; // no instruction is of interest
+
+	private StateLabelMaker maker; // the wrapped label maker
+	private TransitionLabelMaker transitions; // the wrapped label maker, null if it does not rely on transitions
+	private long[] calls; // number of invocations of each method
+	private long[] nanos; // time spent in each method, in nanoseconds
+	private long labels; // number of labels added
+
+	/**
+	 * Wraps the given label maker.
+	 * 
+	 * @param maker a label maker
+	 */
+	public ProfiledLabelMaker(StateLabelMaker maker) {
+		this.maker = maker;
+		this.transitions = (maker instanceof TransitionLabelMaker ? (TransitionLabelMaker) maker : null);
+		this.calls = new long[METHODS.length];
+		this.nanos = new long[METHODS.length];
+		this.labels = 0;
+	}
+
+	/**
+	 * Returns the wrapped label maker.
+	 * 
+	 * @return the wrapped label maker
+	 */
+	public StateLabelMaker getLabelMaker() {
+		return this.maker;
+	}
+
+	/**
+	 * Returns the types of the instructions the wrapped label maker is interested
+	 * in. A label maker which does not rely on transitions is not interested in any
+	 * instruction.
+	 * 
+	 * @return the types of the instructions of interest, or null if all
+	 *         instructions are of interest
+	 */
+	@Override
+	public Class<?>[] getInstructionTypes() {
+		return (this.transitions == null ? NONE : this.transitions.getInstructionTypes());
+	}
+
+	@Override
+	public Set<Label> getStateLabels(Search search) {
+		return this.maker.getStateLabels(search);
+	}
+
+	@Override
+	public void getStateLabels(Search search, LabelSet labels) {
+		int size = ProfiledLabelMaker.count(labels);
+		long start = System.nanoTime();
+		this.maker.getStateLabels(search, labels);
+		this.record(STATE, start, ProfiledLabelMaker.count(labels) - size);
+	}
+
+	@Override
+	public boolean breakAfter(ThreadInfo thread, Instruction executedInstruction, LabelSet labels) {
+		int size = ProfiledLabelMaker.count(labels);
+		long start = System.nanoTime();
+		boolean b = this.transitions.breakAfter(thread, executedInstruction, labels);
+		this.record(AFTER, start, ProfiledLabelMaker.count(labels) - size);
+		return b;
+	}
+
+	@Override
+	public boolean breakBefore(ThreadInfo thread, Instruction nextInstruction, LabelSet labels) {
+		int size = ProfiledLabelMaker.count(labels);
+		long start = System.nanoTime();
+		boolean b = this.transitions.breakBefore(thread, nextInstruction, labels);
+		this.record(BEFORE, start, ProfiledLabelMaker.count(labels) - size);
+		return b;
+	}
+
+	@Override
+	public void beforeInstruction(ThreadInfo thread, Instruction instructionToExecute) {
+		long start = System.nanoTime();
+		this.transitions.beforeInstruction(thread, instructionToExecute);
+		this.record(INSTRUCTION, start, 0);
+	}
+
+	@Override
+	public Label getLabel(MatchCache.Match spec, int value) {
+		return this.maker.getLabel(spec, value);
+	}
+
+	@Override
+	public void classLoaded(ClassInfo loadedClass) {
+		this.maker.classLoaded(loadedClass);
+	}
+
+	@Override
+	public String[] getUnmatchedSignatures() {
+		return this.maker.getUnmatchedSignatures();
+	}
+
+	/**
+	 * Returns the number of labels of the given set, including those recorded in
+	 * its snapshot.
+	 * 
+	 * @param labels a set of labels
+	 * @return the number of labels of the set
+	 */
+	private static int count(LabelSet labels) {
+		LabelSnapshot snapshot = labels.getSnapshot();
+		return labels.size() + (snapshot == null ? 0 : snapshot.size());
+	}
+
+	/**
+	 * Records an invocation of the method with the given index.
+	 * 
+	 * @param method the index of the method
+	 * @param start  the time at which the method was invoked, in nanoseconds
+	 * @param added  the number of labels added by the method
+	 */
+	private void record(int method, long start, int added) {
+		this.nanos[method] += System.nanoTime() - start;
+		this.calls[method]++;
+		this.labels += added;
+	}
+
+	/**
+	 * Prints the profile of the wrapped label maker in a readable format.
+	 * 
+	 * @param out the writer to which the profile is printed
+	 */
+	public void print(PrintWriter out) {
+		out.println(this.maker.getClass().getName());
+		for (int i = 0; i < METHODS.length; i++) {
+			if (this.calls[i] > 0) {
+				out.printf("  %-20s calls: %-12d time: %.3f ms%n", METHODS[i], this.calls[i], this.nanos[i] / 1e6);
+			}
+		}
+		out.println("  labels added: " + this.labels);
+		String[] unmatched = this.getUnmatchedSignatures();
+		if (unmatched.length > 0) {
+			out.println("  never matched: " + String.join(", ", unmatched));
+		}
+	}
+
+	/**
+	 * Writes the header of the comma separated values written by write.
+	 * 
+	 * @param writer the writer to which the header is written
+	 * @throws IOException if the header cannot be written
+	 */
+	public static void writeHeader(ChannelWriter writer) throws IOException {
+		writer.write("maker");
+		for (String method : METHODS) {
+			writer.write(',').write(method).write(".calls,").write(method).write(".nanoseconds");
+		}
+		writer.write(",labels,unmatched");
+	}
+
+	/**
+	 * Writes the profile of the wrapped label maker as comma separated values.
+	 * The signatures of the specifications which have not been matched are
+	 * separated by semicolons.
+	 * 
+	 * @param writer the writer to which the profile is written
+	 * @throws IOException if the profile cannot be written
+	 */
+	public void write(ChannelWriter writer) throws IOException {
+		writer.write(this.maker.getClass().getName());
+		for (int i = 0; i < METHODS.length; i++) {
+			writer.write(',').write(Long.toString(this.calls[i])).write(',').write(Long.toString(this.nanos[i]));
+		}
+		writer.write(',').write(Long.toString(this.labels)).write(',');
+		writer.write(String.join(";", this.getUnmatchedSignatures()).replace(',', ' '));
+	}
+}
@@ -16,14 +16,12 @@
  */
 package label;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.jvm.bytecode.IRETURN;
 import gov.nasa.jpf.util.MethodSpec;
 import gov.nasa.jpf.vm.Instruction;
 import gov.nasa.jpf.vm.MethodInfo;
+import gov.nasa.jpf.vm.ThreadInfo;
 
 /**
  * A labeling function for methods when they return with type boolean.
@@ -36,12 +34,18 @@ import gov.nasa.jpf.vm.MethodInfo;
  */
 public class ReturnedBooleanMethod extends TransitionLabelMaker {
 	private String[] methodName; // method signatures
+	private MethodSpec[] methodSpec; // method specifications
+	private MatchCache<MethodInfo> matches; // methods matched against the specifications
+	private LabelCache labelCache; // labels created so far
 
 	/**
 	 * Initializes this labeling function.
 	 */
 	private ReturnedBooleanMethod(Config configuration) {
 		methodName = getConfiguredProperty(configuration, "label.ReturnedBooleanMethod.method");
+		methodSpec = createMethodSpecs(methodName);
+		matches = new MatchCache<MethodInfo>();
+		labelCache = new LabelCache();
 	}
 
 	/**
@@ -55,21 +59,29 @@ public class ReturnedBooleanMethod extends TransitionLabelMaker {
 	}
 
 	@Override
-	public Set<Label> breakAfter(Instruction executedInstruction) {
+	public Class<?>[] getInstructionTypes() {
+		return new Class<?>[] { IRETURN.class };
+	}
+
+	@Override
+	public boolean breakAfter(ThreadInfo thread, Instruction executedInstruction, LabelSet labels) {
 		if (executedInstruction instanceof IRETURN) {
 			IRETURN instruction = (IRETURN) executedInstruction;
 			MethodInfo methodInfo = instruction.getMethodInfo();
-			for (String method : methodName) {
-				if (MethodSpec.createMethodSpec(method).matches(methodInfo)) {
-					Set<Label> labels = new HashSet<Label>();
-					boolean returnedValue = instruction.getReturnValue() != 0;
-					String signature = methodInfo.getClassName().replaceAll("[$.]", "_") + "_"
-							+ methodInfo.getJNIName();
-					labels.add(new Label(returnedValue + "__" + signature, method + " returned " + returnedValue));
-					return labels;
-				}
+			MatchCache.Match match = matchMethod(methodInfo, methodSpec, matches);
+			if (match.matches()) {
+				labels.add(this, match, instruction.getReturnValue() != 0 ? 1 : 0);
+				return true;
 			}
 		}
-		return null;
+		return false;
+	}
+
+	@Override
+	public Label getLabel(MatchCache.Match match, int value) {
+		boolean returnedValue = value != 0;
+		return labelCache.computeIfAbsent(match.getSignature(), value,
+				() -> new Label(returnedValue + "__" + match.getSignature(),
+						methodName[match.getIndex()] + " returned " + returnedValue));
 	}
 }
@@ -16,14 +16,12 @@
  */
 package label;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.jvm.bytecode.IRETURN;
 import gov.nasa.jpf.util.MethodSpec;
 import gov.nasa.jpf.vm.Instruction;
 import gov.nasa.jpf.vm.MethodInfo;
+import gov.nasa.jpf.vm.ThreadInfo;
 
 /**
  * A labeling function for methods when they return with type integer.
@@ -37,12 +35,18 @@ import gov.nasa.jpf.vm.MethodInfo;
  */
 public class ReturnedIntegerMethod extends TransitionLabelMaker {
 	private String[] methodName; // method signatures
+	private MethodSpec[] methodSpec; // method specifications
+	private MatchCache<MethodInfo> matches; // methods matched against the specifications
+	private LabelCache labelCache; // labels created so far
 
 	/**
 	 * Initializes this labeling function.
 	 */
 	private ReturnedIntegerMethod(Config configuration) {
 		methodName = getConfiguredProperty(configuration, "label.ReturnedIntegerMethod.method");
+		methodSpec = createMethodSpecs(methodName);
+		matches = new MatchCache<MethodInfo>();
+		labelCache = new LabelCache();
 	}
 
 	/**
@@ -56,23 +60,29 @@ public class ReturnedIntegerMethod extends TransitionLabelMaker {
 	}
 
 	@Override
-	public Set<Label> breakAfter(Instruction executedInstruction) {
+	public Class<?>[] getInstructionTypes() {
+		return new Class<?>[] { IRETURN.class };
+	}
+
+	@Override
+	public boolean breakAfter(ThreadInfo thread, Instruction executedInstruction, LabelSet labels) {
 		if (executedInstruction instanceof IRETURN) {
 			IRETURN instruction = (IRETURN) executedInstruction;
 			MethodInfo methodInfo = instruction.getMethodInfo();
-			for (String method : methodName) {
-				if (MethodSpec.createMethodSpec(method).matches(methodInfo)) {
-					Set<Label> labels = new HashSet<Label>();
-					int returnedValue = instruction.getReturnValue();
-					String sign = (returnedValue < 0 ? "minus" : "");
-					String signature = methodInfo.getClassName().replaceAll("[$.]", "_") + "_"
-							+ methodInfo.getJNIName();
-					labels.add(new Label(sign + Math.abs(returnedValue) + "__" + signature,
-							method + " returned " + returnedValue));
-					return labels;
-				}
+			MatchCache.Match match = matchMethod(methodInfo, methodSpec, matches);
+			if (match.matches()) {
+				labels.add(this, match, instruction.getReturnValue());
+				return true;
 			}
 		}
-		return null;
+		return false;
+	}
+
+	@Override
+	public Label getLabel(MatchCache.Match match, int returnedValue) {
+		String sign = (returnedValue < 0 ? "minus" : "");
+		return labelCache.computeIfAbsent(match.getSignature(), returnedValue,
+				() -> new Label(sign + Math.abs(returnedValue) + "__" + match.getSignature(),
+						methodName[match.getIndex()] + " returned " + returnedValue));
 	}
 }
@@ -16,14 +16,12 @@
  */
 package label;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.jvm.bytecode.RETURN;
 import gov.nasa.jpf.util.MethodSpec;
 import gov.nasa.jpf.vm.Instruction;
 import gov.nasa.jpf.vm.MethodInfo;
+import gov.nasa.jpf.vm.ThreadInfo;
 
 /**
  * A labeling function for void methods when they return.
@@ -36,12 +34,18 @@ import gov.nasa.jpf.vm.MethodInfo;
  */
 public class ReturnedVoidMethod extends TransitionLabelMaker {
 	private String[] methodName; // method signatures
+	private MethodSpec[] methodSpec; // method specifications
+	private MatchCache<MethodInfo> matches; // methods matched against the specifications
+	private LabelCache labelCache; // labels created so far
 
 	/**
 	 * Initializes this labeling function.
 	 */
 	private ReturnedVoidMethod(Config configuration) {
 		methodName = getConfiguredProperty(configuration, "label.ReturnedVoidMethod.method");
+		methodSpec = createMethodSpecs(methodName);
+		matches = new MatchCache<MethodInfo>();
+		labelCache = new LabelCache();
 	}
 
 	/**
@@ -55,20 +59,27 @@ public class ReturnedVoidMethod extends TransitionLabelMaker {
 	}
 
 	@Override
-	public Set<Label> breakAfter(Instruction executedInstruction) {
+	public Class<?>[] getInstructionTypes() {
+		return new Class<?>[] { RETURN.class };
+	}
+
+	@Override
+	public boolean breakAfter(ThreadInfo thread, Instruction executedInstruction, LabelSet labels) {
 		if (executedInstruction instanceof RETURN) {
 			RETURN instruction = (RETURN) executedInstruction;
 			MethodInfo methodInfo = instruction.getMethodInfo();
-			for (String method : methodName) {
-				if (MethodSpec.createMethodSpec(method).matches(methodInfo)) {
-					Set<Label> labels = new HashSet<Label>();
-					String signature = methodInfo.getClassName().replaceAll("[$.]", "_") + "_"
-							+ methodInfo.getJNIName();
-					labels.add(new Label("returned__" + signature, method + " returned"));
-					return labels;
-				}
+			MatchCache.Match match = matchMethod(methodInfo, methodSpec, matches);
+			if (match.matches()) {
+				labels.add(this, match, 0);
+				return true;
 			}
 		}
-		return null;
+		return false;
+	}
+
+	@Override
+	public Label getLabel(MatchCache.Match match, int value) {
+		return labelCache.computeIfAbsent(match.getSignature(),
+				() -> new Label("returned__" + match.getSignature(), methodName[match.getIndex()] + " returned"));
 	}
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.search.Search;
+
+/**
+ * Outputs the labels of the state space to a sequence of files, called shards,
+ * named &lt;name of system under test&gt;.&lt;k&gt;.lab for k = 0, 1, 2, ...
+ * Each shard contains the lines of the states of the .lab file, as described in
+ * TextSink, for a range of consecutive states. A shard is complete once the
+ * next one has been started, so that complete shards can be processed while
+ * the search is still running.
+ * 
+ * A new shard is started once the current one has as many states as given by
+ * the property label.shard.states or as many bytes as given by the property
+ * label.shard.size, which defaults to 64 MB. If the output is compressed, the
+ * shards are named &lt;name of system under test&gt;.&lt;k&gt;.lab.gz and their
+ * size refers to the uncompressed content.
+ * 
+ * Once the search has finished, an index is written to the file &lt;name of
+ * system under test&gt;.labi. Its first line enumerates all possible labels, as
+ * in the .lab file, and each subsequent line contains the name of a shard and
+ * the ids of the first and the last state of that shard, separated by a single
+ * space.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class ShardSink implements LabelSink {
+	private static final long DEFAULT_SIZE = 64L << 20; // default maximal number of bytes of a shard
+
+	private boolean compress; // whether the shards are compressed
+	private int maxStates; // maximal number of states of a shard, 0 if unbounded
+	private long maxSize; // maximal number of bytes of a shard
+	private String name; // the name of the system under test
+	private List<String> shards; // the name of each shard
+	private List<int[]> ranges; // the ids of the first and last state of each shard
+	private ChannelWriter writer; // the writer of the current shard, null if it has not been started
+	private int states; // number of states of the current shard
+	private boolean failed; // whether writing a shard failed
+
+	/**
+	 * Initializes this sink. The output is compressed if the property label.gzip
+	 * is set to true.
+	 * 
+	 * @param configuration JPF's configuration
+	 */
+	public ShardSink(Config configuration) {
+		this.compress = configuration.getBoolean("label.gzip", false);
+		this.maxStates = Math.max(0, configuration.getInt("label.shard.states", 0));
+		this.maxSize = configuration.getLong("label.shard.size", DEFAULT_SIZE);
+		this.name = null;
+		this.shards = new ArrayList<String>();
+		this.ranges = new ArrayList<int[]>();
+		this.writer = null;
+		this.states = 0;
+		this.failed = false;
+	}
+
+	/**
+	 * Records the name of the system under test, which prefixes the names of the
+	 * shards.
+	 */
+	@Override
+	public void searchStarted(Search search) {
+		this.start(LabelSink.getOutputName(search));
+	}
+
+	/**
+	 * Records the given name, which prefixes the names of the shards.
+	 * 
+	 * @param name the name of the system under test
+	 */
+	void start(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Writes the labels for a state to the current shard, starting a new shard if
+	 * needed.
+	 */
+	@Override
+	public void labelState(int id, LabelSet labels) {
+		if (this.failed) {
+			return;
+		}
+		try {
+			if (this.writer == null) {
+				this.startShard(id);
+			}
+			if (!labels.isEmpty()) {
+				this.writer.write(id).write(':');
+				for (int i = labels.next(0); i >= 0; i = labels.next(i + 1)) {
+					this.writer.write(' ').write(i);
+				}
+				this.writer.write('\n');
+			}
+			this.ranges.get(this.ranges.size() - 1)[1] = id;
+			this.states++;
+			if (this.states == this.maxStates || this.writer.size() >= this.maxSize) {
+				this.finishShard();
+			}
+		} catch (IOException e) {
+			this.failed = true;
+			System.out.println("Listener could not write to the file " + this.shards.get(this.shards.size() - 1));
+		}
+	}
+
+	/**
+	 * Transitions are not part of the labelling.
+	 */
+	@Override
+	public void labelTransition(int source, int target) {
+	}
+
+	/**
+	 * Writes the current shard to disk and writes the index.
+	 */
+	@Override
+	public void writeStateLabels(Search search, String name, LabelRegistry labels) {
+		try {
+			if (this.failed) {
+				throw new IOException("Shard could not be written");
+			}
+			this.flush();
+			ChannelWriter index = new ChannelWriter(new FileOutputStream(name + ".labi").getChannel());
+			try {
+				String newline = System.lineSeparator();
+				int n = labels.size();
+				for (int i = 0; i < n; i++) {
+					index.write(i).write("=\"").write(labels.get(i).getName()).write("\" ");
+				}
+				index.write(newline);
+				for (int k = 0; k < this.shards.size(); k++) {
+					int[] range = this.ranges.get(k);
+					String shard = new File(this.shards.get(k)).getName();
+					index.write(shard).write(' ').write(range[0]).write(' ').write(range[1]);
+					index.write(newline);
+				}
+			} finally {
+				index.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Listener could not write to the output file " + name + ".labi");
+			search.terminate();
+		}
+	}
+
+	/**
+	 * Writes the part of the current shard written so far to disk.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (this.writer != null) {
+			this.writer.flush();
+		}
+	}
+
+	/**
+	 * Closes the current shard.
+	 */
+	@Override
+	public void searchFinished(Search search) {
+		if (this.writer != null) {
+			try {
+				this.finishShard();
+			} catch (IOException e) {
+				System.out.println("Listener could not write to the file " + this.shards.get(this.shards.size() - 1));
+			}
+		}
+	}
+
+	/**
+	 * Starts a new shard.
+	 * 
+	 * @param id the id of the first state of the shard
+	 * @throws IOException if the shard cannot be created
+	 */
+	private void startShard(int id) throws IOException {
+		String shard = this.name + "." + this.shards.size() + (this.compress ? ".lab.gz" : ".lab");
+		this.shards.add(shard);
+		this.ranges.add(new int[] { id, id });
+		this.writer = StateOutput.createWriter(new FileOutputStream(shard).getChannel(), this.compress);
+		this.states = 0;
+	}
+
+	/**
+	 * Completes the current shard.
+	 * 
+	 * @throws IOException if the shard cannot be written
+	 */
+	private void finishShard() throws IOException {
+		ChannelWriter writer = this.writer;
+		this.writer = null;
+		writer.close();
+	}
+}
@@ -16,18 +16,22 @@
  */
 package label;
 
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.TreeSet;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.ListenerAdapter;
+import gov.nasa.jpf.report.ConsolePublisher;
+import gov.nasa.jpf.report.Publisher;
 import gov.nasa.jpf.search.Search;
 import gov.nasa.jpf.search.SearchListener;
+import gov.nasa.jpf.vm.ClassInfo;
 import gov.nasa.jpf.vm.Instruction;
 import gov.nasa.jpf.vm.ThreadInfo;
 import gov.nasa.jpf.vm.VM;
@@ -40,13 +44,74 @@ import gov.nasa.jpf.vm.VMListener;
  * the labeling functions, can be specified in the application properties file
  * by setting the property label.class.
  * 
+ * The labels of each state are determined once and passed to each of the sinks
+ * of the listener, which write them in their output format. Subclasses either
+ * add sinks or override labelState, labelTransition and writeStateLabels.
+ * 
+ * Each distinct set of labels is interned in a table and given an id, which is
+ * passed along with the labels of a state, so that a sink can represent the
+ * labelling of a state by a single integer. If the property label.store is set
+ * to true, the id of the set of labels of each state is also kept, outside the
+ * Java heap, so that the labels of a state can be queried by getLabels.
+ * 
+ * If the property label.async is set to true, the labelling is formatted on a
+ * separate thread, so that the search does not wait for the output to be
+ * written. In that case, the methods labelState and labelTransition are invoked
+ * on that thread. The number of states that may be waiting to be formatted is
+ * bounded by the property label.async.capacity.
+ * 
+ * If, furthermore, the property label.async.format is set to true, the label
+ * makers record the labels of each state in a LabelSnapshot, which is
+ * materialized on that thread: the labels recorded as raw entries are built
+ * by their label makers, and all labels are registered and interned there.
+ * The method, field, variable and exception label makers record raw entries;
+ * label makers which add the labels built by getStateLabels(Search) still
+ * build them on the search thread, but these are registered on the thread
+ * formatting the labelling as well. Only the labels of new states are
+ * registered; in particular, the labels of a transition to a state visited
+ * before are not.
+ * 
+ * If the property label.profile is set to true, the label makers are wrapped
+ * in a ProfiledLabelMaker, which records the number of invocations of, and the
+ * time spent in, each of their methods, as well as the number of labels added.
+ * When the search finishes, these are reported by JPF's console publisher and
+ * written to the file &lt;name of system under test&gt;_profile.csv, together
+ * with the specifications which were never matched.
+ * 
+ * If checkpointing is enabled, as described in Checkpoints, the labelling
+ * formatted so far is written to disk by each of the sinks, and the labels
+ * registered so far are appended to the file &lt;name of system under
+ * test&gt;.labels, whenever a checkpoint is due. Furthermore, should JPF be
+ * terminated before the search finishes, for example because a time limit is
+ * exceeded, the labelling of the states formatted so far is written as if the
+ * search had finished.
+ * 
  * @author Syyeda Zainab Fatmi
  */
 public abstract class StateLabel extends ListenerAdapter implements SearchListener, VMListener {
-	protected List<Label> allLabels; // string representation of all possible labels
+	private static final int DISPATCH_SIZE = 512; // initial size of the dispatch table, covering all opcodes of JPF
+	private static final int[] NONE = new int[0]; // no transition label maker is interested
+
+	protected List<Label> allLabels; // all possible labels, a read-only view of the registry
+	private LabelRegistry registry; // registry of all possible labels, resolves the index of a label
 	private List<StateLabelMaker> labelMakers; // registered label makers
-	private Set<Integer> currentStateLabels; // labels for the current state
+	private TransitionLabelMaker[] transitionLabelMakers; // registered transition label makers
+	private Class<?>[][] instructionTypes; // instruction types of interest of each transition label maker
+	private int[][] dispatch; // indices of the interested transition label makers, per opcode
+	protected LabelSetTable labelSets; // table of the distinct sets of labels, resolves the id of a set
+	protected StateLabelStore store; // the id of the set of labels of each state, null if not kept
+	private LabelSet currentStateLabels; // labels for the current state, reused for every state
+	private List<LabelSink> sinks; // output formats of the labelling
+	private int current; // ID of current state
+	private int currentSet; // id of the set of labels of the state being formatted
+	private boolean legacy; // whether a subclass overrides the deprecated labelState(int, Set<Integer>)
+	private AsyncLabelWriter writer; // formats the labelling on a separate thread, null if not asynchronous
+	private boolean snapshots; // whether the labels are materialized by the writer
 	private int states; // number of states
+	private Checkpoints checkpoints; // decides when the labelling is checkpointed
+	private Thread shutdownHook; // writes the labelling if JPF is terminated, null if not checkpointing
+	private boolean finished; // whether the labelling has been written at the end of the search
+	private List<ProfiledLabelMaker> profiles; // the profiled label makers, null if not profiling
 
 	/**
 	 * Initializes this listener.
@@ -54,10 +119,27 @@ public abstract class StateLabel extends ListenerAdapter implements SearchListen
 	 * @param configuration JPF's configuration
 	 */
 	public StateLabel(Config configuration) {
-		this.allLabels = new ArrayList<Label>();
+		this.registry = new LabelRegistry();
+		this.allLabels = this.registry.asList();
 		this.labelMakers = new ArrayList<StateLabelMaker>();
-		this.currentStateLabels = new TreeSet<Integer>();
+		this.labelSets = new LabelSetTable();
+		this.store = (configuration.getBoolean("label.store", false) ? new StateLabelStore() : null);
+		this.snapshots = configuration.getBoolean("label.async.format", false);
+		this.currentStateLabels = new LabelSet(this.registry, this.snapshots ? new LabelSnapshot() : null);
+		this.sinks = new ArrayList<LabelSink>();
+		this.current = -1; // -1 is the ID of the initial state
+		try {
+			this.legacy = this.getClass().getMethod("labelState", int.class, Set.class)
+					.getDeclaringClass() != StateLabel.class;
+		} catch (NoSuchMethodException e) {
+			this.legacy = false;
+		}
 		this.states = 0;
+		this.checkpoints = new Checkpoints(configuration);
+		this.shutdownHook = null;
+		this.finished = false;
+		boolean profile = configuration.getBoolean("label.profile", false);
+		this.profiles = (profile ? new ArrayList<ProfiledLabelMaker>() : null);
 
 		String[] classes = configuration.getCompactTrimmedStringArray("label.class");
 		for (String name : classes) {
@@ -66,38 +148,117 @@ public abstract class StateLabel extends ListenerAdapter implements SearchListen
 				Method method = clazz.getDeclaredMethod("getInstance", gov.nasa.jpf.Config.class);
 				Object result = method.invoke(null, configuration); // result of invoking
 																	// name.getInstance(configuration)
-				this.labelMakers.add((StateLabelMaker) result);
+				StateLabelMaker labelMaker = (StateLabelMaker) result;
+				if (this.profiles != null) {
+					ProfiledLabelMaker profiled = new ProfiledLabelMaker(labelMaker);
+					this.profiles.add(profiled);
+					labelMaker = profiled;
+				}
+				this.labelMakers.add(labelMaker);
 			} catch (Exception e) {
 				System.out.println("Class " + name + " could not be instantiated");
 				e.printStackTrace();
 			}
 		}
+
+		List<TransitionLabelMaker> transitionMakers = new ArrayList<TransitionLabelMaker>();
+		for (StateLabelMaker labelMaker : this.labelMakers) {
+			if (labelMaker instanceof TransitionLabelMaker) {
+				transitionMakers.add((TransitionLabelMaker) labelMaker);
+			}
+		}
+		int n = transitionMakers.size();
+		this.transitionLabelMakers = transitionMakers.toArray(new TransitionLabelMaker[n]);
+		this.instructionTypes = new Class<?>[n][];
+		for (int i = 0; i < n; i++) {
+			this.instructionTypes[i] = this.transitionLabelMakers[i].getInstructionTypes();
+		}
+		this.dispatch = new int[DISPATCH_SIZE][];
+
+		if (this.snapshots || configuration.getBoolean("label.async", false)) {
+			int capacity = configuration.getInt("label.async.capacity", 1024);
+			this.writer = new AsyncLabelWriter(this, this.registry, capacity);
+		}
 	}
 
 	/**
-	 * When JPF starts, adds the labels of the initial state.
+	 * Adds a sink to which the labelling is passed.
+	 * 
+	 * @param sink an output format of the labelling
+	 */
+	protected void addSink(LabelSink sink) {
+		this.sinks.add(sink);
+	}
+
+	/**
+	 * When JPF starts, adds the labels of the initial state. If checkpointing is
+	 * enabled, also registers a shutdown hook which writes the labelling should
+	 * JPF be terminated before the search finishes.
 	 * 
 	 * @param search JPF's search.
 	 */
 	@Override
 	public void searchStarted(Search search) {
+		for (LabelSink sink : this.sinks) {
+			sink.searchStarted(search);
+		}
+		if (this.writer != null) {
+			this.writer.start();
+		}
+		if (this.profiles != null) {
+			search.getVM().getJPF().addPublisherExtension(ConsolePublisher.class, this);
+		}
+		if (this.checkpoints.isEnabled()) {
+			String name = LabelSink.getOutputName(search);
+			this.checkpoints.start(name);
+			this.shutdownHook = new Thread(() -> this.terminated(search, name), "label-shutdown");
+			Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+		}
 		this.getStateLabels(search);
-		this.labelState(-1, this.currentStateLabels);
+		this.addState(-1);
+		this.states = 1;
 	}
 
 	/**
-	 * Whenever JPF reaches a new state, adds the labels of that state.
+	 * Whenever JPF reaches a new state, adds the labels of that state and takes a
+	 * checkpoint if one is due. Whenever JPF traverses a transition, adds the
+	 * transition.
 	 * 
 	 * @param search JPF's search
 	 */
 	@Override
 	public void stateAdvanced(Search search) {
+		int stateID = search.getStateId(); // current state
 		if (search.isNewState()) {
-			int stateID = search.getStateId(); // current state
 			this.getStateLabels(search);
-			this.labelState(stateID, this.currentStateLabels);
-			this.states = Math.max(stateID, this.states);
+			this.addState(stateID);
+			this.states++;
+			if (this.checkpoints.stateAdded()) {
+				this.checkpoint();
+			}
 		}
+		this.addTransition(this.current, stateID);
+		this.current = stateID;
+	}
+
+	/**
+	 * Whenever JPF backtracks, updates the current state.
+	 * 
+	 * @param search JPF's search.
+	 */
+	@Override
+	public void stateBacktracked(Search search) {
+		this.current = search.getStateId();
+	}
+
+	/**
+	 * Whenever JPF restores an earlier visited state, updates the current state.
+	 * 
+	 * @param search JPF's search.
+	 */
+	@Override
+	public void stateRestored(Search search) {
+		this.current = search.getStateId();
 	}
 
 	/**
@@ -107,7 +268,12 @@ public abstract class StateLabel extends ListenerAdapter implements SearchListen
 	 */
 	@Override
 	public void searchConstraintHit(Search search) {
-		this.writeStateLabels(search, search.getVM().getSUTName() + "_" + search.getSearchConstraint());
+		if (this.writer != null) {
+			this.writer.drain();
+		}
+		synchronized (this) {
+			this.writeStateLabels(search, LabelSink.getOutputName(search) + "_" + search.getSearchConstraint());
+		}
 	}
 
 	/**
@@ -117,29 +283,283 @@ public abstract class StateLabel extends ListenerAdapter implements SearchListen
 	 */
 	@Override
 	public void searchFinished(Search search) {
-		this.writeStateLabels(search, search.getVM().getSUTName());
+		if (this.writer != null) {
+			this.writer.stop();
+		}
+		synchronized (this) {
+			if (this.finished) {
+				return; // JPF is being terminated and the labelling has been written
+			}
+			this.finished = true;
+			this.writeStateLabels(search, LabelSink.getOutputName(search));
+			for (LabelSink sink : this.sinks) {
+				sink.searchFinished(search);
+			}
+			if (this.profiles != null) {
+				this.writeProfiles(LabelSink.getOutputName(search) + "_profile.csv");
+			}
+		}
+		if (this.shutdownHook != null) {
+			this.checkpoints.delete();
+			try {
+				Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+			} catch (IllegalStateException e) {
+				// JPF is being terminated and the hook is running already
+			}
+		}
+	}
+
+	/**
+	 * Reports the profiles of the label makers, if they are profiled.
+	 * 
+	 * @param publisher JPF's publisher
+	 */
+	@Override
+	public void publishFinished(Publisher publisher) {
+		if (this.profiles != null) {
+			publisher.publishTopicStart("label makers");
+			for (ProfiledLabelMaker profile : this.profiles) {
+				profile.print(publisher.getOut());
+			}
+		}
+	}
+
+	/**
+	 * Writes the profiles of the label makers as comma separated values, a line
+	 * for each label maker.
+	 * 
+	 * @param file the name of the file
+	 */
+	private void writeProfiles(String file) {
+		try {
+			ChannelWriter writer = new ChannelWriter(new FileOutputStream(file).getChannel());
+			try {
+				String newline = System.lineSeparator();
+				ProfiledLabelMaker.writeHeader(writer);
+				writer.write(newline);
+				for (ProfiledLabelMaker profile : this.profiles) {
+					profile.write(writer);
+					writer.write(newline);
+				}
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			System.out.println("Listener could not write to the output file " + file);
+		}
+	}
+
+	/**
+	 * Writes the labelling formatted so far to disk: each of the sinks writes its
+	 * output and the labels registered since the previous checkpoint are appended
+	 * to the file of labels.
+	 */
+	private synchronized void checkpoint() {
+		for (LabelSink sink : this.sinks) {
+			try {
+				sink.flush();
+			} catch (IOException e) {
+				System.out.println("Listener could not write a checkpoint of the labelling");
+			}
+		}
+		this.checkpoints.write(this.registry);
+	}
+
+	/**
+	 * When JPF is terminated before the search finishes, writes the labelling of
+	 * the states formatted so far. Invoked by the shutdown hook, while the search
+	 * thread may still be running. The search is asked to terminate and the
+	 * states labelled afterwards are not part of the labelling.
+	 * 
+	 * @param search JPF's search
+	 * @param name   the name of the system under test
+	 */
+	private void terminated(Search search, String name) {
+		search.terminate();
+		if (this.writer != null) {
+			this.writer.close();
+		}
+		synchronized (this) {
+			if (!this.finished) {
+				this.finished = true;
+				this.checkpoint();
+				this.writeStateLabels(search, name);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of states labelled so far.
+	 * 
+	 * @return the number of states labelled so far
+	 */
+	public int getNumberOfStates() {
+		return this.states;
+	}
+
+	/**
+	 * Returns the registry of all labels encountered so far, which resolves the
+	 * index of a label.
+	 * 
+	 * @return the registry of all labels encountered so far
+	 */
+	protected LabelRegistry getLabelRegistry() {
+		return this.registry;
+	}
+
+	/**
+	 * Returns the number of labels encountered so far.
+	 * 
+	 * @return the number of labels encountered so far
+	 */
+	public int getNumberOfLabels() {
+		return this.registry.size();
+	}
+
+	/**
+	 * Formats the labelling of the given state with the given set of labels, by
+	 * passing them to the sinks. The set is reused for subsequent states and,
+	 * hence, should not be retained.
+	 * 
+	 * @param id     the id of the state
+	 * @param labels the set of indices of the labels
+	 */
+	public void labelState(int id, LabelSet labels) {
+		for (LabelSink sink : this.sinks) {
+			sink.labelState(id, this.currentSet, labels);
+		}
+		if (this.legacy) {
+			Set<Integer> indices = new TreeSet<Integer>();
+			for (int i = labels.next(0); i >= 0; i = labels.next(i + 1)) {
+				indices.add(i);
+			}
+			this.labelState(id, indices);
+		}
 	}
 
 	/**
-	 * Formats the labelling of the given state with the given set of labels.
+	 * Formats the labelling of the given state with the given set of labels. If
+	 * a subclass overrides this method, it is invoked by labelState(int,
+	 * LabelSet) with a copy of the labels.
 	 * 
 	 * @param id     the id of the state
 	 * @param labels the set of indices of the labels
+	 * @deprecated Override labelState(int, LabelSet), which does not copy the
+	 *             labels of each state, instead.
 	 */
-	public abstract void labelState(int id, Set<Integer> labels);
+	@Deprecated
+	public void labelState(int id, Set<Integer> labels) {
+	}
 
 	/**
-	 * Writes the current labelling of the state space to a file.
+	 * Formats the labelling of the given state with the given set of labels,
+	 * whose id in labelSets is given. By default, records the id of the set, to
+	 * be passed to the sinks, and invokes labelState(int, LabelSet).
+	 * 
+	 * @param id     the id of the state
+	 * @param set    the id of the set of labels in labelSets
+	 * @param labels the set of indices of the labels
+	 */
+	public void labelState(int id, int set, LabelSet labels) {
+		this.currentSet = set;
+		this.labelState(id, labels);
+	}
+
+	/**
+	 * Materializes the given snapshot of the labels of the given state into the
+	 * given set, which holds the labels of the state added by their index,
+	 * interns the set and passes it to labelState. Invoked on the thread
+	 * formatting the labelling.
+	 * 
+	 * @param id       the id of the state
+	 * @param snapshot the snapshot of the labels of the state
+	 * @param labels   the labels of the state added by their index, reused for every state
+	 */
+	public void labelSnapshot(int id, LabelSnapshot snapshot, LabelSet labels) {
+		snapshot.materialize(labels);
+		int set = this.labelSets.intern(labels);
+		if (this.store != null) {
+			synchronized (this) {
+				this.store.put(id, set);
+			}
+		}
+		this.labelState(id, set, labels);
+	}
+
+	/**
+	 * Formats the given transition, by passing it to the sinks.
+	 * 
+	 * @param source the id of the source state
+	 * @param target the id of the target state
+	 */
+	public void labelTransition(int source, int target) {
+		for (LabelSink sink : this.sinks) {
+			sink.labelTransition(source, target);
+		}
+	}
+
+	/**
+	 * Returns the indices of the labels of the given state, in increasing order,
+	 * provided that the property label.store is set to true. The returned array
+	 * should not be modified. If the property label.async.format is set to true,
+	 * the labels of the states handed over to the thread formatting the labelling
+	 * are stored by that thread; the labels of a state are then available once
+	 * the state has been formatted, which is awaited unless this method is
+	 * invoked while formatting, for example from labelState.
+	 * 
+	 * @param state the id of a state
+	 * @return the indices of the labels of the state, or null if the state has not
+	 *         been labelled or the labelling of the states is not kept
+	 */
+	public int[] getLabels(int state) {
+		if (this.store == null) {
+			return null;
+		}
+		if (this.snapshots && !this.writer.isWriterThread() && !Thread.holdsLock(this)) {
+			this.writer.drain(); // the states are stored by the writer
+		}
+		synchronized (this) {
+			int set = this.store.get(state);
+			return (set < 0 ? null : this.labelSets.get(set));
+		}
+	}
+
+	/**
+	 * Passes the given transition to labelTransition, on the thread formatting the
+	 * labelling.
+	 * 
+	 * @param source the id of the source state
+	 * @param target the id of the target state
+	 */
+	private void addTransition(int source, int target) {
+		if (this.writer != null) {
+			this.writer.addTransition(source, target);
+		} else {
+			synchronized (this) {
+				this.labelTransition(source, target);
+			}
+		}
+	}
+
+	/**
+	 * Writes the current labelling of the state space, by letting each of the
+	 * sinks write it to a file.
 	 * 
 	 * @param search JPF's search
 	 * @param name   the name of the system under test, appended with the search
 	 *               constraint if one was hit.
 	 */
-	public abstract void writeStateLabels(Search search, String name);
+	public void writeStateLabels(Search search, String name) {
+		for (LabelSink sink : this.sinks) {
+			sink.writeStateLabels(search, name, this.registry);
+		}
+	}
 
 	/**
 	 * Whenever an instruction is executed, breaks the transition if any of the
-	 * registered label makers signals to do so.
+	 * registered label makers signals to do so. Only the label makers interested
+	 * in the executed or the next instruction are consulted, in the order in which
+	 * they were registered.
 	 * 
 	 * @param vm                  JPF's virtual machine
 	 * @param currentThread       the current thread
@@ -149,14 +569,28 @@ public abstract class StateLabel extends ListenerAdapter implements SearchListen
 	@Override
 	public void instructionExecuted(VM vm, ThreadInfo currentThread, Instruction nextInstruction,
 			Instruction executedInstruction) {
+		this.currentStateLabels.clear(); // labels for the new state
+		int[] after = this.getInterestedLabelMakers(executedInstruction);
+		int[] before = this.getInterestedLabelMakers(nextInstruction);
+		if (after.length == 0 && before.length == 0) {
+			return;
+		}
+
 		boolean b = false; // should the transition be broken?
-		this.currentStateLabels = new TreeSet<Integer>(); // labels for the new state
-		for (StateLabelMaker labelMaker : this.labelMakers) {
-			if (labelMaker instanceof TransitionLabelMaker) {
-				Set<Label> labels = ((TransitionLabelMaker) labelMaker).breakAfter(executedInstruction);
-				b |= addLabelIndices(labels);
-				labels = ((TransitionLabelMaker) labelMaker).breakBefore(nextInstruction);
-				b |= addLabelIndices(labels);
+		int i = 0;
+		int j = 0;
+		while (i < after.length || j < before.length) {
+			int a = (i < after.length ? after[i] : Integer.MAX_VALUE);
+			int c = (j < before.length ? before[j] : Integer.MAX_VALUE);
+			if (a <= c) {
+				b |= this.transitionLabelMakers[a].breakAfter(currentThread, executedInstruction,
+						this.currentStateLabels);
+				i++;
+			}
+			if (c <= a) {
+				b |= this.transitionLabelMakers[c].breakBefore(currentThread, nextInstruction,
+						this.currentStateLabels);
+				j++;
 			}
 		}
 		if (b) {
@@ -166,7 +600,8 @@ public abstract class StateLabel extends ListenerAdapter implements SearchListen
 
 	/**
 	 * Whenever VM is about to execute the next instruction, allows the registered
-	 * label makers to obtain any required information.
+	 * label makers interested in that instruction to obtain any required
+	 * information.
 	 * 
 	 * @param vm                   JPF's virtual machine
 	 * @param currentThread        the current thread
@@ -174,68 +609,144 @@ public abstract class StateLabel extends ListenerAdapter implements SearchListen
 	 */
 	@Override
 	public void executeInstruction(VM vm, ThreadInfo currentThread, Instruction instructionToExecute) {
-		for (StateLabelMaker lm : labelMakers) {
-			if (lm instanceof TransitionLabelMaker) {
-				TransitionLabelMaker tlm = (TransitionLabelMaker) lm;
-				tlm.beforeInstruction(instructionToExecute);
+		for (int i : this.getInterestedLabelMakers(instructionToExecute)) {
+			this.transitionLabelMakers[i].beforeInstruction(currentThread, instructionToExecute);
+		}
+	}
+
+	/**
+	 * Whenever a class is loaded, allows the registered label makers to resolve
+	 * any information they require about that class.
+	 * 
+	 * @param vm          JPF's virtual machine
+	 * @param loadedClass the class that has been loaded
+	 */
+	@Override
+	public void classLoaded(VM vm, ClassInfo loadedClass) {
+		for (StateLabelMaker labelMaker : this.labelMakers) {
+			labelMaker.classLoaded(loadedClass);
+		}
+	}
+
+	/**
+	 * Returns the indices of the transition label makers interested in the given
+	 * instruction, in the order in which they were registered. The indices are
+	 * determined the first time an instruction with a particular opcode is
+	 * encountered and are looked up in the dispatch table afterwards.
+	 * 
+	 * @param instruction an instruction
+	 * @return the indices of the interested transition label makers
+	 */
+	private int[] getInterestedLabelMakers(Instruction instruction) {
+		if (instruction == null) {
+			return NONE;
+		}
+		int opcode = instruction.getByteCode();
+		if (opcode < 0) {
+			return this.findInterestedLabelMakers(instruction);
+		}
+		if (opcode >= this.dispatch.length) {
+			this.dispatch = Arrays.copyOf(this.dispatch, Math.max(opcode + 1, 2 * this.dispatch.length));
+		}
+		int[] interested = this.dispatch[opcode];
+		if (interested == null) {
+			interested = this.findInterestedLabelMakers(instruction);
+			this.dispatch[opcode] = interested;
+		}
+		return interested;
+	}
+
+	/**
+	 * Determines the indices of the transition label makers interested in the
+	 * given instruction.
+	 * 
+	 * @param instruction an instruction
+	 * @return the indices of the interested transition label makers
+	 */
+	private int[] findInterestedLabelMakers(Instruction instruction) {
+		int n = this.transitionLabelMakers.length;
+		int[] interested = new int[n];
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			Class<?>[] types = this.instructionTypes[i];
+			if (types == null) {
+				interested[count++] = i;
+			} else {
+				for (Class<?> type : types) {
+					if (type.isInstance(instruction)) {
+						interested[count++] = i;
+						break;
+					}
+				}
 			}
 		}
+		return (count == 0 ? NONE : Arrays.copyOf(interested, count));
 	}
 
 	/**
-	 * Returns the colour palette/scheme for the label with given index.
+	 * Returns the colour palette/scheme for the label with given index. The dot
+	 * files of StateLabelDot and StateLabelOutput, and the legend, colour the
+	 * labels by means of this method, so that a subclass may override it to
+	 * change the colours. By default, the colours computed by DotSink are used.
 	 * 
 	 * @param i the index of the label.
 	 * @return the hexadecimal representation of the colour associated with that
 	 *         label.
 	 */
 	protected String getColour(int i) {
-		if (i < 12) {
-			// use a colour scheme for the first 12 colours
-			return Integer.toString(i + 1);
-		} else {
-			i -= 12;
-			// Reference: https://krazydad.com/tutorials/makecolors.php
-			String r = Integer.toHexString((int) (Math.sin(2.4 * i + 0) * 127 + 128));
-			if (r.length() == 1)
-				r = "0" + r;
-			String g = Integer.toHexString((int) (Math.sin(2.4 * i + 2) * 127 + 128));
-			if (g.length() == 1)
-				g = "0" + g;
-			String b = Integer.toHexString((int) (Math.sin(2.4 * i + 4) * 127 + 128));
-			if (b.length() == 1)
-				b = "0" + b;
-			return "#" + r + g + b;
-		}
+		return DotSink.computeColour(i);
+	}
+
+	/**
+	 * Produces a dot file with a legend mapping each colour to the description of
+	 * the label it represents, as DotSink does when the search finishes. The name
+	 * of the dot file is &lt;name of system under test&gt;_legend.dot.
+	 * 
+	 * @param search JPF's search
+	 */
+	protected void generateLegendFile(Search search) {
+		DotSink.writeLegendFile(LabelSink.getOutputName(search) + "_legend.dot", this.registry, this::getColour);
 	}
 
 	/**
 	 * Produces a dot file with a legend mapping each colour to the description of
-	 * the label it represents. The name of the dot file is &lt;name of system under
-	 * test&gt;_legend.dot.
+	 * the label it represents, for the search of JPF's current VM.
+	 * 
+	 * @deprecated Use generateLegendFile(Search), which does not rely on
+	 *             VM.getVM(), instead.
 	 */
+	@Deprecated
 	protected void generateLegendFile() {
-		String name = VM.getVM().getSUTName() + "_legend.dot";
-		try {
-			PrintWriter writer = new PrintWriter(name);
-			writer.println("digraph legend {");
-			writer.println("node [colorscheme=\"set312\" shape=plaintext]");
-			writer.println("{ legend_node [");
-			writer.println("label=<");
-			writer.println("<table border=\"0\" cellborder=\"0\" cellspacing=\"0\">");
-			writer.println("<tr><td colspan=\"2\">Legend</td></tr>");
-			int n = this.allLabels.size();
-			for (int i = 0; i < n; i++) {
-				writer.println("<tr><td width=\"35\" bgcolor=\"" + this.getColour(i) + "\"></td><td align=\"left\">"
-						+ this.allLabels.get(i).getDescription() + "</td></tr>");
+		this.generateLegendFile(VM.getVM().getSearch());
+	}
+
+	/**
+	 * Interns the labels of the current state and passes them to labelState, on
+	 * the thread formatting the labelling. If the labels are materialized by that
+	 * thread, only the snapshot of the labels is handed over.
+	 * 
+	 * @param id the id of the current state
+	 */
+	private void addState(int id) {
+		if (this.snapshots) {
+			this.writer.addSnapshot(id, this.currentStateLabels);
+			return;
+		}
+		int set = this.labelSets.intern(this.currentStateLabels);
+		if (this.writer != null) {
+			if (this.store != null) {
+				synchronized (this) { // released before handing over, since the writer locks this listener
+					this.store.put(id, set);
+				}
+			}
+			this.writer.addState(id, set, this.currentStateLabels);
+		} else {
+			synchronized (this) {
+				if (this.store != null) {
+					this.store.put(id, set);
+				}
+				this.labelState(id, set, this.currentStateLabels);
 			}
-			writer.println("</table>>");
-			writer.println("];}");
-			writer.println("}");
-			writer.close();
-		} catch (FileNotFoundException e) {
-			System.out.println("Listener could not write to the legend file " + name);
-			e.printStackTrace();
 		}
 	}
 
@@ -247,27 +758,7 @@ public abstract class StateLabel extends ListenerAdapter implements SearchListen
 	 */
 	private void getStateLabels(Search search) {
 		for (StateLabelMaker labelMaker : this.labelMakers) {
-			addLabelIndices(labelMaker.getStateLabels(search));
-		}
-	}
-
-	/**
-	 * Takes the given set of labels and adds their indices to the set of labels for
-	 * the current state.
-	 * 
-	 * @param labels the set of labels
-	 * @return false if the given set was null, true otherwise
-	 */
-	private boolean addLabelIndices(Set<Label> labels) {
-		if (labels != null) {
-			for (Label label : labels) {
-				if (!this.allLabels.contains(label)) {
-					this.allLabels.add(label);
-				}
-				this.currentStateLabels.add(this.allLabels.indexOf(label));
-			}
-			return true;
+			labelMaker.getStateLabels(search, this.currentStateLabels);
 		}
-		return false;
 	}
 }
@@ -16,10 +16,21 @@
  */
 package label;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.util.FieldSpec;
+import gov.nasa.jpf.util.MethodSpec;
+import gov.nasa.jpf.util.VarSpec;
+import gov.nasa.jpf.vm.ClassInfo;
+import gov.nasa.jpf.vm.FieldInfo;
+import gov.nasa.jpf.vm.MethodInfo;
 
 /**
  * An interface to define labeling functions to be used with the StateLabelText
@@ -28,6 +39,18 @@ import gov.nasa.jpf.search.Search;
  * @author Syyeda Zainab Fatmi
  */
 public abstract class StateLabelMaker {
+	private String[] signatures; // the signatures of the specifications of this label maker
+	private boolean[] matched; // whether each specification has been matched
+	private Map<Object[], Integer> offsets; // index of the first signature of each array of specifications
+
+	/**
+	 * Initializes this label maker, without any signatures.
+	 */
+	public StateLabelMaker() {
+		this.signatures = new String[0];
+		this.matched = new boolean[0];
+		this.offsets = new IdentityHashMap<Object[], Integer>();
+	}
 
 	/**
 	 * Static method to instantiate the class. The getInstance() method must be
@@ -52,6 +75,45 @@ public abstract class StateLabelMaker {
 		return null;
 	}
 
+	/**
+	 * Whenever the search advances to the next state, adds the labels associated
+	 * with the new state to the given set. Label makers may override this method
+	 * to avoid creating a set of labels for every state. By default, the labels
+	 * returned by getStateLabels(Search) are added.
+	 * 
+	 * @param search JPF's search
+	 * @param labels the set of labels for the current state
+	 */
+	public void getStateLabels(Search search, LabelSet labels) {
+		labels.addAll(this.getStateLabels(search));
+	}
+
+	/**
+	 * Returns the label for the given specification and value, which this label
+	 * maker added to a set of labels by means of add(StateLabelMaker,
+	 * MatchCache.Match, int). If the property label.async.format is set to true,
+	 * this method is invoked on the thread formatting the labelling, while the
+	 * search continues. Hence, it should only depend on the given specification
+	 * and value and on information which does not change during the search. By
+	 * default, no label is returned.
+	 * 
+	 * @param spec  the result of matching a specification
+	 * @param value a value
+	 * @return the label, or null if there is none
+	 */
+	public Label getLabel(MatchCache.Match spec, int value) {
+		return null;
+	}
+
+	/**
+	 * Whenever a class is loaded, allows this label maker to resolve any
+	 * information it requires about that class.
+	 * 
+	 * @param loadedClass the class that has been loaded
+	 */
+	public void classLoaded(ClassInfo loadedClass) {
+	}
+
 	/**
 	 * Finds the value of the property with the specified key. The value is then
 	 * split with the delimiter ';' and an array is returned.
@@ -76,4 +138,186 @@ public abstract class StateLabelMaker {
 			return new String[0];
 		}
 	}
+
+	/**
+	 * Parses the given method signatures into method specifications. The
+	 * signatures are parsed only once, when the label maker is created, rather
+	 * than every time a method is matched.
+	 * 
+	 * @param signatures the method signatures
+	 * @return the method specifications, in the same order as the signatures; the
+	 *         specification of an invalid signature is null
+	 */
+	protected MethodSpec[] createMethodSpecs(String[] signatures) {
+		MethodSpec[] specs = new MethodSpec[signatures.length];
+		this.offsets.put(specs, this.addSignatures(signatures));
+		for (int i = 0; i < signatures.length; i++) {
+			specs[i] = MethodSpec.createMethodSpec(signatures[i]);
+			if (specs[i] == null) {
+				System.out.println("Invalid method signature " + signatures[i]);
+			}
+		}
+		return specs;
+	}
+
+	/**
+	 * Parses the given field signatures into field specifications.
+	 * 
+	 * @param signatures the field signatures
+	 * @return the field specifications, in the same order as the signatures; the
+	 *         specification of an invalid signature is null
+	 */
+	protected FieldSpec[] createFieldSpecs(String[] signatures) {
+		FieldSpec[] specs = new FieldSpec[signatures.length];
+		this.offsets.put(specs, this.addSignatures(signatures));
+		for (int i = 0; i < signatures.length; i++) {
+			specs[i] = FieldSpec.createFieldSpec(signatures[i]);
+			if (specs[i] == null) {
+				System.out.println("Invalid field signature " + signatures[i]);
+			}
+		}
+		return specs;
+	}
+
+	/**
+	 * Parses the given variable signatures, of the form methodSignature:variableName,
+	 * into variable specifications.
+	 * 
+	 * @param signatures the variable signatures
+	 * @return the variable specifications, in the same order as the signatures;
+	 *         the specification of an invalid signature is null
+	 */
+	protected VarSpec[] createVarSpecs(String[] signatures) {
+		VarSpec[] specs = new VarSpec[signatures.length];
+		this.offsets.put(specs, this.addSignatures(signatures));
+		for (int i = 0; i < signatures.length; i++) {
+			specs[i] = VarSpec.createVarSpec(signatures[i]);
+			if (specs[i] == null) {
+				System.out.println("Invalid variable signature " + signatures[i]);
+			}
+		}
+		return specs;
+	}
+
+	/**
+	 * Determines which of the given method specifications the given method
+	 * matches. The result, including the mangled signature of the method, is
+	 * cached so that the specifications are matched only once per method.
+	 * 
+	 * @param method the method
+	 * @param specs  the method specifications
+	 * @param cache  the cache of results
+	 * @return the result of matching the method
+	 */
+	protected MatchCache.Match matchMethod(MethodInfo method, MethodSpec[] specs, MatchCache<MethodInfo> cache) {
+		MatchCache.Match match = cache.get(method);
+		if (match == null) {
+			match = MatchCache.NO_MATCH;
+			for (int i = 0; i < specs.length; i++) {
+				if (specs[i] != null && specs[i].matches(method)) {
+					match = new MatchCache.Match(i, method.getClassName().replaceAll("[$.]", "_") + "_"
+							+ method.getJNIName());
+					this.setMatched(specs, i);
+					break;
+				}
+			}
+			cache.put(method, match);
+		}
+		return match;
+	}
+
+	/**
+	 * Determines which of the given field specifications the given field matches.
+	 * Since several specifications may match the same field, all of them are
+	 * determined. The result is cached so that the specifications are matched
+	 * only once per field.
+	 * 
+	 * @param field the field
+	 * @param specs the field specifications
+	 * @param cache the cache of results
+	 * @return the result of matching the field
+	 */
+	protected MatchCache.Match matchField(FieldInfo field, FieldSpec[] specs, MatchCache<FieldInfo> cache) {
+		MatchCache.Match match = cache.get(field);
+		if (match == null) {
+			int[] indices = new int[specs.length];
+			int n = 0;
+			for (int i = 0; i < specs.length; i++) {
+				if (specs[i] != null && specs[i].matches(field)) {
+					indices[n++] = i;
+					this.setMatched(specs, i);
+				}
+			}
+			match = (n == 0 ? MatchCache.NO_MATCH : new MatchCache.Match(Arrays.copyOf(indices, n), null));
+			cache.put(field, match);
+		}
+		return match;
+	}
+
+	/**
+	 * Adds the given signatures to those of the specifications of this label
+	 * maker, so that the specifications which are never matched can be reported.
+	 * The signatures are added by createMethodSpecs, createFieldSpecs and
+	 * createVarSpecs, so that a label maker with several kinds of specifications
+	 * reports the signatures of all of them. The index of a specification is its
+	 * index among the added signatures, which follow those added before.
+	 * 
+	 * @param signatures the signatures of the specifications
+	 * @return the index of the first of the given signatures
+	 */
+	protected int addSignatures(String[] signatures) {
+		int offset = this.signatures.length;
+		this.signatures = Arrays.copyOf(this.signatures, offset + signatures.length);
+		System.arraycopy(signatures, 0, this.signatures, offset, signatures.length);
+		this.matched = Arrays.copyOf(this.matched, this.signatures.length);
+		return offset;
+	}
+
+	/**
+	 * Records that the specification with the given index has been matched. The
+	 * specifications are recorded by matchMethod and matchField.
+	 * 
+	 * @param i the index of the specification among the added signatures
+	 */
+	protected void setMatched(int i) {
+		this.matched[i] = true;
+	}
+
+	/**
+	 * Records that the specification with the given index in the given array,
+	 * created by createMethodSpecs, createFieldSpecs or createVarSpecs, has been
+	 * matched.
+	 * 
+	 * @param specs the specifications
+	 * @param i     the index of the specification in the array
+	 */
+	protected void setMatched(Object[] specs, int i) {
+		this.setMatched(this.offsets.getOrDefault(specs, 0) + i);
+	}
+
+	/**
+	 * Tests whether the specification with the given index has been matched.
+	 * 
+	 * @param i the index of the specification among the added signatures
+	 * @return true if the specification has been matched, false otherwise
+	 */
+	protected boolean isMatched(int i) {
+		return this.matched[i];
+	}
+
+	/**
+	 * Returns the signatures of the specifications of this label maker which have
+	 * not been matched so far.
+	 * 
+	 * @return the signatures of the specifications which have not been matched
+	 */
+	public String[] getUnmatchedSignatures() {
+		List<String> unmatched = new ArrayList<String>();
+		for (int i = 0; i < this.signatures.length; i++) {
+			if (!this.isMatched(i)) {
+				unmatched.add(this.signatures[i]);
+			}
+		}
+		return unmatched.toArray(new String[unmatched.size()]);
+	}
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import gov.nasa.jpf.Config;
+
+/**
+ * This listener determines the labels of each state once and writes them in
+ * each of the output formats specified by the property label.output. The
+ * formats text, dot, binary, prism, sets, shards and index correspond to the
+ * output of the listeners StateLabelText, StateLabelDot, StateLabelBinary,
+ * StateLabelPrism, StateLabelSets, StateLabelShards and StateLabelIndex. Any
+ * other format is the name of a class implementing LabelSink. If the property
+ * is not set, both the text and the dot file are written. The suffix .gz, as in
+ * text.gz, compresses the text or dot file in the gzip format.
+ * 
+ * For example, the following configuration produces the same files as
+ * registering both StateLabelText and StateLabelDot, but labels each state
+ * only once.
+ * 
+ * <pre>
+ * listener = label.StateLabelOutput
+ * label.output = text; dot
+ * </pre>
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class StateLabelOutput extends StateLabel {
+
+	/**
+	 * Initializes this listener.
+	 * 
+	 * @param configuration JPF's configuration
+	 */
+	public StateLabelOutput(Config configuration) {
+		super(configuration);
+		String[] outputs = configuration.getCompactTrimmedStringArray("label.output");
+		if (outputs.length == 0) {
+			outputs = new String[] { "text", "dot" };
+		}
+		for (String output : outputs) {
+			if (output.equals("text")) {
+				this.addSink(new TextSink(configuration));
+			} else if (output.equals("text.gz")) {
+				this.addSink(new TextSink(configuration, true));
+			} else if (output.equals("dot")) {
+				this.addSink(new DotSink(configuration, this::getColour));
+			} else if (output.equals("dot.gz")) {
+				this.addSink(new DotSink(configuration, true, this::getColour));
+			} else if (output.equals("binary")) {
+				this.addSink(new BinarySink(configuration));
+			} else if (output.equals("prism")) {
+				this.addSink(new PrismSink(configuration));
+			} else if (output.equals("sets")) {
+				this.addSink(new LabelSetSink(configuration));
+			} else if (output.equals("shards")) {
+				this.addSink(new ShardSink(configuration));
+			} else if (output.equals("index")) {
+				this.addSink(new LabelIndexSink(configuration));
+			} else {
+				try {
+					Class<?> clazz = Class.forName(output);
+					this.addSink((LabelSink) clazz.getConstructor(Config.class).newInstance(configuration));
+				} catch (Exception e) {
+					System.out.println("Class " + output + " could not be instantiated");
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+}
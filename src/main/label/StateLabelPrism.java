@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import gov.nasa.jpf.Config;
+
+/**
+ * This listener outputs the state space and its labels to files, named &lt;name
+ * of system under test&gt;_prism.tra, _prism.lab and _prism.sta, in the
+ * explicit format of PRISM described in PrismSink.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class StateLabelPrism extends StateLabel {
+
+	/**
+	 * Initializes this listener.
+	 * 
+	 * @param configuration JPF's configuration
+	 */
+	public StateLabelPrism(Config configuration) {
+		super(configuration);
+		this.addSink(new PrismSink(configuration));
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * A store mapping the id of each labelled state to the id of its set of labels
+ * in a LabelSetTable. The ids are kept outside the Java heap, in direct buffers
+ * of fixed size, called pages. Since the ids of the states are consecutive, the
+ * id of a state determines its page and the position within that page, so that
+ * both storing and retrieving take constant time. The store grows by adding
+ * pages; the pages are never copied.
+ * 
+ * The initial state, with id -1, is supported.
+ * 
+ * A store is not thread-safe. StateLabel stores and retrieves the ids while
+ * holding its own lock, since they may be stored by the thread formatting the
+ * labelling and retrieved by another thread.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class StateLabelStore {
+	private static final int PAGE_SHIFT = 16; // the logarithm of the number of states of a page
+	private static final int PAGE_SIZE = 1 << PAGE_SHIFT; // number of states of a page
+	private static final int PAGE_MASK = PAGE_SIZE - 1; // the position within a page of a state
+	private static final int NONE = -1; // the id of the set of labels of a state which has not been stored
+
+	private IntBuffer[] pages; // the pages, each containing the id of the set plus one of its states, null if absent
+	private int size; // the largest id of a stored state plus two
+
+	/**
+	 * Creates an empty store.
+	 */
+	public StateLabelStore() {
+		this.pages = new IntBuffer[16];
+		this.size = 0;
+	}
+
+	/**
+	 * Stores the id of the set of labels of the given state.
+	 * 
+	 * @param state the id of a state, at least -1
+	 * @param set   the id of the set of labels of the state
+	 */
+	public void put(int state, int set) {
+		int index = state + 1;
+		int page = index >>> PAGE_SHIFT;
+		if (page >= this.pages.length) {
+			this.pages = Arrays.copyOf(this.pages, Math.max(page + 1, 2 * this.pages.length));
+		}
+		if (this.pages[page] == null) {
+			// a direct buffer is initially filled with zeros, that is, NONE + 1
+			this.pages[page] = ByteBuffer.allocateDirect(4 * PAGE_SIZE).order(ByteOrder.nativeOrder()).asIntBuffer();
+		}
+		this.pages[page].put(index & PAGE_MASK, set + 1);
+		this.size = Math.max(this.size, index + 1);
+	}
+
+	/**
+	 * Returns the id of the set of labels of the given state.
+	 * 
+	 * @param state the id of a state
+	 * @return the id of the set of labels of the state, or -1 if it has not been
+	 *         stored
+	 */
+	public int get(int state) {
+		int index = state + 1;
+		if (index < 0 || index >= this.size) {
+			return NONE;
+		}
+		IntBuffer page = this.pages[index >>> PAGE_SHIFT];
+		return (page == null ? NONE : page.get(index & PAGE_MASK) - 1);
+	}
+
+	/**
+	 * Tests whether the set of labels of the given state has been stored.
+	 * 
+	 * @param state the id of a state
+	 * @return true if the state has been stored, false otherwise
+	 */
+	public boolean contains(int state) {
+		return this.get(state) != NONE;
+	}
+
+	/**
+	 * Returns the largest id of a stored state plus two, that is, the number of
+	 * states if the states -1, 0, 1, ... have been stored.
+	 * 
+	 * @return the number of states
+	 */
+	public int size() {
+		return this.size;
+	}
+}
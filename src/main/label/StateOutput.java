@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import gov.nasa.jpf.Config;
+
+/**
+ * The formatted labelling of the states, as it is produced during the search.
+ * It is either kept in memory or streamed to a file, so that it does not have
+ * to be kept in memory. Once the search has finished, it is moved to the output
+ * file, after anything that can only be written at the end of the search, such
+ * as the enumeration of the labels.
+ * 
+ * A region at the start of the file to which the output is streamed can be
+ * reserved for that header. If the header fits in the region, it is written
+ * there and the file is renamed to the output file, so that the output is
+ * written only once. Since the header is only known at the end of the search,
+ * it is padded to the size of the region: a textual header by spaces before
+ * the end of its first line, and a compressed header by a comment in the
+ * header of its gzip member. Until then, the region contains a line of spaces,
+ * or an empty gzip member, so that the file remains readable. If the header
+ * does not fit, or the output is kept in memory, the header and the output are
+ * written to the output file instead.
+ * 
+ * The output can be compressed in the gzip format, as a sequence of gzip
+ * members.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class StateOutput {
+	/**
+	 * The default size of the region reserved for the enumeration of the labels,
+	 * in bytes.
+	 */
+	public static final int DEFAULT_RESERVE = 65536;
+
+	private File file; // the file to which the output is streamed, null if it is kept in memory or has been moved
+	private FileChannel channel; // the channel of the file, null if the output is kept in memory
+	private ByteArrayOutputStream memory; // the output kept in memory, null if it is streamed
+	private ChannelWriter writer; // the writer of the output
+	private boolean compress; // whether the output is compressed
+	private int reserve; // size of the region reserved for the header at the start of the file, in bytes
+	private IOException failure; // the first failure to write the output, null if none
+
+	/**
+	 * Creates an uncompressed output which is kept in memory.
+	 */
+	public StateOutput() {
+		this(false);
+	}
+
+	/**
+	 * Creates an output which is kept in memory.
+	 * 
+	 * @param compress whether the output is compressed
+	 */
+	public StateOutput(boolean compress) {
+		this.file = null;
+		this.channel = null;
+		this.memory = new ByteArrayOutputStream();
+		this.writer = createWriter(Channels.newChannel(this.memory), compress);
+		this.compress = compress;
+		this.reserve = 0;
+		this.failure = null;
+	}
+
+	/**
+	 * Creates an uncompressed output which is streamed to the given file.
+	 * 
+	 * @param file the file to stream the output to
+	 * @throws FileNotFoundException if the file cannot be written to
+	 */
+	public StateOutput(File file) throws FileNotFoundException {
+		this(file, false);
+	}
+
+	/**
+	 * Creates an output which is streamed to the given file.
+	 * 
+	 * @param file     the file to stream the output to
+	 * @param compress whether the output is compressed
+	 * @throws FileNotFoundException if the file cannot be written to
+	 */
+	public StateOutput(File file, boolean compress) throws FileNotFoundException {
+		this(file, compress, 0);
+	}
+
+	/**
+	 * Creates an output which is streamed to the given file, after a region of the
+	 * given size reserved for the header.
+	 * 
+	 * @param file     the file to stream the output to
+	 * @param compress whether the output is compressed
+	 * @param reserve  the size of the region reserved for the header, in bytes
+	 * @throws FileNotFoundException if the file cannot be written to
+	 */
+	public StateOutput(File file, boolean compress, int reserve) throws FileNotFoundException {
+		this.file = file;
+		this.channel = new FileOutputStream(file).getChannel();
+		this.memory = null;
+		this.writer = createWriter(this.channel, compress);
+		this.compress = compress;
+		this.reserve = reserve;
+		this.failure = null;
+		if (reserve > 0) {
+			byte[] placeholder = (compress ? GzipChannel.member(new byte[0], reserve)
+					: pad(System.lineSeparator().getBytes(), reserve));
+			try {
+				this.write(placeholder == null ? new byte[reserve] : placeholder);
+			} catch (IOException e) {
+				this.failed(e);
+			}
+		}
+	}
+
+	/**
+	 * Returns the size of the region reserved for the enumeration of the labels
+	 * in a streamed file, given by the property label.stream.reserve.
+	 * 
+	 * @param configuration JPF's configuration
+	 * @return the size of the region in bytes
+	 */
+	public static int getReserve(Config configuration) {
+		return configuration.getInt("label.stream.reserve", DEFAULT_RESERVE);
+	}
+
+	/**
+	 * Creates a writer to the given channel.
+	 * 
+	 * @param channel  a channel
+	 * @param compress whether the data written is compressed in the gzip format
+	 * @return a writer to the channel
+	 */
+	public static ChannelWriter createWriter(WritableByteChannel channel, boolean compress) {
+		if (compress) {
+			return new ChannelWriter(new GzipChannel(channel), GzipChannel.BUFFER_SIZE);
+		} else {
+			return new ChannelWriter(channel);
+		}
+	}
+
+	/**
+	 * Returns the writer of this output.
+	 * 
+	 * @return the writer of this output
+	 */
+	public ChannelWriter getWriter() {
+		return this.writer;
+	}
+
+	/**
+	 * Records that writing to this output failed. The failure is reported when
+	 * the output is transferred.
+	 * 
+	 * @param e the failure
+	 */
+	public void failed(IOException e) {
+		if (this.failure == null) {
+			this.failure = e;
+			if (this.file != null) {
+				System.out.println("Listener could not write to the file " + this.file.getName());
+			}
+		}
+	}
+
+	/**
+	 * Writes the buffered part of this output, so that the output streamed to a
+	 * file so far survives the termination of JPF.
+	 * 
+	 * @throws IOException if the output cannot be written
+	 */
+	public void flush() throws IOException {
+		if (this.failure == null) {
+			this.writer.flush();
+		}
+	}
+
+	/**
+	 * Appends this output, without the region reserved for the header, to the
+	 * given channel.
+	 * 
+	 * @param channel a channel
+	 * @throws IOException if this output cannot be read or the channel cannot be
+	 *                     written to
+	 */
+	public void transferTo(WritableByteChannel channel) throws IOException {
+		if (this.failure != null) {
+			throw this.failure;
+		}
+		this.writer.flush();
+		if (this.memory != null) {
+			this.memory.writeTo(Channels.newOutputStream(channel));
+		} else {
+			FileChannel input = new FileInputStream(this.file).getChannel();
+			try {
+				long size = input.size();
+				for (long position = this.reserve; position < size;) {
+					position += input.transferTo(position, size - position, channel);
+				}
+			} finally {
+				input.close();
+			}
+		}
+	}
+
+	/**
+	 * Moves this output to the given file, preceded by the given header. If the
+	 * output is streamed and the header fits in the region reserved for it, the
+	 * header is written to that region and the file is renamed, so that the
+	 * output is not copied. Otherwise, the header and the output are written to
+	 * the given file. The header is compressed if the output is.
+	 * 
+	 * @param target the output file
+	 * @param header the header, uncompressed
+	 * @return a channel to the output file, positioned after this output, to which
+	 *         a trailer can be written
+	 * @throws IOException if this output cannot be read or the output file cannot
+	 *                     be written to
+	 */
+	public FileChannel moveTo(File target, byte[] header) throws IOException {
+		if (this.failure != null) {
+			throw this.failure;
+		}
+		this.writer.flush();
+		if (this.file != null && this.reserve > 0) {
+			byte[] region = (this.compress ? GzipChannel.member(header, this.reserve) : pad(header, this.reserve));
+			if (region != null) {
+				ByteBuffer buffer = ByteBuffer.wrap(region);
+				while (buffer.hasRemaining()) {
+					this.channel.write(buffer, buffer.position());
+				}
+				this.writer.close();
+				Files.move(this.file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				this.file = null;
+				return new FileOutputStream(target, true).getChannel();
+			}
+			System.out.println("The header of " + target.getName() + " exceeds the " + this.reserve
+					+ " bytes reserved for it, which can be increased by the property label.stream.reserve");
+		}
+
+		FileChannel channel = new FileOutputStream(target).getChannel();
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(this.compress ? GzipChannel.member(header) : header);
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			this.transferTo(channel);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return channel;
+	}
+
+	/**
+	 * Closes this output and deletes the file to which it was streamed, if it has
+	 * not been moved.
+	 */
+	public void delete() {
+		if (this.file != null) {
+			try {
+				this.writer.close();
+			} catch (IOException e) {
+				// the output is discarded
+			}
+			this.file.delete();
+		}
+	}
+
+	/**
+	 * Writes the given bytes to the file directly, bypassing the writer.
+	 * 
+	 * @param bytes the bytes
+	 * @throws IOException if the file cannot be written to
+	 */
+	private void write(byte[] bytes) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			this.channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Pads the given textual header with spaces before the end of its first line,
+	 * so that it has the given size.
+	 * 
+	 * @param header the header
+	 * @param size   the size of the padded header in bytes
+	 * @return the padded header, or null if the header does not fit or has no line
+	 *         to pad
+	 */
+	private static byte[] pad(byte[] header, int size) {
+		if (header.length == size) {
+			return header;
+		}
+		int end = 0;
+		while (end < header.length && header[end] != '\n') {
+			end++;
+		}
+		if (header.length > size || end == header.length) {
+			return null;
+		}
+		if (end > 0 && header[end - 1] == '\r') {
+			end--;
+		}
+		byte[] padded = new byte[size];
+		int padding = size - header.length;
+		System.arraycopy(header, 0, padded, 0, end);
+		Arrays.fill(padded, end, end + padding, (byte) ' ');
+		System.arraycopy(header, end, padded, end + padding, header.length - end);
+		return padded;
+	}
+}
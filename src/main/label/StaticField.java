@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import gov.nasa.jpf.vm.ClassInfo;
+import gov.nasa.jpf.vm.ElementInfo;
+import gov.nasa.jpf.vm.FieldInfo;
+
+/**
+ * A handle of a static field. The field is resolved once, when its class is
+ * loaded, so that reading its value only requires a lookup of the static
+ * element of the class. If classes with the same name are loaded by different
+ * class loaders, the class which is loaded first is used.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class StaticField {
+	private String className; // the name of the class declaring the field
+	private String fieldName; // the name of the field
+	private ClassInfo classInfo; // the class declaring the field, null if not loaded
+	private FieldInfo fieldInfo; // the field, null if not loaded
+
+	/**
+	 * Creates a handle for the static field with the given signature.
+	 * 
+	 * @param signature the signature of the field in the format:
+	 *                  package.class.fieldName
+	 */
+	public StaticField(String signature) {
+		int index = signature.lastIndexOf('.');
+		if (index > 0) {
+			this.className = signature.substring(0, index).trim();
+			this.fieldName = signature.substring(index + 1).trim();
+		}
+		this.classInfo = null;
+		this.fieldInfo = null;
+	}
+
+	/**
+	 * Resolves the field if the given class declares it.
+	 * 
+	 * @param loadedClass a class that has been loaded
+	 */
+	public void classLoaded(ClassInfo loadedClass) {
+		if (this.classInfo == null && this.className != null && this.className.equals(loadedClass.getName())) {
+			FieldInfo field = loadedClass.getStaticField(this.fieldName);
+			if (field != null) {
+				this.classInfo = loadedClass;
+				this.fieldInfo = field;
+			}
+		}
+	}
+
+	/**
+	 * Returns the field.
+	 * 
+	 * @return the field, or null if its class has not been loaded
+	 */
+	public FieldInfo getFieldInfo() {
+		return this.fieldInfo;
+	}
+
+	/**
+	 * Returns the element containing the static fields of the class in the
+	 * current state.
+	 * 
+	 * @return the static element of the class, or null if the class has not been
+	 *         loaded
+	 */
+	public ElementInfo getElementInfo() {
+		return (this.classInfo == null ? null : this.classInfo.getStaticElementInfo());
+	}
+}
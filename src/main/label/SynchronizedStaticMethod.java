@@ -17,8 +17,6 @@
 package label;
 
 import java.lang.reflect.Modifier;
-import java.util.HashSet;
-import java.util.Set;
 
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.jvm.bytecode.INVOKESTATIC;
@@ -26,6 +24,7 @@ import gov.nasa.jpf.jvm.bytecode.JVMInvokeInstruction;
 import gov.nasa.jpf.util.MethodSpec;
 import gov.nasa.jpf.vm.Instruction;
 import gov.nasa.jpf.vm.MethodInfo;
+import gov.nasa.jpf.vm.ThreadInfo;
 import gov.nasa.jpf.vm.bytecode.ReturnInstruction;
 
 /**
@@ -40,13 +39,22 @@ import gov.nasa.jpf.vm.bytecode.ReturnInstruction;
  * @author Syyeda Zainab Fatmi
  */
 public class SynchronizedStaticMethod extends TransitionLabelMaker {
+	private static final int UNLOCKED = 0; // value of the label of a method that unlocked
+	private static final int LOCKED = 1; // value of the label of a method that locked
+
 	private String[] methodName; // method signature
+	private MethodSpec[] methodSpec; // method specifications
+	private MatchCache<MethodInfo> matches; // methods matched against the specifications
+	private LabelCache labelCache; // labels created so far
 
 	/**
 	 * Initializes this labeling function.
 	 */
 	private SynchronizedStaticMethod(Config configuration) {
 		methodName = getConfiguredProperty(configuration, "label.SynchronizedStaticMethod.method");
+		methodSpec = createMethodSpecs(methodName);
+		matches = new MatchCache<MethodInfo>();
+		labelCache = new LabelCache();
 	}
 
 	/**
@@ -60,43 +68,47 @@ public class SynchronizedStaticMethod extends TransitionLabelMaker {
 	}
 
 	@Override
-	public Set<Label> breakAfter(Instruction executedInstruction) {
+	public Class<?>[] getInstructionTypes() {
+		return new Class<?>[] { INVOKESTATIC.class, ReturnInstruction.class };
+	}
+
+	@Override
+	public boolean breakAfter(ThreadInfo thread, Instruction executedInstruction, LabelSet labels) {
 		if (executedInstruction instanceof ReturnInstruction) {
 			ReturnInstruction instruction = (ReturnInstruction) executedInstruction;
 			MethodInfo methodInfo = instruction.getMethodInfo();
 			if (Modifier.isSynchronized(methodInfo.getModifiers()) && Modifier.isStatic(methodInfo.getModifiers())) {
-				for (String method : methodName) {
-					if (MethodSpec.createMethodSpec(method).matches(methodInfo)) {
-						Set<Label> labels = new HashSet<Label>();
-						String signature = methodInfo.getClassName().replaceAll("[$.]", "_") + "_"
-								+ methodInfo.getJNIName();
-						labels.add(new Label("unlocked__" + signature, method + " unlocked"));
-						return labels;
-					}
+				MatchCache.Match match = matchMethod(methodInfo, methodSpec, matches);
+				if (match.matches()) {
+					labels.add(this, match, UNLOCKED);
+					return true;
 				}
 			}
 		}
-		return null;
+		return false;
 	}
 
 	@Override
-	public Set<Label> breakBefore(Instruction nextInstruction) {
+	public boolean breakBefore(ThreadInfo thread, Instruction nextInstruction, LabelSet labels) {
 		if (nextInstruction instanceof INVOKESTATIC) {
 			JVMInvokeInstruction instruction = (JVMInvokeInstruction) nextInstruction;
 			MethodInfo methodInfo = instruction.getInvokedMethod();
 			// 32 represents the modifier 'synchronized'
 			if (Modifier.isSynchronized(methodInfo.getModifiers())) {
-				for (String method : methodName) {
-					if (MethodSpec.createMethodSpec(method).matches(methodInfo)) {
-						Set<Label> labels = new HashSet<Label>();
-						String signature = methodInfo.getClassName().replaceAll("[$.]", "_") + "_"
-								+ methodInfo.getJNIName();
-						labels.add(new Label("locked__" + signature, method + " locked"));
-						return labels;
-					}
+				MatchCache.Match match = matchMethod(methodInfo, methodSpec, matches);
+				if (match.matches()) {
+					labels.add(this, match, LOCKED);
+					return true;
 				}
 			}
 		}
-		return null;
+		return false;
+	}
+
+	@Override
+	public Label getLabel(MatchCache.Match match, int lock) {
+		String prefix = (lock == LOCKED ? "locked" : "unlocked");
+		return labelCache.computeIfAbsent(match.getSignature(), lock,
+				() -> new Label(prefix + "__" + match.getSignature(), methodName[match.getIndex()] + " " + prefix));
 	}
 }
\ No newline at end of file
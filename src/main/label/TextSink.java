@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.search.Search;
+
+/**
+ * Outputs the labels of the state space to a file, named &lt;name of system
+ * under test&gt;.lab, in the format described below. All possible labels are
+ * enumerated by positive integers in the first line of the file. Subsequent
+ * lines capture the labeled states as follows: the state id followed by a
+ * colon and each of its labels, separated by a single space.
+ * 
+ * By default, the labelling of the states is kept in memory until it is
+ * written. If the property label.StateLabelText.stream is set to true, the
+ * labelling of each state is instead written to the file &lt;name of system
+ * under test&gt;.lab.part as soon as the state is labelled. Since the
+ * enumeration of the labels is only known at the end of the search, a region
+ * at the start of that file, of label.stream.reserve bytes (64 KB by default),
+ * is reserved for it. Once the search has finished, the enumeration is written
+ * to that region, padded with spaces, and the file is renamed. Should the
+ * enumeration not fit, the resulting file is assembled from the enumeration
+ * and that file instead, after which that file is deleted.
+ * 
+ * If the output is compressed, the file is named &lt;name of system under
+ * test&gt;.lab.gz and consists of gzip members, each containing a part of the
+ * labelling. If the labelling is streamed, so does the file &lt;name of system
+ * under test&gt;.lab.gz.part, which can therefore be decompressed even if the
+ * search does not finish.
+ * 
+ * If checkpointing is enabled, the labelling is always streamed.
+ * 
+ * @author Syyeda Zainab Fatmi
+ */
+public class TextSink implements LabelSink {
+	private boolean stream; // whether the labelling of the states is streamed to a file
+	private boolean compress; // whether the output is compressed
+	private int reserve; // size of the region reserved for the enumeration of the labels, in bytes
+	private StateOutput states; // the labelling of the states
+
+	/**
+	 * Initializes this sink. The output is compressed if the property label.gzip
+	 * is set to true.
+	 * 
+	 * @param configuration JPF's configuration
+	 */
+	public TextSink(Config configuration) {
+		this(configuration, configuration.getBoolean("label.gzip", false));
+	}
+
+	/**
+	 * Initializes this sink.
+	 * 
+	 * @param configuration JPF's configuration
+	 * @param compress      whether the output is compressed in the gzip format
+	 */
+	public TextSink(Config configuration, boolean compress) {
+		this.stream = configuration.getBoolean("label.StateLabelText.stream", false)
+				|| Checkpoints.isEnabled(configuration);
+		this.compress = compress;
+		this.reserve = StateOutput.getReserve(configuration);
+		this.states = new StateOutput(compress);
+	}
+
+	/**
+	 * Opens the file to which the labelling of the states is streamed, if any.
+	 */
+	@Override
+	public void searchStarted(Search search) {
+		if (this.stream) {
+			File file = new File(LabelSink.getOutputName(search) + this.getExtension() + ".part");
+			try {
+				this.states = new StateOutput(file, this.compress, this.reserve);
+			} catch (FileNotFoundException e) {
+				System.out.println("Listener could not write to the file " + file.getName());
+			}
+		}
+	}
+
+	/**
+	 * Writes the labels for a state to the file.
+	 */
+	@Override
+	public void labelState(int id, LabelSet labels) {
+		if (!labels.isEmpty()) {
+			ChannelWriter writer = this.states.getWriter();
+			try {
+				writer.write(id).write(':');
+				for (int i = labels.next(0); i >= 0; i = labels.next(i + 1)) {
+					writer.write(' ').write(i);
+				}
+				writer.write('\n');
+			} catch (IOException e) {
+				this.states.failed(e);
+			}
+		}
+	}
+
+	/**
+	 * Transitions are not part of the labelling.
+	 */
+	@Override
+	public void labelTransition(int source, int target) {
+	}
+
+	@Override
+	public void writeStateLabels(Search search, String name, LabelRegistry labels) {
+		try {
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			ChannelWriter writer = new ChannelWriter(Channels.newChannel(header));
+			int n = labels.size();
+			for (int i = 0; i < n; i++) {
+				writer.write(i).write("=\"").write(labels.get(i).getName()).write("\" ");
+			}
+			writer.write(System.lineSeparator());
+			writer.flush();
+			this.states.moveTo(new File(name + this.getExtension()), header.toByteArray()).close();
+		} catch (IOException e) {
+			System.out.println("Listener could not write to the output file " + name + this.getExtension());
+			search.terminate();
+		}
+	}
+
+	/**
+	 * Returns the extension of the output file.
+	 * 
+	 * @return the extension of the output file
+	 */
+	private String getExtension() {
+		return (this.compress ? ".lab.gz" : ".lab");
+	}
+
+	/**
+	 * Writes the part of the labelling streamed so far to the file.
+	 */
+	@Override
+	public void flush() throws IOException {
+		this.states.flush();
+	}
+
+	/**
+	 * Removes the file to which the labelling of the states was streamed, if any.
+	 */
+	@Override
+	public void searchFinished(Search search) {
+		this.states.delete();
+	}
+}
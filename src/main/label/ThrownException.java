@@ -16,9 +16,6 @@
  */
 package label;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import gov.nasa.jpf.Config;
 import gov.nasa.jpf.jvm.bytecode.ATHROW;
 import gov.nasa.jpf.vm.ClassInfo;
@@ -27,7 +24,6 @@ import gov.nasa.jpf.vm.Heap;
 import gov.nasa.jpf.vm.Instruction;
 import gov.nasa.jpf.vm.StackFrame;
 import gov.nasa.jpf.vm.ThreadInfo;
-import gov.nasa.jpf.vm.VM;
 
 /**
  * A labeling function for a thrown (and handled) exception or error (that is,
@@ -41,7 +37,9 @@ import gov.nasa.jpf.vm.VM;
  */
 public class ThrownException extends TransitionLabelMaker {
 	private String[] exceptionName; // exception signature
+	private MatchCache.Match[] exceptionMatch; // the exceptions, as results of matching
 	private String exceptionThrown; // the next exception to be thrown
+	private LabelCache labelCache; // labels created so far
 
 	/**
 	 * Initializes this labeling function.
@@ -50,7 +48,13 @@ public class ThrownException extends TransitionLabelMaker {
 	 */
 	private ThrownException(Config configuration) {
 		exceptionName = getConfiguredProperty(configuration, "label.ThrownException.type");
+		addSignatures(exceptionName);
+		exceptionMatch = new MatchCache.Match[exceptionName.length];
+		for (int i = 0; i < exceptionName.length; i++) {
+			exceptionMatch[i] = new MatchCache.Match(i, exceptionName[i]);
+		}
 		exceptionThrown = null;
+		labelCache = new LabelCache();
 	}
 
 	/**
@@ -64,31 +68,40 @@ public class ThrownException extends TransitionLabelMaker {
 	}
 
 	@Override
-	public Set<Label> breakAfter(Instruction executedInstruction) {
+	public Class<?>[] getInstructionTypes() {
+		return new Class<?>[] { ATHROW.class };
+	}
+
+	@Override
+	public boolean breakAfter(ThreadInfo thread, Instruction executedInstruction, LabelSet labels) {
 		if (executedInstruction instanceof ATHROW) {
 			for (int i = 0; i < exceptionName.length; i++) {
 				if (exceptionThrown.equals(exceptionName[i])) {
-					Set<Label> labels = new HashSet<Label>();
-					labels.add(new Label(exceptionThrown.replaceAll("[$.]", "_"), exceptionThrown));
-					return labels;
+					setMatched(i);
+					labels.add(this, exceptionMatch[i], 0);
+					return true;
 				}
 			}
 		}
-		return null;
+		return false;
+	}
+
+	@Override
+	public Label getLabel(MatchCache.Match match, int value) {
+		String name = match.getSignature();
+		return labelCache.computeIfAbsent(name, () -> new Label(name.replaceAll("[$.]", "_"), name));
 	}
 
 	@Override
-	public void beforeInstruction(Instruction instructionToExecute) {
+	public void beforeInstruction(ThreadInfo thread, Instruction instructionToExecute) {
 		exceptionThrown = null;
 		if (instructionToExecute instanceof ATHROW) {
-			ThreadInfo ti = ThreadInfo.getCurrentThread();
-			StackFrame frame = ti.getModifiableTopFrame();
+			StackFrame frame = thread.getModifiableTopFrame();
 			int objref = frame.peek();
 			if (objref == 0) { // MJI Null
 				exceptionThrown = "java.lang.NullPointerException";
 			} else {
-				VM vm = VM.getVM();
-				Heap heap = vm.getHeap();
+				Heap heap = thread.getHeap();
 				ElementInfo eiException = heap.get(objref);
 				if (eiException != null) {
 					ClassInfo ciException = eiException.getClassInfo();
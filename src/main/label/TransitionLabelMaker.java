@@ -19,15 +19,72 @@ package label;
 import java.util.Set;
 
 import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.ThreadInfo;
 
 /**
  * An interface to define labeling functions which rely on transitions, to be
  * used with the StateLabelText listener.
  * 
+ * The listener invokes breakAfter, breakBefore and beforeInstruction with the
+ * thread executing the instruction and, for the former two, the set to which
+ * the labels of the new state are added. A label maker should override these
+ * variants only, and obtain the state of the program from the given thread,
+ * rather than from ThreadInfo.getCurrentThread() or VM.getVM(), which return
+ * static fields referring to the VM created last. This keeps the label makers
+ * free of JPF's static state; jpf-core itself keeps more of it, so searches in
+ * the same JVM are still run one at a time (see LabelBatch). The other variants are deprecated in
+ * favour of these: they are only invoked by the default implementations of
+ * these variants, so that label makers which override them keep working.
+ * 
  * @author Syyeda Zainab Fatmi
  */
 public abstract class TransitionLabelMaker extends StateLabelMaker {
 
+	/**
+	 * Returns the types of the instructions this label maker is interested in.
+	 * The methods breakAfter, breakBefore and beforeInstruction are only invoked
+	 * for instructions of these types. A type may also be a superclass or an
+	 * interface of the instructions of interest. By default, the label maker is
+	 * interested in all instructions.
+	 * 
+	 * @return the types of the instructions of interest, or null if all
+	 *         instructions are of interest
+	 */
+	public Class<?>[] getInstructionTypes() {
+		return null;
+	}
+
+	/**
+	 * Whenever the given thread has executed an instruction, determines whether to
+	 * break the current transition after the executed instruction or not, and if
+	 * so, adds the labels for the new state to the given set. By default, the
+	 * deprecated breakAfter(Instruction, LabelSet) is invoked.
+	 * 
+	 * @param thread              the thread which executed the instruction
+	 * @param executedInstruction the last instruction that was executed
+	 * @param labels              the set of labels for the new state
+	 * @return true if the transition is to be broken, false otherwise
+	 */
+	public boolean breakAfter(ThreadInfo thread, Instruction executedInstruction, LabelSet labels) {
+		return this.breakAfter(executedInstruction, labels);
+	}
+
+	/**
+	 * Whenever an instruction is executed, determines whether to break the current
+	 * transition after the executed instruction or not, and if so, adds the labels
+	 * for the new state to the given set. By default, the labels returned by
+	 * breakAfter(Instruction) are added.
+	 * 
+	 * @param executedInstruction the last instruction that was executed
+	 * @param labels              the set of labels for the new state
+	 * @return true if the transition is to be broken, false otherwise
+	 * @deprecated Override breakAfter(ThreadInfo, Instruction, LabelSet) instead
+	 */
+	@Deprecated
+	public boolean breakAfter(Instruction executedInstruction, LabelSet labels) {
+		return labels.addAll(this.breakAfter(executedInstruction));
+	}
+
 	/**
 	 * Whenever an instruction is executed, determines whether to break the current
 	 * transition after the executed instruction or not.
@@ -35,11 +92,44 @@ public abstract class TransitionLabelMaker extends StateLabelMaker {
 	 * @param executedInstruction the last instruction that was executed
 	 * @return the set of labels for the new state to break the transition, null
 	 *         otherwise
+	 * @deprecated Override breakAfter(ThreadInfo, Instruction, LabelSet) instead
 	 */
+	@Deprecated
 	public Set<Label> breakAfter(Instruction executedInstruction) {
 		return null;
 	}
 
+	/**
+	 * Whenever the given thread has executed an instruction, determines whether to
+	 * break the current transition before the next instruction or not, and if so,
+	 * adds the labels for the new state to the given set. By default, the
+	 * deprecated breakBefore(Instruction, LabelSet) is invoked.
+	 * 
+	 * @param thread          the thread which will execute the instruction
+	 * @param nextInstruction next instruction which will be executed
+	 * @param labels          the set of labels for the new state
+	 * @return true if the transition is to be broken, false otherwise
+	 */
+	public boolean breakBefore(ThreadInfo thread, Instruction nextInstruction, LabelSet labels) {
+		return this.breakBefore(nextInstruction, labels);
+	}
+
+	/**
+	 * Whenever an instruction is executed, determines whether to break the current
+	 * transition before the next instruction or not, and if so, adds the labels for
+	 * the new state to the given set. By default, the labels returned by
+	 * breakBefore(Instruction) are added.
+	 * 
+	 * @param nextInstruction next instruction which will be executed
+	 * @param labels          the set of labels for the new state
+	 * @return true if the transition is to be broken, false otherwise
+	 * @deprecated Override breakBefore(ThreadInfo, Instruction, LabelSet) instead
+	 */
+	@Deprecated
+	public boolean breakBefore(Instruction nextInstruction, LabelSet labels) {
+		return labels.addAll(this.breakBefore(nextInstruction));
+	}
+
 	/**
 	 * Whenever an instruction is executed, determines whether to break the current
 	 * transition before the next instruction or not.
@@ -47,17 +137,33 @@ public abstract class TransitionLabelMaker extends StateLabelMaker {
 	 * @param nextInstruction next instruction which will be executed
 	 * @return the set of labels for the new state to break the transition, null
 	 *         otherwise
+	 * @deprecated Override breakBefore(ThreadInfo, Instruction, LabelSet) instead
 	 */
+	@Deprecated
 	public Set<Label> breakBefore(Instruction nextInstruction) {
 		return null;
 	}
 
+	/**
+	 * This method is run whenever JPF's VM is about to execute the next
+	 * instruction of the given thread. By default, the deprecated
+	 * beforeInstruction(Instruction) is invoked.
+	 * 
+	 * @param thread               the thread which will execute the instruction
+	 * @param instructionToExecute The next instruction to be executed
+	 */
+	public void beforeInstruction(ThreadInfo thread, Instruction instructionToExecute) {
+		this.beforeInstruction(instructionToExecute);
+	}
+
 	/**
 	 * This method is run whenever JPF's VM is about to execute the next
 	 * instruction.
 	 * 
 	 * @param instructionToExecute The next instruction to be executed
+	 * @deprecated Override beforeInstruction(ThreadInfo, Instruction) instead
 	 */
+	@Deprecated
 	public void beforeInstruction(Instruction instructionToExecute) {
 	}
 }
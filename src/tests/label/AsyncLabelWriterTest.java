@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import gov.nasa.jpf.Config;
+
+/**
+ * Tests that AsyncLabelWriter passes the records handed over to the listener
+ * in order, also when the queue wraps around, when the writer thread has been
+ * idle and when the writer thread is not alive and the records are passed to
+ * the listener by the thread handing them over instead.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class AsyncLabelWriterTest {
+
+	/**
+	 * The records passed to the listener, in order.
+	 */
+	private List<String> records;
+
+	/**
+	 * The threads on which the records are passed to the listener.
+	 */
+	private List<Thread> threads;
+
+	/**
+	 * The listener to which the records are passed.
+	 */
+	private StateLabel listener;
+
+	/**
+	 * Creates a listener which records the states and the transitions passed to
+	 * it.
+	 */
+	@Before
+	public void setUp() {
+		this.records = new ArrayList<String>();
+		this.threads = new ArrayList<Thread>();
+		this.listener = new StateLabel(new Config()) {
+			@Override
+			public void labelState(int id, int set, LabelSet labels) {
+				AsyncLabelWriterTest.this.record(id + ":" + set + ":" + labels.size());
+			}
+
+			@Override
+			public void labelTransition(int source, int target) {
+				AsyncLabelWriterTest.this.record(source + "->" + target);
+			}
+		};
+	}
+
+	/**
+	 * Tests that the records are passed to the listener in order while the queue
+	 * wraps around many times.
+	 */
+	@Test
+	public void ringTest() {
+		AsyncLabelWriter writer = new AsyncLabelWriter(this.listener, new LabelRegistry(), 4);
+		writer.start();
+		List<String> expected = this.handOver(writer, 10000);
+		writer.drain();
+		assertEquals(expected, this.records);
+		writer.stop();
+	}
+
+	/**
+	 * Tests that a writer thread which is waiting on an empty queue formats the
+	 * records handed over afterwards, and stops.
+	 *
+	 * @throws InterruptedException if the test is interrupted
+	 */
+	@Test
+	public void idleTest() throws InterruptedException {
+		AsyncLabelWriter writer = new AsyncLabelWriter(this.listener, new LabelRegistry(), 16);
+		writer.start();
+		for (int i = 0; i < 3; i++) {
+			Thread.sleep(50); // the writer thread has yielded and parks
+			List<String> expected = this.handOver(writer, 5);
+			writer.drain();
+			assertEquals(expected, this.records);
+			this.records.clear();
+		}
+		writer.stop();
+		assertFalse(this.threads.contains(Thread.currentThread()));
+	}
+
+	/**
+	 * Tests that, if the writer thread is not alive, the records are passed to the
+	 * listener by the thread handing them over, once the queue is full, and by the
+	 * thread waiting for the queue to drain.
+	 */
+	@Test
+	public void takeOverTest() {
+		AsyncLabelWriter writer = new AsyncLabelWriter(this.listener, new LabelRegistry(), 4); // not started
+		List<String> expected = this.handOver(writer, 100);
+		assertEquals(expected.size() - 4, this.records.size()); // the last records are still queued
+		writer.drain();
+		assertEquals(expected, this.records);
+		for (Thread thread : this.threads) {
+			assertTrue(thread == Thread.currentThread());
+		}
+	}
+
+	/**
+	 * Tests that the records handed over after the writer is closed are discarded.
+	 */
+	@Test
+	public void closeTest() {
+		AsyncLabelWriter writer = new AsyncLabelWriter(this.listener, new LabelRegistry(), 8);
+		writer.start();
+		List<String> expected = this.handOver(writer, 20);
+		writer.close();
+		this.handOver(writer, 20);
+		writer.drain();
+		assertEquals(expected, this.records);
+		writer.stop();
+	}
+
+	/**
+	 * Tests that the labels of a state are copied when they are handed over.
+	 */
+	@Test
+	public void copyTest() {
+		AsyncLabelWriter writer = new AsyncLabelWriter(this.listener, new LabelRegistry(), 4); // not started
+		LabelSet labels = new LabelSet(new LabelRegistry());
+		labels.add(3);
+		writer.addState(0, 0, labels);
+		labels.add(70);
+		writer.addState(1, 1, labels);
+		labels.clear();
+		writer.drain();
+		assertEquals(Arrays.asList("0:0:1", "1:1:2"), this.records);
+	}
+
+	/**
+	 * Hands over the given number of states to the given writer, each followed by
+	 * a transition to it, and returns the records the listener is expected to be
+	 * passed.
+	 *
+	 * @param writer a writer
+	 * @param states the number of states
+	 * @return the records the listener is expected to be passed
+	 */
+	private List<String> handOver(AsyncLabelWriter writer, int states) {
+		List<String> expected = new ArrayList<String>();
+		LabelSet labels = new LabelSet(new LabelRegistry());
+		for (int id = 0; id < states; id++) {
+			labels.add(id % 5);
+			writer.addState(id, id % 7, labels);
+			expected.add(id + ":" + id % 7 + ":" + labels.size());
+			writer.addTransition(id - 1, id);
+			expected.add((id - 1) + "->" + id);
+		}
+		return expected;
+	}
+
+	/**
+	 * Records a record passed to the listener, and the thread on which it is.
+	 *
+	 * @param record a record
+	 */
+	private void record(String record) {
+		this.records.add(record);
+		this.threads.add(Thread.currentThread());
+	}
+}
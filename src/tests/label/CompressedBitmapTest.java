@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the class CompressedBitmap against java.util.BitSet.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class CompressedBitmapTest {
+
+	/**
+	 * The maximal number of integers of an array container.
+	 */
+	private static final int ARRAY_MAX = 4096;
+
+	/**
+	 * Tests a set with exactly as many integers as an array container can hold,
+	 * and with one more, so that the container becomes a bitmap.
+	 *
+	 * @throws IOException if the set cannot be written or read
+	 */
+	@Test
+	public void arrayToBitmapTest() throws IOException {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		BitSet expected = new BitSet();
+		for (int i = 0; i < ARRAY_MAX; i++) {
+			bitmap.add(16 * i);
+			expected.set(16 * i);
+		}
+		this.check(expected, bitmap);
+		this.check(expected, this.copy(bitmap));
+
+		bitmap.add(1);
+		expected.set(1);
+		this.check(expected, bitmap);
+		this.check(expected, this.copy(bitmap));
+
+		bitmap.add(1);
+		assertEquals(ARRAY_MAX + 1, bitmap.cardinality());
+	}
+
+	/**
+	 * Tests the operations on a bitmap container which result in few enough
+	 * integers for an array container, and the other way around.
+	 *
+	 * @throws IOException if the set cannot be written or read
+	 */
+	@Test
+	public void conversionTest() throws IOException {
+		BitSet dense = new BitSet();
+		dense.set(0, ARRAY_MAX + 2);
+		BitSet sparse = new BitSet();
+		sparse.set(0, 2);
+		BitSet rest = new BitSet();
+		rest.set(2, ARRAY_MAX + 2);
+		BitSet odd = new BitSet();
+		for (int i = 1; i < 2 * ARRAY_MAX; i += 2) {
+			odd.set(i);
+		}
+		BitSet even = new BitSet();
+		for (int i = 0; i < 2 * ARRAY_MAX; i += 2) {
+			even.set(i);
+		}
+
+		this.checkOperations(dense, sparse); // bitmap minus array is an array
+		this.checkOperations(dense, rest); // bitmap minus bitmap is an array
+		this.checkOperations(odd.get(0, ARRAY_MAX), even.get(0, ARRAY_MAX + 2)); // union of arrays is a bitmap
+		this.checkOperations(odd, even); // intersection of bitmaps is empty
+	}
+
+	/**
+	 * Tests the operations on random sets spanning several containers, sparse and
+	 * dense, against those of BitSet.
+	 *
+	 * @throws IOException if a set cannot be written or read
+	 */
+	@Test
+	public void randomTest() throws IOException {
+		Random random = new Random(0);
+		BitSet[] sets = new BitSet[6];
+		sets[0] = new BitSet();
+		for (int i = 1; i < sets.length; i++) {
+			sets[i] = new BitSet();
+			for (int key = 0; key < 4; key++) {
+				int density = random.nextInt(4); // empty, sparse, around the maximum of an array, or dense
+				int count = (density == 0 ? 0 : density == 1 ? 100 : density == 2 ? ARRAY_MAX : 20000);
+				for (int k = 0; k < count; k++) {
+					sets[i].set((key << 16) | random.nextInt(1 << 16));
+				}
+			}
+		}
+		sets[sets.length - 1].set((200 << 16) | 7); // a container far from the others
+
+		for (BitSet first : sets) {
+			for (BitSet second : sets) {
+				this.checkOperations(first, second);
+			}
+		}
+	}
+
+	/**
+	 * Tests that an integer which is not in the set is not contained.
+	 */
+	@Test
+	public void containsTest() {
+		CompressedBitmap bitmap = this.toBitmap(BitSet.valueOf(new long[] { 5L }));
+		assertTrue(bitmap.contains(0));
+		assertFalse(bitmap.contains(1));
+		assertTrue(bitmap.contains(2));
+		assertFalse(bitmap.contains(1 << 16));
+		assertFalse(bitmap.contains(-1));
+		assertTrue(new CompressedBitmap().isEmpty());
+		assertFalse(bitmap.isEmpty());
+	}
+
+	/**
+	 * Checks the intersection, union and difference of the given sets, and the
+	 * sets written and read back.
+	 *
+	 * @param first  a set
+	 * @param second a set
+	 * @throws IOException if a set cannot be written or read
+	 */
+	private void checkOperations(BitSet first, BitSet second) throws IOException {
+		CompressedBitmap x = this.toBitmap(first);
+		CompressedBitmap y = this.toBitmap(second);
+		this.check(first, this.copy(x));
+
+		BitSet and = (BitSet) first.clone();
+		and.and(second);
+		this.check(and, x.and(y));
+		this.check(and, this.copy(x.and(y)));
+
+		BitSet or = (BitSet) first.clone();
+		or.or(second);
+		this.check(or, x.or(y));
+		this.check(or, this.copy(x.or(y)));
+
+		BitSet andNot = (BitSet) first.clone();
+		andNot.andNot(second);
+		this.check(andNot, x.andNot(y));
+		this.check(andNot, this.copy(x.andNot(y)));
+
+		this.check(first, x);
+		this.check(second, y);
+	}
+
+	/**
+	 * Checks that the given compressed set contains the integers of the given set.
+	 *
+	 * @param expected a set
+	 * @param actual   a compressed set
+	 */
+	private void check(BitSet expected, CompressedBitmap actual) {
+		assertArrayEquals(expected.stream().toArray(), actual.toArray());
+		assertEquals(expected.cardinality(), actual.cardinality());
+		assertEquals(expected.isEmpty(), actual.isEmpty());
+		for (int i = expected.nextSetBit(0); i >= 0; i = expected.nextSetBit(i + 1)) {
+			assertTrue(actual.contains(i));
+			assertEquals(expected.get(i + 1), actual.contains(i + 1));
+		}
+	}
+
+	/**
+	 * Returns the compressed set of the integers of the given set.
+	 *
+	 * @param set a set
+	 * @return the compressed set
+	 */
+	private CompressedBitmap toBitmap(BitSet set) {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+			bitmap.add(i);
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Returns the given set written and read back.
+	 *
+	 * @param bitmap a set
+	 * @return the set read
+	 * @throws IOException if the set cannot be written or read
+	 */
+	private CompressedBitmap copy(CompressedBitmap bitmap) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ChannelWriter writer = new ChannelWriter(Channels.newChannel(bytes));
+		bitmap.write(writer);
+		writer.close();
+		ByteArrayInputStream input = new ByteArrayInputStream(bytes.toByteArray());
+		return CompressedBitmap.read(new ChannelReader(Channels.newChannel(input)));
+	}
+}
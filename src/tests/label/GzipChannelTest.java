@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+/**
+ * Tests that the gzip members written by GzipChannel decompress as a single
+ * stream.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class GzipChannelTest {
+
+	/**
+	 * Tests that the members written by a channel, one per write, decompress as
+	 * the concatenation of the data written, also before the channel is closed.
+	 *
+	 * @throws IOException if the data cannot be compressed or decompressed
+	 */
+	@Test
+	public void membersTest() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		GzipChannel channel = new GzipChannel(Channels.newChannel(bytes));
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			String data = this.lines(i * 1000, 1000);
+			channel.write(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)));
+			expected.append(data);
+			assertEquals(expected.toString(), this.decompress(bytes.toByteArray()));
+		}
+		assertEquals(10, this.members(bytes.toByteArray()));
+		channel.close();
+		assertEquals(expected.toString(), this.decompress(bytes.toByteArray()));
+	}
+
+	/**
+	 * Tests that data larger than the buffer of the channel is written as a single
+	 * member.
+	 *
+	 * @throws IOException if the data cannot be compressed or decompressed
+	 */
+	@Test
+	public void largeTest() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		WritableByteChannel channel = new GzipChannel(Channels.newChannel(bytes), 0); // stored, not compressed
+		String data = this.lines(0, 100000);
+		assertTrue(data.length() > GzipChannel.BUFFER_SIZE);
+		channel.write(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)));
+		channel.close();
+		assertEquals(data, this.decompress(bytes.toByteArray()));
+		assertEquals(1, this.members(bytes.toByteArray()));
+	}
+
+	/**
+	 * Tests that the output of two channels, and members created by member,
+	 * decompress as a single stream once concatenated.
+	 *
+	 * @throws IOException if the data cannot be compressed or decompressed
+	 */
+	@Test
+	public void concatenationTest() throws IOException {
+		String header = "0=\"x\" 1=\"y\" \n";
+		String first = this.lines(0, 5000);
+		String second = this.lines(5000, 5000);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(GzipChannel.member(header.getBytes(StandardCharsets.UTF_8)));
+		bytes.write(GzipChannel.member(header.getBytes(StandardCharsets.UTF_8), 1000));
+		for (String data : new String[] { first, second }) {
+			ByteArrayOutputStream part = new ByteArrayOutputStream();
+			GzipChannel channel = new GzipChannel(Channels.newChannel(part));
+			channel.write(ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8)));
+			channel.close();
+			part.writeTo(bytes);
+		}
+		assertEquals(header + header + first + second, this.decompress(bytes.toByteArray()));
+	}
+
+	/**
+	 * Tests that a member is padded to the given size, and that no member is
+	 * returned if the compressed data does not fit.
+	 *
+	 * @throws IOException if the data cannot be decompressed
+	 */
+	@Test
+	public void memberTest() throws IOException {
+		byte[] data = this.lines(0, 100).getBytes(StandardCharsets.UTF_8);
+		int length = GzipChannel.member(data).length;
+		for (int size : new int[] { length, length + 1, length + 2, 4096 }) {
+			byte[] member = GzipChannel.member(data, size);
+			assertEquals(size, member.length);
+			assertEquals(this.lines(0, 100), this.decompress(member));
+		}
+		assertNull(GzipChannel.member(data, length - 1));
+		assertNull(GzipChannel.member(data, 4));
+	}
+
+	/**
+	 * Returns the given number of lines, numbered from the given number.
+	 *
+	 * @param from  the number of the first line
+	 * @param count the number of lines
+	 * @return the lines
+	 */
+	private String lines(int from, int count) {
+		StringBuilder lines = new StringBuilder();
+		for (int i = from; i < from + count; i++) {
+			lines.append(i).append(": ").append(i % 7).append('\n');
+		}
+		return lines.toString();
+	}
+
+	/**
+	 * Returns the number of gzip members in the given data, provided that each
+	 * member is written by a GzipChannel, whose members start with the same header.
+	 *
+	 * @param data the compressed data
+	 * @return the number of members
+	 */
+	private int members(byte[] data) {
+		int members = 0;
+		for (int i = 0; i + 3 < data.length; i++) {
+			if (data[i] == 0x1f && data[i + 1] == (byte) 0x8b && data[i + 2] == 8 && data[i + 3] == 0) {
+				members++;
+			}
+		}
+		return members;
+	}
+
+	/**
+	 * Decompresses the given data.
+	 *
+	 * @param data the compressed data
+	 * @return the decompressed data
+	 * @throws IOException if the data cannot be decompressed
+	 */
+	private String decompress(byte[] data) throws IOException {
+		InputStream input = new GZIPInputStream(new ByteArrayInputStream(data));
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int n = input.read(buffer); n >= 0; n = input.read(buffer)) {
+				bytes.write(buffer, 0, n);
+			}
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		} finally {
+			input.close();
+		}
+	}
+}
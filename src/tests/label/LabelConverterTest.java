@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+
+/**
+ * Tests that converting the output of BinarySink by means of LabelConverter
+ * gives the output of TextSink.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelConverterTest {
+
+	/**
+	 * The number of labels, so that some indices take more than one byte.
+	 */
+	private static final int LABELS = 300;
+
+	/**
+	 * The directory to which the files are written.
+	 */
+	private File directory;
+
+	/**
+	 * Creates the directory to which the files are written.
+	 *
+	 * @throws IOException if the directory cannot be created
+	 */
+	@Before
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("label").toFile();
+	}
+
+	/**
+	 * Removes the files written in the test cases.
+	 */
+	@After
+	public void tearDown() {
+		for (File file : this.directory.listFiles()) {
+			file.delete();
+		}
+		this.directory.delete();
+	}
+
+	/**
+	 * Tests the states -1 and 0 and labels with an index of at least 128.
+	 *
+	 * @throws IOException if a file cannot be read or written
+	 */
+	@Test
+	public void roundTripTest() throws IOException {
+		int[][] states = { { -1, 0 }, { 0, 1, 128 }, { 1 }, { 2, 127, 128, 129, 299 }, { 7, 200 }, { 3, 5 } };
+		assertArrayEquals(this.text(states), this.converted(states));
+	}
+
+	/**
+	 * Tests more states than fit between two entries of the index of the binary
+	 * file, with ids that decrease as well as increase.
+	 *
+	 * @throws IOException if a file cannot be read or written
+	 */
+	@Test
+	public void manyStatesTest() throws IOException {
+		int n = 3 * BinarySink.INDEX_INTERVAL;
+		int[][] states = new int[n][];
+		for (int i = 0; i < n; i++) {
+			int id = (i % 2 == 0 ? i - 1 : n - i);
+			states[i] = new int[] { id, i % LABELS, (7 * i + 128) % LABELS };
+		}
+		assertArrayEquals(this.text(states), this.converted(states));
+	}
+
+	/**
+	 * Returns the content of the file written by TextSink for the given states.
+	 *
+	 * @param states the id of each state followed by the indices of its labels
+	 * @return the content of the text file
+	 * @throws IOException if the file cannot be read
+	 */
+	private byte[] text(int[][] states) throws IOException {
+		String name = new File(this.directory, "text").getPath();
+		this.write(new TextSink(this.getConfig(), false), states, name);
+		return Files.readAllBytes(new File(name + ".lab").toPath());
+	}
+
+	/**
+	 * Returns the content of the file obtained by converting the file written by
+	 * BinarySink for the given states to the text format.
+	 *
+	 * @param states the id of each state followed by the indices of its labels
+	 * @return the content of the converted file
+	 * @throws IOException if a file cannot be read or written
+	 */
+	private byte[] converted(int[][] states) throws IOException {
+		String name = new File(this.directory, "binary").getPath();
+		this.write(new BinarySink(this.getConfig()), states, name);
+		LabelConverter.convertToText(name + ".labb", name + ".lab");
+		return Files.readAllBytes(new File(name + ".lab").toPath());
+	}
+
+	/**
+	 * Passes the given states to the given sink and writes its output.
+	 *
+	 * @param sink   a sink
+	 * @param states the id of each state followed by the indices of its labels
+	 * @param name   the name of the output file, without extension
+	 */
+	private void write(LabelSink sink, int[][] states, String name) {
+		LabelRegistry registry = new LabelRegistry();
+		for (int i = 0; i < LABELS; i++) {
+			registry.register(new Label("label" + i, "description of label " + i));
+		}
+		LabelSet labels = new LabelSet(registry);
+		for (int[] state : states) {
+			labels.clear();
+			for (int j = 1; j < state.length; j++) {
+				labels.add(state[j]);
+			}
+			sink.labelState(state[0], labels);
+		}
+		sink.writeStateLabels(null, name, registry);
+	}
+
+	/**
+	 * Returns the configuration with which the sinks are created.
+	 *
+	 * @return JPF's configuration
+	 */
+	private Config getConfig() {
+		return JPF.createConfig(new String[] {});
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import gov.nasa.jpf.JPF;
+
+/**
+ * Tests the queries of the class LabelIndex on an index written by
+ * LabelIndexSink.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelIndexTest {
+
+	/**
+	 * The number of states, so that the sets of states span several containers.
+	 */
+	private static final int STATES = 70000;
+
+	/**
+	 * The name of the index file, without extension.
+	 */
+	private static String name;
+
+	/**
+	 * The index.
+	 */
+	private static LabelIndex index;
+
+	/**
+	 * Writes the index of the states -1 to STATES - 2, where a state has the
+	 * label a if its id is even, b if its id is a multiple of 3 and c if its id
+	 * is a multiple of 5.
+	 *
+	 * @throws IOException if the index cannot be written or read
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws IOException {
+		File file = File.createTempFile("label", ".labx");
+		file.delete();
+		name = file.getPath().substring(0, file.getPath().length() - ".labx".length());
+
+		LabelRegistry registry = new LabelRegistry();
+		LabelSet labels = new LabelSet(registry);
+		LabelIndexSink sink = new LabelIndexSink(JPF.createConfig(new String[] {}));
+		for (int id = -1; id < STATES - 1; id++) {
+			labels.clear();
+			if (id % 2 == 0) {
+				labels.add(new Label("a", "even"));
+			}
+			if (id % 3 == 0) {
+				labels.add(new Label("b", "multiple of 3"));
+			}
+			if (id % 5 == 0) {
+				labels.add(new Label("c", "multiple of 5"));
+			}
+			sink.labelState(id, labels);
+		}
+		sink.writeStateLabels(null, name, registry);
+		index = LabelIndex.read(name + ".labx");
+	}
+
+	/**
+	 * Removes the index file.
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() {
+		new File(name + ".labx").delete();
+	}
+
+	/**
+	 * Tests queries consisting of a single label.
+	 */
+	@Test
+	public void labelTest() {
+		this.check("a", id -> id % 2 == 0);
+		this.check(" c ", id -> id % 5 == 0);
+		assertEquals(STATES, index.all().cardinality());
+	}
+
+	/**
+	 * Tests queries with !, &amp; and |, and their precedence.
+	 */
+	@Test
+	public void operatorTest() {
+		this.check("!a", id -> id % 2 != 0);
+		this.check("!!a", id -> id % 2 == 0);
+		this.check("a & b", id -> id % 6 == 0);
+		this.check("a|b", id -> id % 2 == 0 || id % 3 == 0);
+		this.check("a | b & c", id -> id % 2 == 0 || id % 15 == 0);
+		this.check("a & b | c", id -> id % 6 == 0 || id % 5 == 0);
+		this.check("!a & b", id -> id % 2 != 0 && id % 3 == 0);
+		this.check("a & !b & !c", id -> id % 2 == 0 && id % 3 != 0 && id % 5 != 0);
+	}
+
+	/**
+	 * Tests queries with parentheses.
+	 */
+	@Test
+	public void parenthesesTest() {
+		this.check("(a | b) & c", id -> (id % 2 == 0 || id % 3 == 0) && id % 5 == 0);
+		this.check("!(a | b)", id -> id % 2 != 0 && id % 3 != 0);
+		this.check("!(a & (b | !c))", id -> !(id % 2 == 0 && (id % 3 == 0 || id % 5 != 0)));
+		this.check("((a))", id -> id % 2 == 0);
+	}
+
+	/**
+	 * Tests that queries which are not well formed are rejected.
+	 */
+	@Test
+	public void errorTest() {
+		this.reject("", "Missing label at 0");
+		this.reject("a &", "Missing label at 3");
+		this.reject("!", "Missing label at 1");
+		this.reject("(a | b", "Missing ) at 6");
+		this.reject("a b", "Unexpected b at 2");
+		this.reject("a)", "Unexpected ) at 1");
+		this.reject("a & d", "Unknown label d");
+	}
+
+	/**
+	 * Tests that the set of states with a label is a copy and that an unknown label
+	 * is rejected.
+	 */
+	@Test
+	public void getTest() {
+		CompressedBitmap states = index.get("a");
+		states.add(2);
+		assertFalse(index.get("a").contains(2));
+		try {
+			index.get("d");
+			fail("Unknown label d accepted");
+		} catch (IllegalArgumentException e) {
+			assertEquals("Unknown label d", e.getMessage());
+		}
+	}
+
+	/**
+	 * Tests that the states satisfying a query consisting of a single label, with
+	 * or without parentheses, are a copy.
+	 */
+	@Test
+	public void queryCopyTest() {
+		index.query("a").add(2);
+		index.query("((a))").add(2);
+		assertFalse(index.get("a").contains(2));
+		this.check("a", id -> id % 2 == 0);
+	}
+
+	/**
+	 * Checks that the given query is satisfied by the states satisfying the given
+	 * condition.
+	 *
+	 * @param query     a query
+	 * @param condition a condition on the ids of states
+	 */
+	private void check(String query, IntPredicate condition) {
+		int[] expected = new int[STATES];
+		int n = 0;
+		for (int id = -1; id < STATES - 1; id++) {
+			if (condition.test(id)) {
+				expected[n++] = id;
+			}
+		}
+		assertArrayEquals(query, Arrays.copyOf(expected, n), index.getStates(index.query(query)));
+	}
+
+	/**
+	 * Checks that the given query is rejected with the given message.
+	 *
+	 * @param query   a query
+	 * @param message the expected message
+	 */
+	private void reject(String query, String message) {
+		try {
+			index.query(query);
+			fail("Query \"" + query + "\" accepted");
+		} catch (IllegalArgumentException e) {
+			assertEquals(message, e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the merging of labellings by LabelMerge.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelMergeTest {
+
+	/**
+	 * The number of states parsed at a time by LabelMerge.
+	 */
+	private static final int CHUNK = 4096;
+
+	/**
+	 * The first labelling, in which the states 2 and 3 only occur.
+	 */
+	private static final String FIRST = "0=\"x\" 1=\"y\" \n-1: 0\n0: 1\n2: 0 1\n3:\n";
+
+	/**
+	 * The second labelling, whose labels are numbered differently and which has
+	 * an index without a label, in which the state 1 only occurs.
+	 */
+	private static final String SECOND = "0=\"z\" 2=\"x\" \r\n0: 2 0\n1: 2\n";
+
+	/**
+	 * The first line of the merged file, enumerating the labels in the order in
+	 * which they first occur.
+	 */
+	private static final String HEADER = "0=\"x\" 1=\"y\" 2=\"z\" " + System.lineSeparator();
+
+	/**
+	 * The directory to which the files are written.
+	 */
+	private File directory;
+
+	/**
+	 * Creates the directory to which the files are written.
+	 *
+	 * @throws IOException if the directory cannot be created
+	 */
+	@Before
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("label").toFile();
+	}
+
+	/**
+	 * Removes the files written in the test cases.
+	 */
+	@After
+	public void tearDown() {
+		for (File file : this.directory.listFiles()) {
+			file.delete();
+		}
+		this.directory.delete();
+	}
+
+	/**
+	 * Tests that the labels of the files are renumbered and the labels of each
+	 * state are united.
+	 *
+	 * @throws IOException if a file cannot be read or written
+	 */
+	@Test
+	public void unionTest() throws IOException {
+		String expected = HEADER + "-1: 0\n0: 0 1 2\n1: 0\n2: 0 1\n3:\n";
+		assertEquals(expected, this.merge(false, 2, "first.lab", FIRST, "second.lab", SECOND));
+	}
+
+	/**
+	 * Tests that the labels of each state in the files are listed side by side,
+	 * including states which do not occur in all files.
+	 *
+	 * @throws IOException if a file cannot be read or written
+	 */
+	@Test
+	public void sideTest() throws IOException {
+		String expected = HEADER + "-1: 0 |\n0: 1 | 0 2\n1: | 0\n2: 0 1 |\n3: |\n";
+		assertEquals(expected, this.merge(true, 2, "first.lab", FIRST, "second.lab", SECOND));
+	}
+
+	/**
+	 * Tests files compressed in the gzip format, both to be merged and merged.
+	 *
+	 * @throws IOException if a file cannot be read or written
+	 */
+	@Test
+	public void gzipTest() throws IOException {
+		String expected = HEADER + "-1: 0\n0: 0 1 2\n1: 0\n2: 0 1\n3:\n";
+		assertEquals(expected, this.merge(false, 1, "first.lab.gz", FIRST, "second.lab", SECOND));
+	}
+
+	/**
+	 * Tests files with more states than are parsed at a time, whose states are
+	 * merged across the chunks of the files, by one and by several threads.
+	 *
+	 * @throws IOException if a file cannot be read or written
+	 */
+	@Test
+	public void chunkTest() throws IOException {
+		int n = 3 * CHUNK;
+		StringBuilder all = new StringBuilder("0=\"a0\" 1=\"a1\" 2=\"a2\" \n");
+		StringBuilder boundaries = new StringBuilder("0=\"b\" 1=\"a1\" \n");
+		StringBuilder union = new StringBuilder("0=\"a0\" 1=\"a1\" 2=\"a2\" 3=\"b\" " + System.lineSeparator());
+		StringBuilder side = new StringBuilder(union);
+		for (int id = -1; id < n; id++) {
+			int label = Math.floorMod(id, 3);
+			boolean boundary = Math.floorMod(id + 2, CHUNK) < 4; // around the ends of the chunks of all.lab
+			all.append(id).append(": ").append(label).append('\n');
+			Set<Integer> labels = new TreeSet<Integer>();
+			labels.add(label);
+			if (boundary) {
+				boundaries.append(id).append(": 0 1\n");
+				labels.add(1);
+				labels.add(3);
+			}
+			union.append(id).append(':');
+			for (int i : labels) {
+				union.append(' ').append(i);
+			}
+			union.append('\n');
+			side.append(id).append(": ").append(label).append(" |").append(boundary ? " 1 3" : "").append('\n');
+		}
+
+		for (int threads = 1; threads <= 3; threads += 2) {
+			assertEquals(union.toString(), this.merge(false, threads, "all.lab", all.toString(), "boundaries.lab",
+					boundaries.toString()));
+			assertEquals(side.toString(), this.merge(true, threads, "all.lab", all.toString(), "boundaries.lab",
+					boundaries.toString()));
+		}
+	}
+
+	/**
+	 * Tests that files whose states are not in increasing order of their ids are
+	 * rejected, also if the order is violated in a later chunk of states.
+	 *
+	 * @throws IOException if a file cannot be read or written
+	 */
+	@Test
+	public void orderTest() throws IOException {
+		this.reject("decreasing.lab", "0=\"x\" \n0: 0\n2: 0\n1: 0\n");
+		this.reject("repeated.lab", "0=\"x\" \n-1: 0\n-1: 0\n");
+
+		StringBuilder late = new StringBuilder("0=\"x\" \n");
+		for (int id = 0; id < CHUNK + 10; id++) {
+			late.append(id).append(": 0\n");
+		}
+		late.append(CHUNK).append(": 0\n");
+		this.reject("late.lab", late.toString());
+	}
+
+	/**
+	 * Writes the given files, merges them and returns the merged file.
+	 *
+	 * @param side    whether the labels of the files are listed side by side
+	 * @param threads the number of threads parsing the files
+	 * @param files   the name and content of each file to be merged
+	 * @return the content of the merged file
+	 * @throws IOException if a file cannot be read or written
+	 */
+	private String merge(boolean side, int threads, String... files) throws IOException {
+		List<String> inputs = new ArrayList<String>();
+		for (int i = 0; i < files.length; i += 2) {
+			inputs.add(this.write(files[i], files[i + 1]));
+		}
+		String output = new File(this.directory, "merged.lab" + (inputs.get(0).endsWith(".gz") ? ".gz" : ""))
+				.getPath();
+		LabelMerge.merge(inputs, output, side, threads);
+		return this.read(output);
+	}
+
+	/**
+	 * Checks that the given file, merged with the first labelling, is rejected
+	 * because its states are not in increasing order.
+	 *
+	 * @param name    the name of the file
+	 * @param content the content of the file
+	 * @throws IOException if a file cannot be written
+	 */
+	private void reject(String name, String content) throws IOException {
+		List<String> inputs = Arrays.asList(this.write("first.lab", FIRST), this.write(name, content));
+		try {
+			LabelMerge.merge(inputs, new File(this.directory, "merged.lab").getPath(), false, 2);
+			fail("The states of " + name + " are accepted");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("not in increasing order"));
+		}
+	}
+
+	/**
+	 * Writes the given content to the given file in the directory, compressed in
+	 * the gzip format if its name ends with .gz.
+	 *
+	 * @param name    the name of the file
+	 * @param content the content of the file
+	 * @return the path of the file
+	 * @throws IOException if the file cannot be written
+	 */
+	private String write(String name, String content) throws IOException {
+		File file = new File(this.directory, name);
+		OutputStream output = new FileOutputStream(file);
+		if (name.endsWith(".gz")) {
+			output = new GZIPOutputStream(output);
+		}
+		try {
+			output.write(content.getBytes(StandardCharsets.UTF_8));
+		} finally {
+			output.close();
+		}
+		return file.getPath();
+	}
+
+	/**
+	 * Reads the given file, decompressing it if its name ends with .gz.
+	 *
+	 * @param name the path of the file
+	 * @return the content of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	private String read(String name) throws IOException {
+		InputStream input = new FileInputStream(name);
+		if (name.endsWith(".gz")) {
+			input = new GZIPInputStream(input);
+		}
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int n = input.read(buffer); n >= 0; n = input.read(buffer)) {
+				bytes.write(buffer, 0, n);
+			}
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		} finally {
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that LabelSetTable assigns each distinct set of labels one id, in the
+ * order in which the sets are interned.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelSetTableTest {
+
+	/**
+	 * The table of sets.
+	 */
+	private LabelSetTable table;
+
+	/**
+	 * The set of labels interned, reused for every set.
+	 */
+	private LabelSet labels;
+
+	/**
+	 * Creates an empty table.
+	 */
+	@Before
+	public void setUp() {
+		this.table = new LabelSetTable();
+		this.labels = new LabelSet(new LabelRegistry());
+	}
+
+	/**
+	 * Tests that equal sets are given the same id and distinct sets consecutive
+	 * ids, including the empty set.
+	 */
+	@Test
+	public void internTest() {
+		assertEquals(0, this.intern(1, 2));
+		assertEquals(1, this.intern());
+		assertEquals(0, this.intern(1, 2));
+		assertEquals(2, this.intern(2, 1, 64));
+		assertEquals(1, this.intern());
+		assertEquals(3, this.intern(1));
+		assertEquals(2, this.intern(64, 1, 2));
+		assertEquals(4, this.table.size());
+		assertArrayEquals(new int[] { 1, 2, 64 }, this.table.get(2));
+		assertArrayEquals(new int[0], this.table.get(1));
+	}
+
+	/**
+	 * Tests that the table copies a set when it is interned, so that the set may
+	 * be reused.
+	 */
+	@Test
+	public void copyTest() {
+		assertEquals(0, this.intern(3, 5));
+		this.labels.add(7);
+		assertArrayEquals(new int[] { 3, 5 }, this.table.get(0));
+		assertEquals(0, this.intern(3, 5));
+	}
+
+	/**
+	 * Tests many sets, so that the table grows several times, and sets whose
+	 * hash codes are equal.
+	 */
+	@Test
+	public void growthTest() {
+		int n = 10000;
+		for (int i = 0; i < n; i++) {
+			assertEquals(i, this.intern(i % 100, 100 + i / 100));
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			assertEquals(i, this.intern(i % 100, 100 + i / 100));
+			assertArrayEquals(new int[] { i % 100, 100 + i / 100 }, this.table.get(i));
+		}
+		assertEquals(n, this.table.size());
+
+		int first = this.intern(0, 31); // hash 31 * (31 + 0) + 31
+		int second = this.intern(961); // hash 31 + 961, the same
+		assertEquals(n, first);
+		assertEquals(n + 1, second);
+		assertEquals(first, this.intern(0, 31));
+		assertEquals(second, this.intern(961));
+	}
+
+	/**
+	 * Tests that retrieving a set which has not been interned fails.
+	 */
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void missingTest() {
+		this.intern(1);
+		this.table.get(1);
+	}
+
+	/**
+	 * Interns the set of labels with the given indices.
+	 *
+	 * @param indices the indices of the labels
+	 * @return the id of the set
+	 */
+	private int intern(int... indices) {
+		this.labels.clear();
+		for (int index : indices) {
+			this.labels.add(index);
+		}
+		return this.table.intern(this.labels);
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that LabelSnapshot records each distinct label once and that a set of
+ * labels with a snapshot defers building and registering its labels until the
+ * snapshot is materialized.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class LabelSnapshotTest {
+
+	/**
+	 * The registry of the labels.
+	 */
+	private LabelRegistry registry;
+
+	/**
+	 * The label maker which builds the raw labels.
+	 */
+	private Maker maker;
+
+	/**
+	 * Creates an empty registry and a label maker.
+	 */
+	@Before
+	public void setUp() {
+		this.registry = new LabelRegistry();
+		this.maker = new Maker();
+	}
+
+	/**
+	 * Tests that entries equal to ones recorded before are not recorded again,
+	 * also once the hash table has grown.
+	 */
+	@Test
+	public void dedupTest() {
+		LabelSnapshot snapshot = new LabelSnapshot();
+		MatchCache.Match[] matches = new MatchCache.Match[100];
+		for (int i = 0; i < matches.length; i++) {
+			matches[i] = new MatchCache.Match(i, "m" + i);
+		}
+		for (int k = 0; k < 2; k++) {
+			for (int i = 0; i < matches.length; i++) {
+				snapshot.add(this.maker, matches[i], 0);
+				snapshot.add(this.maker, matches[i], 1);
+			}
+			snapshot.add(this.maker, new MatchCache.Match(0, "m0"), 1); // equal to a recorded entry
+			snapshot.add(new Label("a", "A"));
+			snapshot.add(new Label("a", "A"));
+			snapshot.add(new Label("b", "B"));
+		}
+		assertEquals(2 * matches.length + 2, snapshot.size());
+		snapshot.clear();
+		assertTrue(snapshot.isEmpty());
+		snapshot.add(this.maker, matches[0], 0);
+		snapshot.add(this.maker, matches[0], 0);
+		assertEquals(1, snapshot.size());
+	}
+
+	/**
+	 * Tests that a set of labels with a snapshot only registers the labels once
+	 * the snapshot is materialized, in the order in which they were added.
+	 */
+	@Test
+	public void materializeTest() {
+		int known = this.registry.register(new Label("known", null));
+		LabelSet labels = new LabelSet(this.registry, new LabelSnapshot());
+		labels.add(known);
+		labels.add(this.maker, new MatchCache.Match(3, "m3"), 7);
+		labels.add(new Label("a", "A"));
+		labels.add(this.maker, new MatchCache.Match(3, "m3"), 7);
+		assertEquals(1, this.registry.size());
+		assertEquals(1, labels.size());
+		assertEquals(2, labels.getSnapshot().size());
+		assertFalse(labels.isEmpty());
+
+		LabelSet materialized = new LabelSet(this.registry);
+		materialized.set(labels);
+		labels.getSnapshot().materialize(materialized);
+		assertEquals(3, this.registry.size());
+		assertEquals(new Label("m3_7", "3"), this.registry.get(1));
+		assertEquals(new Label("a", "A"), this.registry.get(2));
+		assertEquals(3, materialized.size());
+
+		labels.clear();
+		assertTrue(labels.isEmpty());
+		assertTrue(labels.getSnapshot().isEmpty());
+	}
+
+	/**
+	 * Tests that a copy of a snapshot is not affected by changes to the snapshot.
+	 */
+	@Test
+	public void setTest() {
+		LabelSnapshot snapshot = new LabelSnapshot();
+		for (int i = 0; i < 20; i++) {
+			snapshot.add(this.maker, new MatchCache.Match(i, "m" + i), i);
+		}
+		LabelSnapshot copy = new LabelSnapshot();
+		copy.add(new Label("a", "A"));
+		copy.set(snapshot);
+		snapshot.clear();
+		assertEquals(20, copy.size());
+		copy.add(this.maker, new MatchCache.Match(5, "m5"), 5); // recorded before
+		assertEquals(20, copy.size());
+
+		LabelSet labels = new LabelSet(this.registry);
+		copy.materialize(labels);
+		assertEquals(20, labels.size());
+		assertEquals(new Label("m0_0", "0"), this.registry.get(0));
+	}
+
+	/**
+	 * A label maker which builds a label from the signature and index of the
+	 * specification and the value.
+	 */
+	private static class Maker extends StateLabelMaker {
+		@Override
+		public Label getLabel(MatchCache.Match spec, int value) {
+			return new Label(spec.getSignature() + "_" + value, Integer.toString(spec.getIndex()));
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import gov.nasa.jpf.JPF;
+
+/**
+ * Tests the .tra, .lab and .sta files written by PrismSink.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class PrismSinkTest {
+
+	/**
+	 * The line separator of the first line of each file and of the .sta file.
+	 */
+	private static final String NEWLINE = System.lineSeparator();
+
+	/**
+	 * The directory to which the files are written.
+	 */
+	private File directory;
+
+	/**
+	 * Creates the directory to which the files are written.
+	 *
+	 * @throws IOException if the directory cannot be created
+	 */
+	@Before
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("label").toFile();
+	}
+
+	/**
+	 * Removes the files written in the test cases.
+	 */
+	@After
+	public void tearDown() {
+		for (File file : this.directory.listFiles()) {
+			file.delete();
+		}
+		this.directory.delete();
+	}
+
+	/**
+	 * Tests a small state space, in which a state is revisited, a state has two
+	 * choices and a state has no labels.
+	 *
+	 * @throws IOException if a file cannot be read
+	 */
+	@Test
+	public void filesTest() throws IOException {
+		LabelRegistry registry = new LabelRegistry();
+		registry.register(new Label("a", "description of a"));
+		registry.register(new Label("b", "description of b"));
+		LabelSet labels = new LabelSet(registry);
+		PrismSink sink = new PrismSink(JPF.createConfig(new String[] {}));
+
+		labels.add(0);
+		sink.labelState(-1, labels);
+		sink.labelTransition(-1, 0);
+		labels.clear();
+		sink.labelState(0, labels);
+		sink.labelTransition(0, 1);
+		labels.add(0);
+		labels.add(1);
+		sink.labelState(1, labels);
+		sink.labelTransition(1, -1);
+		sink.labelTransition(-1, 1);
+
+		String name = new File(this.directory, "model").getPath();
+		sink.writeStateLabels(null, name, registry);
+		sink.searchFinished(null);
+
+		assertEquals("3 4 4" + NEWLINE + "0 0 1 1\n1 0 2 1\n2 0 0 1\n0 1 2 1\n", this.read(name, ".tra"));
+		assertEquals("0=\"init\" 1=\"a\" 2=\"b\" " + NEWLINE + "0: 0 1\n2: 1 2\n", this.read(name, ".lab"));
+		assertEquals("(jpf)" + NEWLINE + "0:(-1)" + NEWLINE + "1:(0)" + NEWLINE + "2:(1)" + NEWLINE,
+				this.read(name, ".sta"));
+	}
+
+	/**
+	 * Tests that the choices of a state are numbered from 0 in the order in which
+	 * its transitions are traversed, for more states than the initial capacity of
+	 * the sink, and that states which are only the target of a transition are
+	 * counted.
+	 *
+	 * @throws IOException if a file cannot be read
+	 */
+	@Test
+	public void choicesTest() throws IOException {
+		int n = 3000;
+		PrismSink sink = new PrismSink(JPF.createConfig(new String[] {}));
+		LabelRegistry registry = new LabelRegistry();
+		sink.labelState(-1, new LabelSet(registry));
+		StringBuilder expected = new StringBuilder();
+		expected.append(n + 1).append(' ').append(2 * n).append(' ').append(2 * n).append(NEWLINE);
+		for (int id = 0; id < n; id++) {
+			sink.labelTransition(id - 1, id);
+			sink.labelTransition(id - 1, n - 1);
+			expected.append(id).append(" 0 ").append(id + 1).append(" 1\n");
+			expected.append(id).append(" 1 ").append(n).append(" 1\n");
+		}
+
+		String name = new File(this.directory, "model").getPath();
+		sink.writeStateLabels(null, name, registry);
+		sink.searchFinished(null);
+
+		assertEquals(expected.toString(), this.read(name, ".tra"));
+		assertEquals("0=\"init\" " + NEWLINE + "0: 0\n", this.read(name, ".lab"));
+		assertEquals(n + 2, this.read(name, ".sta").split(NEWLINE).length);
+	}
+
+	/**
+	 * Returns the content of the file written by PrismSink with the given name
+	 * and extension.
+	 *
+	 * @param name      the name of the system under test
+	 * @param extension the extension of the file
+	 * @return the content of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	private String read(String name, String extension) throws IOException {
+		File file = new File(name + "_prism" + extension);
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
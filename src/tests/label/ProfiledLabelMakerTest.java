@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import gov.nasa.jpf.search.Search;
+import gov.nasa.jpf.vm.Instruction;
+import gov.nasa.jpf.vm.ThreadInfo;
+
+/**
+ * Tests the numbers of invocations and of labels added counted by
+ * ProfiledLabelMaker for the label maker it wraps.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class ProfiledLabelMakerTest {
+
+	/**
+	 * The registry of the labels.
+	 */
+	private LabelRegistry registry;
+
+	/**
+	 * The set of labels passed to the label maker.
+	 */
+	private LabelSet labels;
+
+	/**
+	 * Creates an empty set of labels.
+	 */
+	@Before
+	public void setUp() {
+		this.registry = new LabelRegistry();
+		this.labels = new LabelSet(this.registry);
+	}
+
+	/**
+	 * Tests the counters of a label maker which relies on transitions.
+	 *
+	 * @throws IOException if the profile cannot be written
+	 */
+	@Test
+	public void countersTest() throws IOException {
+		ProfiledLabelMaker profiled = new ProfiledLabelMaker(new Maker());
+		for (int i = 0; i < 3; i++) {
+			this.labels.clear();
+			profiled.getStateLabels(null, this.labels); // adds two labels
+		}
+		profiled.getStateLabels(null, this.labels); // adds no labels, since both are in the set
+		for (int i = 0; i < 5; i++) {
+			this.labels.clear();
+			assertTrue(profiled.breakAfter(null, null, this.labels)); // adds one label
+		}
+		assertFalse(profiled.breakBefore(null, null, this.labels));
+		profiled.beforeInstruction(null, null);
+		profiled.beforeInstruction(null, null);
+
+		String[] profile = this.write(profiled);
+		assertEquals(Maker.class.getName(), profile[0]);
+		assertEquals("4", profile[1]); // getStateLabels
+		assertEquals("5", profile[3]); // breakAfter
+		assertEquals("1", profile[5]); // breakBefore
+		assertEquals("2", profile[7]); // beforeInstruction
+		for (int i = 2; i <= 8; i += 2) {
+			assertTrue(Long.parseLong(profile[i]) >= 0);
+		}
+		assertEquals("11", profile[9]); // 3 * 2 + 5 * 1 labels added
+		assertEquals("a.B.c(int int);a.B.d()", profile[10]);
+	}
+
+	/**
+	 * Tests that a label maker which does not rely on transitions is not
+	 * interested in any instruction, and that the methods which are not invoked
+	 * are not printed.
+	 */
+	@Test
+	public void stateMakerTest() {
+		ProfiledLabelMaker profiled = new ProfiledLabelMaker(new StateLabelMaker() {
+			@Override
+			public void getStateLabels(Search search, LabelSet labels) {
+				labels.add(new Label("s", "a state label"));
+			}
+		});
+		assertEquals(0, profiled.getInstructionTypes().length);
+		profiled.getStateLabels(null, this.labels);
+
+		StringWriter out = new StringWriter();
+		profiled.print(new PrintWriter(out, true));
+		String printed = out.toString();
+		assertTrue(printed.contains("getStateLabels"));
+		assertFalse(printed.contains("breakAfter"));
+		assertTrue(printed.contains("labels added: 1"));
+		assertFalse(printed.contains("never matched"));
+	}
+
+	/**
+	 * Tests that the header of the comma separated values has a column for every
+	 * value written.
+	 *
+	 * @throws IOException if the profile cannot be written
+	 */
+	@Test
+	public void headerTest() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ChannelWriter writer = new ChannelWriter(Channels.newChannel(bytes));
+		ProfiledLabelMaker.writeHeader(writer);
+		writer.close();
+		String[] header = new String(bytes.toByteArray(), StandardCharsets.UTF_8).split(",", -1);
+		assertEquals(this.write(new ProfiledLabelMaker(new Maker())).length, header.length);
+		assertEquals("getStateLabels.calls", header[1]);
+		assertEquals("labels", header[9]);
+	}
+
+	/**
+	 * Writes the profile of the given label maker as comma separated values.
+	 *
+	 * @param profiled a profiled label maker
+	 * @return the values
+	 * @throws IOException if the profile cannot be written
+	 */
+	private String[] write(ProfiledLabelMaker profiled) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ChannelWriter writer = new ChannelWriter(Channels.newChannel(bytes));
+		profiled.write(writer);
+		writer.close();
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8).split(",", -1);
+	}
+
+	/**
+	 * A label maker adding two labels to each state and one label after each
+	 * instruction, with two specifications which are never matched.
+	 */
+	private static class Maker extends TransitionLabelMaker {
+
+		/**
+		 * Creates the label maker.
+		 */
+		private Maker() {
+			this.addSignatures(new String[] { "a.B.c(int,int)", "a.B.d()" });
+		}
+
+		@Override
+		public void getStateLabels(Search search, LabelSet labels) {
+			labels.add(new Label("x", "a state label"));
+			labels.add(new Label("y", "another state label"));
+		}
+
+		@Override
+		public boolean breakAfter(ThreadInfo thread, Instruction executedInstruction, LabelSet labels) {
+			labels.add(new Label("z", "a transition label"));
+			return true;
+		}
+
+		@Override
+		public boolean breakBefore(ThreadInfo thread, Instruction nextInstruction, LabelSet labels) {
+			return false;
+		}
+
+		@Override
+		public void beforeInstruction(ThreadInfo thread, Instruction instructionToExecute) {
+		}
+	}
+}
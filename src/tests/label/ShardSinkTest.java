@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import gov.nasa.jpf.Config;
+import gov.nasa.jpf.JPF;
+
+/**
+ * Tests the shards and the index written by ShardSink.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class ShardSinkTest {
+
+	/**
+	 * The line separator of the index.
+	 */
+	private static final String NEWLINE = System.lineSeparator();
+
+	/**
+	 * The directory to which the files are written.
+	 */
+	private File directory;
+
+	/**
+	 * The name of the system under test, prefixed with the directory.
+	 */
+	private String name;
+
+	/**
+	 * Creates the directory to which the files are written.
+	 *
+	 * @throws IOException if the directory cannot be created
+	 */
+	@Before
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("label").toFile();
+		this.name = new File(this.directory, "model").getPath();
+	}
+
+	/**
+	 * Removes the files written in the test cases.
+	 */
+	@After
+	public void tearDown() {
+		for (File file : this.directory.listFiles()) {
+			file.delete();
+		}
+		this.directory.delete();
+	}
+
+	/**
+	 * Tests that a new shard is started once the current one has the configured
+	 * number of states, and that states without labels count towards the range of
+	 * a shard.
+	 *
+	 * @throws IOException if a file cannot be read
+	 */
+	@Test
+	public void statesTest() throws IOException {
+		Config configuration = JPF.createConfig(new String[] {});
+		configuration.setProperty("label.shard.states", "3");
+		this.write(new ShardSink(configuration), 8);
+
+		assertEquals("-1: 0\n0: 1\n1: 0 2\n", this.read("model.0.lab", false));
+		assertEquals("3: 0 1 3\n4: 2\n", this.read("model.1.lab", false));
+		assertEquals("5: 3\n6: 0 4\n", this.read("model.2.lab", false));
+		assertFalse(new File(this.directory, "model.3.lab").exists());
+		assertEquals(this.labels(5) + NEWLINE + "model.0.lab -1 1" + NEWLINE + "model.1.lab 2 4" + NEWLINE
+				+ "model.2.lab 5 6" + NEWLINE, this.read("model.labi", false));
+	}
+
+	/**
+	 * Tests that a new shard is started once the current one has the configured
+	 * number of bytes.
+	 *
+	 * @throws IOException if a file cannot be read
+	 */
+	@Test
+	public void sizeTest() throws IOException {
+		Config configuration = JPF.createConfig(new String[] {});
+		configuration.setProperty("label.shard.size", "11");
+		this.write(new ShardSink(configuration), 8);
+
+		assertEquals("-1: 0\n0: 1\n", this.read("model.0.lab", false));
+		assertEquals("1: 0 2\n3: 0 1 3\n", this.read("model.1.lab", false));
+		assertEquals("4: 2\n5: 3\n6: 0 4\n", this.read("model.2.lab", false));
+		assertFalse(new File(this.directory, "model.3.lab").exists());
+		assertEquals(this.labels(5) + NEWLINE + "model.0.lab -1 0" + NEWLINE + "model.1.lab 1 3" + NEWLINE
+				+ "model.2.lab 4 6" + NEWLINE, this.read("model.labi", false));
+	}
+
+	/**
+	 * Tests that the shards are compressed if the property label.gzip is set, and
+	 * that the index, which is not compressed, refers to the compressed shards.
+	 *
+	 * @throws IOException if a file cannot be read
+	 */
+	@Test
+	public void gzipTest() throws IOException {
+		Config configuration = JPF.createConfig(new String[] {});
+		configuration.setProperty("label.shard.states", "4");
+		configuration.setProperty("label.gzip", "true");
+		this.write(new ShardSink(configuration), 8);
+
+		assertEquals("-1: 0\n0: 1\n1: 0 2\n", this.read("model.0.lab.gz", true));
+		assertEquals("3: 0 1 3\n4: 2\n5: 3\n6: 0 4\n", this.read("model.1.lab.gz", true));
+		assertEquals(this.labels(5) + NEWLINE + "model.0.lab.gz -1 2" + NEWLINE + "model.1.lab.gz 3 6" + NEWLINE,
+				this.read("model.labi", false));
+	}
+
+	/**
+	 * Passes the given number of states, with ids from -1, to the given sink and
+	 * writes its output. The state with id 2 has no labels.
+	 *
+	 * @param sink   a sink
+	 * @param states the number of states
+	 */
+	private void write(ShardSink sink, int states) {
+		LabelRegistry registry = new LabelRegistry();
+		for (int i = 0; i < 5; i++) {
+			registry.register(new Label("label" + i, "description of label " + i));
+		}
+		int[][] indices = { { 0 }, { 1 }, { 0, 2 }, {}, { 0, 1, 3 }, { 2 }, { 3 }, { 0, 4 } };
+		LabelSet labels = new LabelSet(registry);
+		sink.start(this.name);
+		for (int id = -1; id < states - 1; id++) {
+			labels.clear();
+			for (int index : indices[id + 1]) {
+				labels.add(index);
+			}
+			sink.labelState(id, labels);
+		}
+		sink.writeStateLabels(null, this.name, registry);
+		sink.searchFinished(null);
+	}
+
+	/**
+	 * Returns the enumeration of the given number of labels, as in the first line
+	 * of the index.
+	 *
+	 * @param n the number of labels
+	 * @return the enumeration of the labels
+	 */
+	private String labels(int n) {
+		StringBuilder labels = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			labels.append(i).append("=\"label").append(i).append("\" ");
+		}
+		return labels.toString();
+	}
+
+	/**
+	 * Reads the given file of the directory, decompressing it if it is compressed.
+	 *
+	 * @param file     the name of a file
+	 * @param compress whether the file is compressed
+	 * @return the content of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	private String read(String file, boolean compress) throws IOException {
+		InputStream input = new FileInputStream(new File(this.directory, file));
+		if (compress) {
+			input = new GZIPInputStream(input);
+		}
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int n = input.read(buffer); n >= 0; n = input.read(buffer)) {
+				bytes.write(buffer, 0, n);
+			}
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		} finally {
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that StateLabelStore retrieves the id of the set of labels stored for
+ * each state, also as it grows by adding pages.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class StateLabelStoreTest {
+
+	/**
+	 * The number of states of a page of the store.
+	 */
+	private static final int PAGE_SIZE = 1 << 16;
+
+	/**
+	 * The store.
+	 */
+	private StateLabelStore store;
+
+	/**
+	 * Creates an empty store.
+	 */
+	@Before
+	public void setUp() {
+		this.store = new StateLabelStore();
+	}
+
+	/**
+	 * Tests the initial state and states which have not been stored.
+	 */
+	@Test
+	public void initialTest() {
+		assertEquals(0, this.store.size());
+		assertFalse(this.store.contains(-1));
+		this.store.put(-1, 0);
+		assertTrue(this.store.contains(-1));
+		assertEquals(0, this.store.get(-1));
+		assertEquals(1, this.store.size());
+		assertEquals(-1, this.store.get(0));
+		assertEquals(-1, this.store.get(-2));
+		assertEquals(-1, this.store.get(Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Tests consecutive states across the boundaries of several pages.
+	 */
+	@Test
+	public void pagesTest() {
+		int n = 3 * PAGE_SIZE + 5;
+		for (int state = -1; state < n - 1; state++) {
+			this.store.put(state, state % 1000 + 1);
+		}
+		assertEquals(n, this.store.size());
+		for (int state = -1; state < n - 1; state++) {
+			assertEquals(state % 1000 + 1, this.store.get(state));
+		}
+		assertFalse(this.store.contains(n - 1));
+	}
+
+	/**
+	 * Tests that the table of pages grows beyond its initial size, that the pages
+	 * skipped are absent, and that a state stored before the largest one is
+	 * retrieved.
+	 */
+	@Test
+	public void growthTest() {
+		this.store.put(-1, 3);
+		int last = 40 * PAGE_SIZE;
+		this.store.put(last, 7);
+		assertEquals(last + 2, this.store.size());
+		assertEquals(7, this.store.get(last));
+		assertEquals(3, this.store.get(-1));
+		assertFalse(this.store.contains(20 * PAGE_SIZE));
+		assertFalse(this.store.contains(last - 1));
+
+		this.store.put(20 * PAGE_SIZE, 0);
+		assertEquals(0, this.store.get(20 * PAGE_SIZE));
+		assertEquals(last + 2, this.store.size());
+		this.store.put(20 * PAGE_SIZE, 5);
+		assertEquals(5, this.store.get(20 * PAGE_SIZE));
+	}
+}
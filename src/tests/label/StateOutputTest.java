@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2020  Syyeda Zainab Fatmi
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You can find a copy of the GNU General Public License at
+ * <http://www.gnu.org/licenses/>.
+ */
+package label;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the output of StateOutput is the same whether it is kept in memory
+ * or streamed to a file, with or without a region reserved for the header.
+ *
+ * @author Syyeda Zainab Fatmi
+ */
+public class StateOutputTest {
+
+	/**
+	 * The header of the output.
+	 */
+	private static final String HEADER = "0=\"x\" 1=\"y\" \n";
+
+	/**
+	 * The directory to which the files are written.
+	 */
+	private File directory;
+
+	/**
+	 * Creates the directory to which the files are written.
+	 *
+	 * @throws IOException if the directory cannot be created
+	 */
+	@Before
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("label").toFile();
+	}
+
+	/**
+	 * Removes the files written in the test cases.
+	 */
+	@After
+	public void tearDown() {
+		for (File file : this.directory.listFiles()) {
+			file.delete();
+		}
+		this.directory.delete();
+	}
+
+	/**
+	 * Tests the uncompressed output.
+	 *
+	 * @throws IOException if a file cannot be read or written
+	 */
+	@Test
+	public void textTest() throws IOException {
+		String expected = HEADER + this.body() + "}\n";
+		assertEquals(expected, this.move(new StateOutput(false), false));
+		assertEquals(expected, this.move(this.stream(false, 0), false));
+		assertEquals(expected, this.move(this.stream(false, HEADER.length()), false));
+		assertEquals(expected, this.move(this.stream(false, 5), false)); // the header does not fit
+	}
+
+	/**
+	 * Tests that the header is padded with spaces before the end of its first line
+	 * to the size of the region reserved for it.
+	 *
+	 * @throws IOException if a file cannot be read or written
+	 */
+	@Test
+	public void paddingTest() throws IOException {
+		String padding = new String(new char[100 - HEADER.length()]).replace('\0', ' ');
+		String expected = HEADER.replace("\n", padding + "\n") + this.body() + "}\n";
+		assertEquals(expected, this.move(this.stream(false, 100), false));
+	}
+
+	/**
+	 * Tests the compressed output.
+	 *
+	 * @throws IOException if a file cannot be read or written
+	 */
+	@Test
+	public void gzipTest() throws IOException {
+		String expected = HEADER + this.body() + "}\n";
+		assertEquals(expected, this.move(new StateOutput(true), true));
+		assertEquals(expected, this.move(this.stream(true, 0), true));
+		assertEquals(expected, this.move(this.stream(true, 100), true));
+		assertEquals(expected, this.move(this.stream(true, 4096), true));
+		assertEquals(expected, this.move(this.stream(true, 10), true)); // the header does not fit
+	}
+
+	/**
+	 * Tests that the file to which the output is streamed can be read before it is
+	 * moved, and is removed once it is moved.
+	 *
+	 * @throws IOException if a file cannot be read or written
+	 */
+	@Test
+	public void partTest() throws IOException {
+		File part = new File(this.directory, "output.part");
+		StateOutput output = new StateOutput(part, true, 1024);
+		output.getWriter().write("-1: 0\n");
+		output.flush();
+		assertEquals("-1: 0\n", this.read(part, true));
+		output.moveTo(new File(this.directory, "output"), HEADER.getBytes(StandardCharsets.UTF_8)).close();
+		output.delete();
+		assertFalse(part.exists());
+	}
+
+	/**
+	 * Returns the lines written to the output.
+	 *
+	 * @return the lines written to the output
+	 */
+	private String body() {
+		StringBuilder body = new StringBuilder();
+		for (int id = -1; id < 50000; id++) {
+			body.append(id).append(": ").append(id % 7).append('\n');
+		}
+		return body.toString();
+	}
+
+	/**
+	 * Creates an output streamed to a file in the directory.
+	 *
+	 * @param compress whether the output is compressed
+	 * @param reserve  the size of the region reserved for the header
+	 * @return the output
+	 * @throws IOException if the file cannot be written
+	 */
+	private StateOutput stream(boolean compress, int reserve) throws IOException {
+		return new StateOutput(new File(this.directory, "output.part"), compress, reserve);
+	}
+
+	/**
+	 * Writes the lines to the given output, moves it to a file after the header,
+	 * appends a trailer and returns the content of the file.
+	 *
+	 * @param output   an output
+	 * @param compress whether the output is compressed
+	 * @return the content of the file
+	 * @throws IOException if a file cannot be read or written
+	 */
+	private String move(StateOutput output, boolean compress) throws IOException {
+		String body = this.body();
+		ChannelWriter writer = output.getWriter();
+		int half = body.length() / 2;
+		writer.write(body.substring(0, half));
+		output.flush();
+		writer.write(body.substring(half));
+
+		File file = new File(this.directory, "output");
+		FileChannel channel = output.moveTo(file, HEADER.getBytes(StandardCharsets.UTF_8));
+		ChannelWriter trailer = StateOutput.createWriter(channel, compress);
+		trailer.write("}\n");
+		trailer.close();
+		output.delete();
+		return this.read(file, compress);
+	}
+
+	/**
+	 * Reads the given file, decompressing it if it is compressed.
+	 *
+	 * @param file     a file
+	 * @param compress whether the file is compressed
+	 * @return the content of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	private String read(File file, boolean compress) throws IOException {
+		InputStream input = new FileInputStream(file);
+		if (compress) {
+			input = new GZIPInputStream(input);
+		}
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int n = input.read(buffer); n >= 0; n = input.read(buffer)) {
+				bytes.write(buffer, 0, n);
+			}
+			return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+		} finally {
+			input.close();
+		}
+	}
+}